@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.ObjectBuilder;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and binding of JSON responses through ObjectBuilder.build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BindingBenchmark {
+
+    @Param
+    public Payloads.Size size;
+
+    @Param
+    public Payloads.Shape shape;
+
+    private String mJson;
+    private byte[] mBody;
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        mJson = Payloads.json(size, shape);
+        mBody = mJson.getBytes("utf-8");
+        mTranslator = Payloads.newTranslator();
+        mTypeAdapters = Payloads.newTypeAdapters();
+    }
+
+    /* response body as the transports hand it over */
+    @Benchmark
+    public Payloads.Feed buildFromStream() throws DeserializationException {
+        Payloads.Feed feed = new Payloads.Feed();
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, new ByteArrayInputStream(mBody), "utf-8", feed,
+                mTranslator, mTypeAdapters);
+        return feed;
+    }
+
+    @Benchmark
+    public Payloads.Feed buildFromString() throws DeserializationException {
+        Payloads.Feed feed = new Payloads.Feed();
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, mJson, feed, mTranslator, mTypeAdapters);
+        return feed;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.fields.Rfc1123DateAdapter;
+import com.spoqa.battery.fields.TimestampDateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.PascalCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field name translation and the date adapters, which run once per bound member.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FieldBenchmark {
+
+    private FieldNameTranslator mUnderscoreToCamel;
+    private FieldNameTranslator mPascalToCamel;
+    private Iso8601DateAdapter mIso8601;
+    private Rfc1123DateAdapter mRfc1123;
+    private TimestampDateAdapter mTimestamp;
+    private Date mDate;
+
+    @Setup
+    public void setUp() {
+        mUnderscoreToCamel = new FieldNameTranslator(new UnderscoreNameTransformer(),
+                new CamelCaseTransformer());
+        mPascalToCamel = new FieldNameTranslator(new PascalCaseTransformer(), new CamelCaseTransformer());
+        mIso8601 = new Iso8601DateAdapter();
+        mRfc1123 = new Rfc1123DateAdapter();
+        mTimestamp = new TimestampDateAdapter(true);
+        mDate = new Date(1426313366535L);
+    }
+
+    @Benchmark
+    public String underscoreToCamelCase() {
+        return mUnderscoreToCamel.remoteToLocal("last_published_entry_id");
+    }
+
+    @Benchmark
+    public String camelCaseToUnderscore() {
+        return mUnderscoreToCamel.localToRemote("lastPublishedEntryId");
+    }
+
+    @Benchmark
+    public String pascalToCamelCase() {
+        return mPascalToCamel.remoteToLocal("LastPublishedEntryId");
+    }
+
+    @Benchmark
+    public Date decodeIso8601() throws DeserializationException {
+        return mIso8601.decode("2015-03-14T15:09:26.000535+0900");
+    }
+
+    @Benchmark
+    public String encodeIso8601() {
+        return mIso8601.encode(mDate);
+    }
+
+    @Benchmark
+    public Date decodeRfc1123() throws DeserializationException {
+        return mRfc1123.decode("Sat, 14 Mar 2015 06:09:26 GMT");
+    }
+
+    @Benchmark
+    public String encodeRfc1123() {
+        return mRfc1123.encode(mDate);
+    }
+
+    @Benchmark
+    public Date decodeTimestamp() throws DeserializationException {
+        return mTimestamp.decode("1426313366535");
+    }
+}
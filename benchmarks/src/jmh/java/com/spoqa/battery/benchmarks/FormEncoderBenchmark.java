@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.codecs.MultipartFormDataEncoder;
+import com.spoqa.battery.codecs.UrlEncodedFormEncoder;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Form bodies through UrlEncodedFormEncoder and MultipartFormDataEncoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FormEncoderBenchmark {
+
+    /* elements of the list field, and kilobytes of the attachment of multipart forms */
+    @Param({"4", "1024"})
+    public int size;
+
+    public static class Form {
+        @RequestBody public String userName;
+        @RequestBody public String emailAddress;
+        @RequestBody public String comment;
+        @RequestBody public Integer age;
+        @RequestBody public Boolean subscribed;
+        @RequestBody public Date birthDate;
+        @RequestBody public List<String> interests;
+    }
+
+    public static class Upload extends Form {
+        @RequestBody public ByteArrayInputStream attachment;
+    }
+
+    private Form mForm;
+    private Upload mUpload;
+    private byte[] mAttachment;
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Setup
+    public void setUp() {
+        mForm = new Form();
+        fill(mForm);
+        mUpload = new Upload();
+        fill(mUpload);
+        mAttachment = new byte[size * 1024];
+        for (int i = 0; i < mAttachment.length; ++i)
+            mAttachment[i] = (byte) i;
+        mTranslator = Payloads.newTranslator();
+        mTypeAdapters = Payloads.newTypeAdapters();
+    }
+
+    private void fill(Form form) {
+        form.userName = "battery";
+        form.emailAddress = "battery+bench@example.com";
+        form.comment = "Needs escaping: & = ? / % and a few non-ASCII letters: \uD55C\uAE00";
+        form.age = 29;
+        form.subscribed = true;
+        form.birthDate = new Date(0);
+        form.interests = new ArrayList<String>(size);
+        for (int i = 0; i < size; ++i)
+            form.interests.add("interest " + i);
+    }
+
+    @Benchmark
+    public byte[] urlEncoded() throws SerializationException {
+        return new UrlEncodedFormEncoder().serializeObject(mForm, mTranslator, mTypeAdapters);
+    }
+
+    @Benchmark
+    public byte[] multipart() throws SerializationException {
+        /* the attachment is consumed by each serialization */
+        mUpload.attachment = new ByteArrayInputStream(mAttachment);
+        return new MultipartFormDataEncoder().serializeObject(mUpload, mTranslator, mTypeAdapters);
+    }
+}
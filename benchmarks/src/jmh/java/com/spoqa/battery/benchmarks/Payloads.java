@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reference payloads of the benchmarks: a flat list of entries or a tree of nodes holding about
+ * as many objects, from a few hundred bytes up to several megabytes of JSON.
+ */
+public final class Payloads {
+
+    public enum Size {
+        /* about 3 KB flat */
+        SMALL(16, 3),
+        /* about 300 KB flat */
+        MEDIUM(1500, 6),
+        /* about 5 MB flat */
+        LARGE(24000, 8);
+
+        /* entries of a flat payload */
+        final int entries;
+        /* levels of a nested payload; each node has NODE_CHILDREN children, so that it holds
+         * about as many objects as the flat one */
+        final int depth;
+
+        Size(int entries, int depth) {
+            this.entries = entries;
+            this.depth = depth;
+        }
+    }
+
+    public enum Shape {
+        FLAT,
+        NESTED
+    }
+
+    static final int NODE_CHILDREN = 4;
+
+    /* as Iso8601DateAdapter writes it; the fraction is read as milliseconds */
+    private static final String DATE = "2015-03-14T15:09:26.000535+0900";
+
+    public static class Entry {
+        @Response public long id;
+        @Response public String title;
+        @Response public String summary;
+        @Response public double score;
+        @Response public boolean pinned;
+        @Response public Date publishedAt;
+    }
+
+    public static class Node {
+        @Response public long id;
+        @Response public String name;
+        @Response public double weight;
+        @Response public Date updatedAt;
+        @Response public List<Node> children;
+    }
+
+    /* response and request body of the benchmarks */
+    public static class Feed {
+        @Response public String cursor;
+        @Response public int totalCount;
+        @Response public List<Entry> entries;
+        @Response public Node root;
+    }
+
+    @RpcObject(method = com.spoqa.battery.HttpRequest.Methods.POST, uri = "/feeds",
+            requestSerializer = JsonCodec.class)
+    public static class PostFeed {
+        @RequestObject public Feed feed;
+    }
+
+    private Payloads() {
+    }
+
+    public static FieldNameTranslator newTranslator() {
+        return new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+    }
+
+    public static TypeAdapterCollection newTypeAdapters() {
+        TypeAdapterCollection typeAdapters = new TypeAdapterCollection();
+        typeAdapters.register(new Iso8601DateAdapter());
+        return typeAdapters;
+    }
+
+    /** JSON of a feed as the server sends it, with underscored names */
+    public static String json(Size size, Shape shape) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"cursor\":\"c2VjcmV0IGN1cnNvcg==\",\"total_count\":").append(size.entries);
+        if (shape == Shape.FLAT) {
+            sb.append(",\"entries\":[");
+            for (int i = 0; i < size.entries; ++i) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append("{\"id\":").append(1000000L + i)
+                        .append(",\"title\":\"Entry number ").append(i)
+                        .append("\",\"summary\":\"A short summary of entry ").append(i)
+                        .append(", long enough to look like a real one.\",\"score\":").append(i * 0.25)
+                        .append(",\"pinned\":").append(i % 7 == 0)
+                        .append(",\"published_at\":\"").append(DATE).append("\"}");
+            }
+            sb.append(']');
+        } else {
+            sb.append(",\"root\":");
+            appendNode(sb, 0, size.depth);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static int appendNode(StringBuilder sb, int id, int depth) {
+        sb.append("{\"id\":").append(id)
+                .append(",\"name\":\"node-").append(id)
+                .append("\",\"weight\":").append(id * 0.5)
+                .append(",\"updated_at\":\"").append(DATE).append("\",\"children\":[");
+        int next = id + 1;
+        if (depth > 1) {
+            for (int i = 0; i < NODE_CHILDREN; ++i) {
+                if (i > 0)
+                    sb.append(',');
+                next = appendNode(sb, next, depth - 1);
+            }
+        }
+        sb.append("]}");
+        return next;
+    }
+
+    /** Feed object of the same shape and size as the JSON above */
+    public static Feed feed(Size size, Shape shape) {
+        Feed feed = new Feed();
+        feed.cursor = "c2VjcmV0IGN1cnNvcg==";
+        feed.totalCount = size.entries;
+        Date date = new Date(1426313366535L);
+        if (shape == Shape.FLAT) {
+            feed.entries = new ArrayList<Entry>(size.entries);
+            for (int i = 0; i < size.entries; ++i) {
+                Entry entry = new Entry();
+                entry.id = 1000000L + i;
+                entry.title = "Entry number " + i;
+                entry.summary = "A short summary of entry " + i + ", long enough to look like a real one.";
+                entry.score = i * 0.25;
+                entry.pinned = i % 7 == 0;
+                entry.publishedAt = date;
+                feed.entries.add(entry);
+            }
+        } else {
+            feed.root = node(new int[] { 0 }, size.depth, date);
+        }
+        return feed;
+    }
+
+    private static Node node(int[] id, int depth, Date date) {
+        Node node = new Node();
+        node.id = id[0]++;
+        node.name = "node-" + node.id;
+        node.weight = node.id * 0.5;
+        node.updatedAt = date;
+        node.children = new ArrayList<Node>();
+        if (depth > 1) {
+            for (int i = 0; i < NODE_CHILDREN; ++i)
+                node.children.add(node(id, depth - 1, date));
+        }
+        return node;
+    }
+}
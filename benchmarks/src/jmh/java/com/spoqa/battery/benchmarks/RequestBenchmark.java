@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.RequestFactory;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.UriPath;
+import com.spoqa.battery.exceptions.ContextException;
+import com.spoqa.battery.exceptions.SerializationException;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building requests through RequestFactory.createRequest and their URIs through
+ * HttpRequest.getUri.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestBenchmark {
+
+    @RpcObject(uri = "/users/%1$s/feeds/%2$d/entries")
+    public static class GetEntries {
+        @UriPath(1) public String userName = "battery user";
+        @UriPath(2) public int feedId = 42;
+        @QueryString public Integer pageSize = 50;
+        @QueryString public String sortOrder = "published_at desc";
+        @QueryString public Boolean includePinned = true;
+        @QueryString public Date since = new Date(1426313366535L);
+        @QueryString("tag") public List<String> tags = Arrays.asList("java", "android", "http");
+
+        @com.spoqa.battery.annotations.Response public Payloads.Feed feed;
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/users/%1$s/feeds")
+    public static class PostForm {
+        @UriPath(1) public String userName = "battery";
+        @com.spoqa.battery.annotations.RequestBody public String title = "A new feed";
+        @com.spoqa.battery.annotations.RequestBody public Integer limit = 100;
+    }
+
+    private RpcContext<Void> mContext;
+    private GetEntries mGetEntries;
+    private PostForm mPostForm;
+    private HttpRequest mRequest;
+
+    @Setup
+    public void setUp() throws SerializationException, ContextException {
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix("https://api.example.com/v1");
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        mContext.getTypeAdapters().register(new Iso8601DateAdapter());
+        mGetEntries = new GetEntries();
+        mPostForm = new PostForm();
+        mRequest = RequestFactory.createRequest(mContext, mGetEntries);
+    }
+
+    @Benchmark
+    public HttpRequest createGetRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mGetEntries);
+    }
+
+    @Benchmark
+    public HttpRequest createPostRequest() throws SerializationException, ContextException {
+        return RequestFactory.createRequest(mContext, mPostForm);
+    }
+
+    @Benchmark
+    public String getUri() {
+        return mRequest.getUri();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.benchmarks;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of JSON request bodies through JsonCodec.serializeObject.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    @Param
+    public Payloads.Size size;
+
+    @Param
+    public Payloads.Shape shape;
+
+    private Payloads.PostFeed mRequest;
+    private JsonCodec mCodec;
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Setup
+    public void setUp() {
+        mRequest = new Payloads.PostFeed();
+        mRequest.feed = Payloads.feed(size, shape);
+        mCodec = new JsonCodec();
+        mTranslator = Payloads.newTranslator();
+        mTypeAdapters = Payloads.newTypeAdapters();
+    }
+
+    @Benchmark
+    public byte[] serializeObject() throws SerializationException {
+        return mCodec.serializeObject(mRequest, mTranslator, mTypeAdapters);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bytes allocated by the threads of the process, sampled per thread with HotSpot's
+ * ThreadMXBean so that pooled threads which come and go are counted as well. The threads of
+ * the stub server and of the sampler itself are left out.
+ */
+class HeapChurn {
+    private static final String THREAD_NAME = "HeapChurn";
+    private static final long SAMPLE_INTERVAL_MS = 50;
+
+    private final com.sun.management.ThreadMXBean mThreads;
+    /* last allocation count seen of each thread, by thread id */
+    private final Map<Long, Long> mAllocated;
+    private final Map<Long, Long> mBaseline;
+    private long mGcCount;
+    private long mGcTime;
+    private Thread mSampler;
+    private volatile boolean mRunning;
+
+    HeapChurn() {
+        mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+        mAllocated = new HashMap<Long, Long>();
+        mBaseline = new HashMap<Long, Long>();
+    }
+
+    synchronized void start() {
+        sample();
+        mBaseline.putAll(mAllocated);
+        mGcCount = gcCount();
+        mGcTime = gcTime();
+
+        mRunning = true;
+        mSampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (mRunning) {
+                    sample();
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, THREAD_NAME);
+        mSampler.setDaemon(true);
+        mSampler.start();
+    }
+
+    void stop() throws InterruptedException {
+        mRunning = false;
+        mSampler.join();
+        sample();
+        mGcCount = gcCount() - mGcCount;
+        mGcTime = gcTime() - mGcTime;
+    }
+
+    synchronized long getAllocatedBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : mAllocated.entrySet()) {
+            Long baseline = mBaseline.get(entry.getKey());
+            total += entry.getValue() - (baseline != null ? baseline : 0);
+        }
+        return total;
+    }
+
+    long getGcCount() {
+        return mGcCount;
+    }
+
+    long getGcTimeMillis() {
+        return mGcTime;
+    }
+
+    private synchronized void sample() {
+        long[] ids = mThreads.getAllThreadIds();
+        long[] allocated = mThreads.getThreadAllocatedBytes(ids);
+        ThreadInfo[] infos = mThreads.getThreadInfo(ids);
+        for (int i = 0; i < ids.length; ++i) {
+            if (infos[i] == null || allocated[i] < 0)
+                continue;
+            String name = infos[i].getThreadName();
+            if (name.equals(THREAD_NAME) || name.startsWith(StubServer.THREAD_NAME))
+                continue;
+            mAllocated.put(ids[i], allocated[i]);
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(gc.getCollectionCount(), 0);
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(gc.getCollectionTime(), 0);
+        return time;
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.loadtest;
+
+import com.spoqa.battery.BackoffRetryPolicy;
+import com.spoqa.battery.ConcurrencyLimiter;
+import com.spoqa.battery.ExecutorScheduler;
+import com.spoqa.battery.InMemoryMetrics;
+import com.spoqa.battery.LatencyHistogram;
+import com.spoqa.battery.OnResponse;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.RpcMetrics;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.fields.TimestampDateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+import com.spoqa.battery.transports.OkHttpTransport;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives RpcContext calls against an in-process StubServer at a given concurrency and rate,
+ * then reports throughput, latency percentiles and the heap churn of the client. Runs headless
+ * on a plain JVM, e.g.
+ *
+ *   gradle -p benchmarks loadTest -PloadTestArgs="--concurrency=64 --rate=2000 --error-rate=0.01"
+ *
+ * With a rate, latency is measured from the time each call was due rather than from when it
+ * could be sent, so that stalls of the client are not hidden by sending fewer calls. --help lists
+ * the options and their defaults.
+ */
+public class LoadTest {
+
+    @RpcObject(uri = "/entries")
+    public static class GetEntries {
+        @Response public int totalCount;
+        @Response public List<Entry> entries;
+    }
+
+    public static class Entry {
+        @Response public long id;
+        @Response public String title;
+        @Response public double score;
+        @Response public boolean pinned;
+        @Response public Date publishedAt;
+    }
+
+    static class Options {
+        int concurrency = 32;
+        /* calls per second; 0 sends the next call as soon as one completes */
+        int rate = 0;
+        int warmupSeconds = 5;
+        int durationSeconds = 30;
+        /* OkHttp's limit of calls per host; 0 lets every concurrent call through */
+        int perHostLimit = 0;
+        boolean retry = false;
+        boolean concurrencyLimiter = false;
+        StubServer.Options server = new StubServer.Options();
+    }
+
+    private final Options mOptions;
+    private final RpcContext<Void> mContext;
+    private final Semaphore mPermits;
+    private final LatencyHistogram mLatency;
+    private final AtomicLong mSucceeded;
+    private final Map<String, AtomicLong> mFailures;
+    private volatile boolean mRecording;
+
+    LoadTest(Options options, String uriPrefix, OkHttpTransport transport) {
+        mOptions = options;
+        mPermits = new Semaphore(options.concurrency);
+        mLatency = new LatencyHistogram();
+        mSucceeded = new AtomicLong();
+        mFailures = new ConcurrentHashMap<String, AtomicLong>();
+
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix(uriPrefix);
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        mContext.getTypeAdapters().register(new TimestampDateAdapter(false));
+        mContext.setTransport(transport);
+        mContext.setScheduler(new ExecutorScheduler());
+        mContext.setMetrics(new InMemoryMetrics());
+        if (options.retry)
+            mContext.setRetryPolicy(new BackoffRetryPolicy());
+        if (options.concurrencyLimiter)
+            mContext.setConcurrencyLimiter(new ConcurrencyLimiter());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = parse(args);
+        if (options == null) {
+            printUsage();
+            return;
+        }
+
+        StubServer server = new StubServer(options.server);
+        server.start();
+
+        OkHttpTransport transport = new OkHttpTransport();
+        int perHostLimit = options.perHostLimit > 0 ? options.perHostLimit : options.concurrency;
+        transport.getClient().getDispatcher().setMaxRequests(Math.max(perHostLimit, options.concurrency));
+        transport.getClient().getDispatcher().setMaxRequestsPerHost(perHostLimit);
+
+        LoadTest test = new LoadTest(options, server.getUri(), transport);
+        System.out.printf("%d entries (%d bytes) per response, %d concurrent calls, %s%n",
+                options.server.entries, server.getBodyLength(), options.concurrency,
+                options.rate > 0 ? options.rate + " calls/s" : "unthrottled");
+
+        test.run(TimeUnit.SECONDS.toNanos(options.warmupSeconds), false);
+
+        HeapChurn churn = new HeapChurn();
+        ((InMemoryMetrics) test.mContext.getMetrics()).reset();
+        churn.start();
+        long startTime = System.nanoTime();
+        test.run(TimeUnit.SECONDS.toNanos(options.durationSeconds), true);
+        long elapsed = System.nanoTime() - startTime;
+        churn.stop();
+
+        test.report(elapsed, churn);
+
+        ((ExecutorScheduler) test.mContext.getScheduler()).shutdown();
+        transport.getClient().getDispatcher().getExecutorService().shutdown();
+        server.stop();
+    }
+
+    private void run(long durationNanos, boolean record) throws InterruptedException {
+        mRecording = record;
+        long interval = mOptions.rate > 0 ? TimeUnit.SECONDS.toNanos(1) / mOptions.rate : 0;
+        long endTime = System.nanoTime() + durationNanos;
+        long nextTime = System.nanoTime();
+
+        while (true) {
+            long dueTime;
+            if (interval > 0) {
+                long wait = nextTime - System.nanoTime();
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+                dueTime = nextTime;
+                nextTime += interval;
+            } else {
+                dueTime = System.nanoTime();
+            }
+            if (dueTime - endTime >= 0)
+                break;
+
+            mPermits.acquire();
+            invoke(interval > 0 ? dueTime : System.nanoTime());
+        }
+
+        /* wait for the calls in flight */
+        mPermits.acquire(mOptions.concurrency);
+        mPermits.release(mOptions.concurrency);
+    }
+
+    private void invoke(final long startTime) {
+        final boolean record = mRecording;
+        mContext.invokeAsync(new GetEntries(), new OnResponse<GetEntries>() {
+            @Override
+            public void onResponse(GetEntries object) {
+                if (record) {
+                    mLatency.record(System.nanoTime() - startTime);
+                    mSucceeded.incrementAndGet();
+                }
+                mPermits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable why) {
+                if (record) {
+                    String name = why.getClass().getSimpleName();
+                    AtomicLong count = mFailures.get(name);
+                    if (count == null) {
+                        AtomicLong newCount = new AtomicLong();
+                        count = mFailures.putIfAbsent(name, newCount);
+                        if (count == null)
+                            count = newCount;
+                    }
+                    count.incrementAndGet();
+                }
+                mPermits.release();
+            }
+        }, null);
+    }
+
+    private void report(long elapsedNanos, HeapChurn churn) {
+        double seconds = elapsedNanos / 1e9;
+        long failed = 0;
+        for (AtomicLong count : mFailures.values())
+            failed += count.get();
+        long calls = mSucceeded.get() + failed;
+
+        System.out.printf("calls       %d in %.1f s (%d failed)%n", calls, seconds, failed);
+        for (Map.Entry<String, AtomicLong> failure : mFailures.entrySet())
+            System.out.printf("            %d %s%n", failure.getValue().get(), failure.getKey());
+        System.out.printf("throughput  %.1f calls/s%n", calls / seconds);
+        System.out.printf("latency     p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms (successful calls)%n",
+                millis(mLatency.getPercentile(0.5)), millis(mLatency.getPercentile(0.99)),
+                millis(mLatency.getPercentile(0.999)), millis(mLatency.getMax()));
+
+        long allocated = churn.getAllocatedBytes();
+        System.out.printf("heap churn  %.1f MB allocated, %.1f MB/s, %.1f KB per call; %d GCs taking %d ms%n",
+                allocated / 1048576.0, allocated / 1048576.0 / seconds,
+                calls > 0 ? allocated / 1024.0 / calls : 0, churn.getGcCount(), churn.getGcTimeMillis());
+
+        InMemoryMetrics.Endpoint endpoint = ((InMemoryMetrics) mContext.getMetrics()).getEndpoint(GetEntries.class);
+        if (endpoint == null)
+            return;
+        for (RpcMetrics.Phase phase : RpcMetrics.Phase.values()) {
+            LatencyHistogram histogram = endpoint.getPhase(phase);
+            if (histogram.getCount() > 0) {
+                System.out.printf("  %-20s p50 %.2f ms, p99 %.2f ms%n", phase,
+                        millis(histogram.getPercentile(0.5)), millis(histogram.getPercentile(0.99)));
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void printUsage() {
+        Options defaults = new Options();
+        StubServer.Options server = defaults.server;
+        String[][] options = {
+                { "--concurrency=N", "calls in flight at once", String.valueOf(defaults.concurrency) },
+                { "--rate=N", "calls per second; 0 sends the next call as soon as one completes",
+                        String.valueOf(defaults.rate) },
+                { "--warmup=SECONDS", "time spent calling before measuring", String.valueOf(defaults.warmupSeconds) },
+                { "--duration=SECONDS", "length of the measurement", String.valueOf(defaults.durationSeconds) },
+                { "--per-host-limit=N", "OkHttp's limit of calls per host; 0 means --concurrency",
+                        String.valueOf(defaults.perHostLimit) },
+                { "--retry[=BOOLEAN]", "retry failed calls with BackoffRetryPolicy", String.valueOf(defaults.retry) },
+                { "--concurrency-limiter[=BOOLEAN]", "put a ConcurrencyLimiter in front of the calls",
+                        String.valueOf(defaults.concurrencyLimiter) },
+                { "--entries=N", "entries of each response body", String.valueOf(server.entries) },
+                { "--latency=MILLIS", "server latency of each response", String.valueOf(server.latencyMillis) },
+                { "--jitter=MILLIS", "uniformly distributed on top of the latency", String.valueOf(server.jitterMillis) },
+                { "--error-rate=FRACTION", "requests answered with 503", String.valueOf(server.errorRate) },
+                { "--drop-rate=FRACTION", "requests whose connection is closed without a response",
+                        String.valueOf(server.dropRate) },
+                { "--slow-rate=FRACTION", "requests delayed by --slow on top of the latency",
+                        String.valueOf(server.slowRate) },
+                { "--slow=MILLIS", "extra delay of slow requests", String.valueOf(server.slowMillis) },
+        };
+
+        System.out.println("Usage: LoadTest [OPTION]...");
+        for (String[] option : options)
+            System.out.printf("  %-34s %s (default %s)%n", option[0], option[1], option[2]);
+        System.out.printf("  %-34s %s%n", "--help", "print this list and exit");
+    }
+
+    /**
+     * @return the options, or null if --help was given
+     */
+    private static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--"))
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            String name = arg.substring(2, separator > 0 ? separator : arg.length());
+            String value = separator > 0 ? arg.substring(separator + 1) : "true";
+
+            if (name.equals("help"))
+                return null;
+            else if (name.equals("concurrency"))
+                options.concurrency = Integer.parseInt(value);
+            else if (name.equals("rate"))
+                options.rate = Integer.parseInt(value);
+            else if (name.equals("warmup"))
+                options.warmupSeconds = Integer.parseInt(value);
+            else if (name.equals("duration"))
+                options.durationSeconds = Integer.parseInt(value);
+            else if (name.equals("per-host-limit"))
+                options.perHostLimit = Integer.parseInt(value);
+            else if (name.equals("retry"))
+                options.retry = Boolean.parseBoolean(value);
+            else if (name.equals("concurrency-limiter"))
+                options.concurrencyLimiter = Boolean.parseBoolean(value);
+            else if (name.equals("entries"))
+                options.server.entries = Integer.parseInt(value);
+            else if (name.equals("latency"))
+                options.server.latencyMillis = Long.parseLong(value);
+            else if (name.equals("jitter"))
+                options.server.jitterMillis = Long.parseLong(value);
+            else if (name.equals("error-rate"))
+                options.server.errorRate = Double.parseDouble(value);
+            else if (name.equals("drop-rate"))
+                options.server.dropRate = Double.parseDouble(value);
+            else if (name.equals("slow-rate"))
+                options.server.slowRate = Double.parseDouble(value);
+            else if (name.equals("slow"))
+                options.server.slowMillis = Long.parseLong(value);
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process HTTP server answering every request with the same JSON list of entries, after a
+ * configurable latency and with injected faults.
+ */
+public class StubServer {
+    /* prefix of the server's threads, which the heap churn of the client leaves out */
+    static final String THREAD_NAME = "StubServer";
+
+    static {
+        /* the server writes headers and body separately; without this Nagle's algorithm holds
+         * the body back until the client's delayed ACK, adding 40 ms to every call */
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public static class Options {
+        /* entries of the response body */
+        public int entries = 20;
+        public long latencyMillis = 5;
+        /* uniformly distributed on top of the latency */
+        public long jitterMillis = 0;
+        /* fraction of requests answered with 503 */
+        public double errorRate = 0;
+        /* fraction of requests whose connection is closed without a response */
+        public double dropRate = 0;
+        /* fraction of requests delayed by slowMillis on top of the latency */
+        public double slowRate = 0;
+        public long slowMillis = 500;
+    }
+
+    private final Options mOptions;
+    private final byte[] mBody;
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+
+    public StubServer(Options options) throws IOException {
+        mOptions = options;
+        mBody = buildBody(options.entries);
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        mServer.createContext("/", new Handler());
+
+        final AtomicInteger threads = new AtomicInteger();
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mServer.setExecutor(mExecutor);
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    public String getUri() {
+        InetSocketAddress address = mServer.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public int getBodyLength() {
+        return mBody.length;
+    }
+
+    static byte[] buildBody(int entries) {
+        Random random = new Random(entries);
+        StringBuilder sb = new StringBuilder("{\"total_count\":").append(entries).append(",\"entries\":[");
+        for (int i = 0; i < entries; ++i) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(1000000L + i)
+                    .append(",\"title\":\"Entry number ").append(i)
+                    .append("\",\"score\":").append(random.nextInt(10000) / 100.0)
+                    .append(",\"pinned\":").append(random.nextInt(8) == 0)
+                    .append(",\"published_at\":").append(1426313366L + i).append('}');
+        }
+        return sb.append("]}").toString().getBytes();
+    }
+
+    private class Handler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            /* request bodies are read, as a real server would */
+            InputStream input = exchange.getRequestBody();
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) >= 0) {
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = mOptions.latencyMillis;
+            if (mOptions.jitterMillis > 0)
+                delay += random.nextLong(mOptions.jitterMillis + 1);
+            if (random.nextDouble() < mOptions.slowRate)
+                delay += mOptions.slowMillis;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    exchange.close();
+                    return;
+                }
+            }
+
+            double fault = random.nextDouble();
+            if (fault < mOptions.dropRate) {
+                exchange.close();
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (fault < mOptions.dropRate + mOptions.errorRate) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, mBody.length);
+            OutputStream output = exchange.getResponseBody();
+            output.write(mBody);
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.fields.Rfc1123DateAdapter;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Retries transient failures with exponentially growing, fully jittered delays. Subclass it
+ * with a no-argument constructor to use different limits from RpcObject.retryPolicy().
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+    private static final String TAG = "BackoffRetryPolicy";
+
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_BASE_DELAY = 200;
+    public static final long DEFAULT_MAX_DELAY = 10000;
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private final int mMaxRetries;
+    private final long mBaseDelay;
+    private final long mMaxDelay;
+
+    public BackoffRetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    public BackoffRetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+        mMaxRetries = maxRetries;
+        mBaseDelay = baseDelay;
+        mMaxDelay = maxDelay;
+    }
+
+    @Override
+    public long getRetryDelay(HttpRequest request, int attempt, int statusCode,
+                              Map<String, String> headers, Throwable cause) {
+        if (attempt > mMaxRetries)
+            return -1;
+
+        if (statusCode != 0) {
+            if (!request.isIdempotent() || !isRetryableStatus(statusCode))
+                return -1;
+        } else {
+            if (!isRetryableException(cause))
+                return -1;
+            /* a non-idempotent request may only be repeated if it never reached the server */
+            if (!request.isIdempotent() && !isConnectFailure(cause))
+                return -1;
+        }
+
+        long retryAfter = parseRetryAfter(headers);
+        if (retryAfter > mMaxDelay)
+            return -1;
+
+        long ceiling = Math.min(mMaxDelay, mBaseDelay << Math.min(attempt - 1, 30));
+        long delay = (long) (Math.random() * ceiling);
+
+        return Math.max(delay, retryAfter);
+    }
+
+    protected boolean isRetryableStatus(int statusCode) {
+        switch (statusCode) {
+            case 408:
+            case 429:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected boolean isRetryableException(Throwable cause) {
+        return cause instanceof IOException;
+    }
+
+    private static boolean isConnectFailure(Throwable cause) {
+        return cause instanceof ConnectException || cause instanceof UnknownHostException;
+    }
+
+    private static long parseRetryAfter(Map<String, String> headers) {
+        if (headers == null)
+            return -1;
+
+        String value = headers.get(HEADER_RETRY_AFTER);
+        if (value == null || value.length() == 0)
+            return -1;
+
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            /* not delta-seconds; should be an HTTP-date then */
+        }
+
+        try {
+            long date = new Rfc1123DateAdapter(TimeZone.getTimeZone("GMT")).decode(value).getTime();
+            return Math.max(0, date - System.currentTimeMillis());
+        } catch (DeserializationException e) {
+            Logger.warn(TAG, "Malformed Retry-After header '%1$s'", value);
+            return -1;
+        }
+    }
+
+}
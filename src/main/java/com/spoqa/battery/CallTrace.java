@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports the progress of a single call to the RpcMetrics and the EventListener of its
+ * context. Calls made while neither is set carry no trace at all.
+ */
+public final class CallTrace {
+
+    private static final AtomicLong sCallIds = new AtomicLong();
+
+    private final long mCallId;
+    private final Object mRpcObject;
+    private final Class<?> mEndpoint;
+    private final RpcMetrics mMetrics;
+    private final EventListener mListener;
+    private long mParseTime;
+
+    private CallTrace(Object rpcObject, RpcMetrics metrics, EventListener listener) {
+        mCallId = sCallIds.incrementAndGet();
+        mRpcObject = rpcObject;
+        mEndpoint = rpcObject.getClass();
+        mMetrics = metrics;
+        mListener = listener;
+    }
+
+    /**
+     * @return a new trace, or null if the context neither has metrics nor an event listener
+     */
+    public static CallTrace create(RpcContext<?> context, Object rpcObject) {
+        RpcMetrics metrics = context.getMetrics();
+        EventListener listener = context.getEventListener();
+        if (metrics == null && listener == null)
+            return null;
+
+        return new CallTrace(rpcObject, metrics, listener);
+    }
+
+    public long getCallId() {
+        return mCallId;
+    }
+
+    public RpcMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public void requestCreated() {
+        if (mListener != null)
+            mListener.requestCreated(mCallId, mRpcObject, System.nanoTime());
+    }
+
+    public void requestSerialized(long startTime, long bytes) {
+        long now = System.nanoTime();
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.SERIALIZATION, now - startTime);
+        if (mListener != null)
+            mListener.requestSerialized(mCallId, mRpcObject, now, bytes);
+    }
+
+    public void requestBuilt(long startTime) {
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.REQUEST_BUILDING, System.nanoTime() - startTime);
+    }
+
+    public void requestEnqueued(int attempt) {
+        if (mListener != null)
+            mListener.requestEnqueued(mCallId, mRpcObject, System.nanoTime(), attempt);
+    }
+
+    public void connectionAcquired() {
+        if (mListener != null)
+            mListener.connectionAcquired(mCallId, mRpcObject, System.nanoTime());
+    }
+
+    public void headersReceived(int statusCode) {
+        if (mListener != null)
+            mListener.headersReceived(mCallId, mRpcObject, System.nanoTime(), statusCode);
+    }
+
+    public void bodyReceived(long bytes) {
+        if (mListener != null)
+            mListener.bodyReceived(mCallId, mRpcObject, System.nanoTime(), bytes);
+    }
+
+    public void parseStarted() {
+        mParseTime = System.nanoTime();
+        if (mListener != null)
+            mListener.parseStarted(mCallId, mRpcObject, mParseTime);
+    }
+
+    public void parseFinished() {
+        long now = System.nanoTime();
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.DECODING, now - mParseTime);
+        if (mListener != null)
+            mListener.parseFinished(mCallId, mRpcObject, now);
+        mParseTime = now;
+    }
+
+    public void bindFinished() {
+        long now = System.nanoTime();
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.BINDING, now - mParseTime);
+        if (mListener != null)
+            mListener.bindFinished(mCallId, mRpcObject, now);
+    }
+
+    public void validated(long startTime) {
+        long now = System.nanoTime();
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.VALIDATION, now - startTime);
+        if (mListener != null)
+            mListener.validated(mCallId, mRpcObject, now);
+    }
+
+    public void delivered(long callStartTime) {
+        long now = System.nanoTime();
+        if (mMetrics != null)
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.CALL, now - callStartTime);
+        if (mListener != null)
+            mListener.delivered(mCallId, mRpcObject, now);
+    }
+
+    public void failed(long callStartTime, Throwable error) {
+        long now = System.nanoTime();
+        if (mMetrics != null) {
+            mMetrics.recordPhase(mEndpoint, RpcMetrics.Phase.CALL, now - callStartTime);
+            mMetrics.recordError(mEndpoint, error);
+        }
+        if (mListener != null)
+            mListener.failed(mCallId, mRpcObject, now, error);
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a circuit per endpoint (RpcObject class). A closed circuit opens when the failure
+ * rate or the slow call rate over the last calls reaches its threshold; calls are then
+ * failed immediately. After a while a few trial calls are let through (half-open) to decide
+ * whether to close the circuit again or to keep it open.
+ */
+public class CircuitBreaker {
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static final float DEFAULT_FAILURE_RATE_THRESHOLD = 0.5f;
+    public static final float DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8f;
+    public static final long DEFAULT_SLOW_CALL_DURATION = 5000;
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MIN_CALLS = 10;
+    public static final long DEFAULT_OPEN_DURATION = 10000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private class Circuit {
+        final Class<?> endpoint;
+        final boolean[] failures = new boolean[mWindowSize];
+        final boolean[] slowCalls = new boolean[mWindowSize];
+        State state = State.CLOSED;
+        int recorded;
+        int position;
+        int failureCount;
+        int slowCallCount;
+        long openedAt;
+        int trialsPermitted;
+        int trialsSucceeded;
+
+        Circuit(Class<?> endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN) {
+                if (now() - openedAt < mOpenDuration)
+                    return false;
+                transition(State.HALF_OPEN);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (trialsPermitted >= mHalfOpenCalls)
+                    return false;
+                ++trialsPermitted;
+            }
+
+            return true;
+        }
+
+        synchronized void record(boolean failure, long latencyMillis) {
+            boolean slow = latencyMillis >= mSlowCallDuration;
+
+            if (state == State.HALF_OPEN) {
+                if (failure || slow) {
+                    transition(State.OPEN);
+                } else if (++trialsSucceeded >= mHalfOpenCalls) {
+                    transition(State.CLOSED);
+                }
+                return;
+            } else if (state == State.OPEN) {
+                /* late outcome of a call started before the circuit opened */
+                return;
+            }
+
+            if (recorded == mWindowSize) {
+                if (failures[position])
+                    --failureCount;
+                if (slowCalls[position])
+                    --slowCallCount;
+            } else {
+                ++recorded;
+            }
+            failures[position] = failure;
+            slowCalls[position] = slow;
+            if (failure)
+                ++failureCount;
+            if (slow)
+                ++slowCallCount;
+            position = (position + 1) % mWindowSize;
+
+            if (recorded >= mMinCalls &&
+                    (failureCount >= mFailureRateThreshold * recorded ||
+                     slowCallCount >= mSlowCallRateThreshold * recorded)) {
+                transition(State.OPEN);
+            }
+        }
+
+        synchronized void releaseTrial() {
+            if (state == State.HALF_OPEN && trialsPermitted > 0)
+                --trialsPermitted;
+        }
+
+        private void transition(State newState) {
+            if (Config.DEBUG_DUMP_REQUEST) {
+                Logger.debug(TAG, "%1$s: %2$s -> %3$s", endpoint.getName(),
+                        state, newState);
+            }
+
+            state = newState;
+            trialsPermitted = 0;
+            trialsSucceeded = 0;
+            if (newState == State.OPEN)
+                openedAt = now();
+            if (newState == State.CLOSED) {
+                recorded = 0;
+                position = 0;
+                failureCount = 0;
+                slowCallCount = 0;
+            }
+        }
+    }
+
+    private final float mFailureRateThreshold;
+    private final float mSlowCallRateThreshold;
+    private final long mSlowCallDuration;
+    private final int mWindowSize;
+    private final int mMinCalls;
+    private final long mOpenDuration;
+    private final int mHalfOpenCalls;
+    private final ConcurrentHashMap<Class<?>, Circuit> mCircuits;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLOW_CALL_RATE_THRESHOLD, DEFAULT_SLOW_CALL_DURATION,
+                DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_OPEN_DURATION, DEFAULT_HALF_OPEN_CALLS);
+    }
+
+    /**
+     * @param failureRateThreshold  ratio of failed calls in the window which opens the circuit
+     * @param slowCallRateThreshold ratio of calls slower than slowCallDuration which opens the circuit
+     * @param slowCallDuration      milliseconds after which a call counts as slow
+     * @param windowSize            number of most recent calls the rates are computed over
+     * @param minCalls              number of calls recorded before the rates are evaluated
+     * @param openDuration          milliseconds an open circuit waits before letting trial calls through
+     * @param halfOpenCalls         number of trial calls which must succeed to close the circuit
+     */
+    public CircuitBreaker(float failureRateThreshold, float slowCallRateThreshold, long slowCallDuration,
+                          int windowSize, int minCalls, long openDuration, int halfOpenCalls) {
+        mFailureRateThreshold = failureRateThreshold;
+        mSlowCallRateThreshold = slowCallRateThreshold;
+        mSlowCallDuration = slowCallDuration;
+        mWindowSize = windowSize;
+        mMinCalls = minCalls;
+        mOpenDuration = openDuration;
+        mHalfOpenCalls = halfOpenCalls;
+        mCircuits = new ConcurrentHashMap<Class<?>, Circuit>();
+    }
+
+    /**
+     * @return false if calls to the endpoint should fail immediately
+     */
+    public boolean tryAcquire(Class<?> endpoint) {
+        return getCircuit(endpoint).tryAcquire();
+    }
+
+    public void onSuccess(Class<?> endpoint, long latencyMillis) {
+        getCircuit(endpoint).record(false, latencyMillis);
+    }
+
+    public void onFailure(Class<?> endpoint, long latencyMillis) {
+        getCircuit(endpoint).record(true, latencyMillis);
+    }
+
+    /**
+     * Hands back a permit whose call ended without saying anything about the endpoint's health.
+     */
+    public void onIgnored(Class<?> endpoint) {
+        getCircuit(endpoint).releaseTrial();
+    }
+
+    public State getState(Class<?> endpoint) {
+        Circuit circuit = getCircuit(endpoint);
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    private Circuit getCircuit(Class<?> endpoint) {
+        Circuit circuit = mCircuits.get(endpoint);
+        if (circuit == null) {
+            Circuit newCircuit = new Circuit(endpoint);
+            circuit = mCircuits.putIfAbsent(endpoint, newCircuit);
+            if (circuit == null)
+                circuit = newCircuit;
+        }
+
+        return circuit;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.codecs.CborCodec;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.codecs.MessagePackCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Response deserializers of a context, keyed by MIME type. Registration may happen from any
+ * thread until the registry is frozen, which RpcContext does on its first call; lookups never
+ * lock.
+ */
+public final class CodecRegistry {
+
+    public static final float DEFAULT_QUALITY = 1.0f;
+
+    /* Content-Type values seen beyond this are parsed without being cached */
+    private static final int MAX_CACHED_CONTENT_TYPES = 64;
+
+    private static final class Entry {
+        final ResponseDeserializer deserializer;
+        final float quality;
+        final boolean advertised;
+
+        Entry(ResponseDeserializer deserializer, float quality, boolean advertised) {
+            this.deserializer = deserializer;
+            this.quality = quality;
+            this.advertised = advertised;
+        }
+    }
+
+    /* replaced as a whole on registration, so that readers see either map entirely */
+    private volatile Map<String, Entry> mEntries;
+    private String mAcceptHeader;
+    private volatile boolean mFrozen;
+    private final Map<String, String> mMimeCache;
+
+    public CodecRegistry() {
+        mEntries = Collections.emptyMap();
+        mMimeCache = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Registry with the codecs bundled with the library. They decode responses of their MIME
+     * types, but none is advertised, so that requests carry no Accept header of their own.
+     */
+    public static CodecRegistry createDefault() {
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(new JsonCodec());
+        registry.register(new MessagePackCodec());
+        registry.register(new MessagePackCodec(MessagePackCodec.MIME_TYPE_LEGACY));
+        registry.register(new CborCodec());
+        return registry;
+    }
+
+    /**
+     * Registers a codec for the responses of its MIME type without advertising it.
+     *
+     * @throws IllegalStateException once the registry has been frozen
+     */
+    public void register(ResponseDeserializer deserializer) {
+        put(deserializer, DEFAULT_QUALITY, false);
+    }
+
+    /**
+     * Registers a codec and advertises its MIME type in the Accept header.
+     *
+     * @param quality q-value of the codec's MIME type in the Accept header, between 0 and 1
+     * @throws IllegalStateException once the registry has been frozen
+     */
+    public void register(ResponseDeserializer deserializer, float quality) {
+        put(deserializer, quality, true);
+    }
+
+    private synchronized void put(ResponseDeserializer deserializer, float quality, boolean advertised) {
+        if (mFrozen)
+            throw new IllegalStateException("Codecs cannot be registered to a context in use");
+
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>(mEntries);
+        entries.put(normalize(deserializer.deserializationContentType()),
+                new Entry(deserializer, quality, advertised));
+        mEntries = Collections.unmodifiableMap(entries);
+    }
+
+    public void freeze() {
+        mFrozen = true;
+    }
+
+    public boolean isFrozen() {
+        return mFrozen;
+    }
+
+    /* unfrozen registry with the same codecs */
+    public synchronized CodecRegistry copy() {
+        CodecRegistry registry = new CodecRegistry();
+        registry.mEntries = mEntries;
+        return registry;
+    }
+
+    /**
+     * @return deserializer of the MIME type named by the given Content-Type value, or null
+     */
+    public ResponseDeserializer query(String contentType) {
+        Entry entry = mEntries.get(parseMime(contentType));
+        return entry != null ? entry.deserializer : null;
+    }
+
+    /**
+     * MIME type of a Content-Type value without its parameters, in lower case.
+     */
+    public String parseMime(String contentType) {
+        if (contentType == null)
+            return null;
+
+        String mime = mMimeCache.get(contentType);
+        if (mime != null)
+            return mime;
+
+        int end = contentType.indexOf(';');
+        mime = normalize(end < 0 ? contentType : contentType.substring(0, end));
+        if (mMimeCache.size() < MAX_CACHED_CONTENT_TYPES)
+            mMimeCache.put(contentType, mime);
+        return mime;
+    }
+
+    /**
+     * Value of the Accept header listing the advertised MIME types, highest quality first.
+     *
+     * @return null if no codec is advertised
+     */
+    public String getAcceptHeader() {
+        String header = mAcceptHeader;
+        if (header != null)
+            return header.length() > 0 ? header : null;
+
+        List<Map.Entry<String, Entry>> entries = new ArrayList<Map.Entry<String, Entry>>(mEntries.size());
+        for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            if (entry.getValue().advertised)
+                entries.add(entry);
+        }
+        /* stable, so codecs of the same quality keep their registration order */
+        Collections.sort(entries, (a, b) -> Float.compare(b.getValue().quality, a.getValue().quality));
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Entry> entry : entries) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(entry.getKey());
+            float quality = entry.getValue().quality;
+            if (quality < DEFAULT_QUALITY)
+                sb.append(";q=").append(Float.toString(Math.max(0, quality)));
+        }
+
+        header = sb.toString();
+        /* codecs may still be added until then */
+        if (mFrozen)
+            mAcceptHeader = header;
+        return header.length() > 0 ? header : null;
+    }
+
+    private static String normalize(String mime) {
+        return mime.trim().toLowerCase(Locale.US);
+    }
+}
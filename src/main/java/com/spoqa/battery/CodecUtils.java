@@ -202,7 +202,7 @@ public final class CodecUtils {
                     }
                 }
                 if (declaringType == null) {
-                    Logger.error(TAG, "No generic type available for " + clazz.getName());
+                    Logger.error(TAG, "No generic type available for %1$s", clazz.getName());
                     return null;
                 }
             } else {
@@ -214,7 +214,7 @@ public final class CodecUtils {
             } else if (isMap(declaringType)) {
                 genericTypePosition = 1;
             } else {
-                Logger.error(TAG, String.format("Field %1$s is neither list nor map.", declaringType.getName()));
+                Logger.error(TAG, "Field %1$s is neither list nor map.", declaringType.getName());
                 return null;
             }
             Object o = type.getActualTypeArguments()[genericTypePosition];
@@ -224,8 +224,8 @@ public final class CodecUtils {
                 return (Class) type.getActualTypeArguments()[genericTypePosition];
             }
         } catch (NoSuchFieldException e) {
-            Logger.error(TAG, String.format("No such field %1$s in %2$s", fieldName, clazz.getName()));
-            e.printStackTrace();
+            Logger.error(TAG, "No such field %1$s in %2$s", fieldName, clazz.getName());
+            Logger.error(TAG, e.toString());
             return null;
         }
     }
@@ -304,14 +304,14 @@ public final class CodecUtils {
             } else if (isMap(paramType)) {
                 genericTypePosition = 1;
             } else {
-                Logger.error(TAG, String.format("Method %1$s is neither list nor map.", paramType.getName()));
+                Logger.error(TAG, "Method %1$s is neither list nor map.", paramType.getName());
                 return null;
             }
             ParameterizedType type = (ParameterizedType) method.getGenericParameterTypes()[0];
             return (Class) type.getActualTypeArguments()[genericTypePosition];
         } catch (NoSuchMethodException e) {
-            Logger.error(TAG, String.format("No such method %1$s in %2$s", methodName, clazz.getName()));
-            e.printStackTrace();
+            Logger.error(TAG, "No such method %1$s in %2$s", methodName, clazz.getName());
+            Logger.error(TAG, e.toString());
             return null;
         }
     }
@@ -380,8 +380,8 @@ public final class CodecUtils {
                 String methodName = m.getName().toLowerCase();
                 if (m.getReturnType() == void.class || m.getParameterTypes().length != 0 ||
                         methodName.equals("getclass")) {
-                    Logger.warn(TAG, String.format("%1$s.%2$s() is not a getter",
-                            baseClass.getName(), m.getName()));
+                    Logger.warn(TAG, "%1$s.%2$s() is not a getter",
+                            baseClass.getName(), m.getName());
                     continue;
                 }
                 methods.add(m);
@@ -410,8 +410,8 @@ public final class CodecUtils {
         for (Method m : baseClass.getMethods()) {
             if (m.isAnnotationPresent(annotationType)) {
                 if (m.getReturnType() != void.class || m.getParameterTypes().length != 1) {
-                    Logger.warn(TAG, String.format("%1$s.%2$s() is not a setter",
-                            baseClass.getName(), m.getName()));
+                    Logger.warn(TAG, "%1$s.%2$s() is not a setter",
+                            baseClass.getName(), m.getName());
                     continue;
                 }
                 methods.add(m);
@@ -605,7 +605,7 @@ public final class CodecUtils {
 
     public static Object parseEnum(Class enumType, String value) {
         if (!enumType.isEnum()) {
-            Logger.error(TAG, String.format("type %1$s is not enum", enumType.getName()));
+            Logger.error(TAG, "type %1$s is not enum", enumType.getName());
             return null;
         }
 
@@ -617,8 +617,8 @@ public final class CodecUtils {
             }
         }
 
-        Logger.warn(TAG, String.format("Could not found value '%1$s' for enum %2$s",
-                value, enumType.getName()));
+        Logger.warn(TAG, "Could not found value '%1$s' for enum %2$s",
+                value, enumType.getName());
 
         return null;
     }
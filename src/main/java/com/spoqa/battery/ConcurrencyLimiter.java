@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the number of requests in flight per host (or per registered URI prefix) with an
+ * additive-increase/multiplicative-decrease limit. Requests beyond the limit wait in a bounded
+ * queue; once the queue is full they are rejected immediately.
+ */
+public class ConcurrencyLimiter {
+    private static final String TAG = "ConcurrencyLimiter";
+
+    public static final int DEFAULT_INITIAL_LIMIT = 8;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 64;
+    public static final int DEFAULT_MAX_QUEUE_DEPTH = 32;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    private static class Limit {
+        double limit;
+        int inFlight;
+        final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+    }
+
+    private final int mInitialLimit;
+    private final int mMinLimit;
+    private final int mMaxLimit;
+    private final int mMaxQueueDepth;
+    private final double mBackoffRatio;
+    private final List<String> mPrefixes;
+    private final ConcurrentHashMap<String, Limit> mLimits;
+    private volatile long mLatencyThreshold;
+
+    public ConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_MAX_QUEUE_DEPTH,
+                DEFAULT_BACKOFF_RATIO);
+    }
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueueDepth,
+                              double backoffRatio) {
+        mInitialLimit = initialLimit;
+        mMinLimit = minLimit;
+        mMaxLimit = maxLimit;
+        mMaxQueueDepth = maxQueueDepth;
+        mBackoffRatio = backoffRatio;
+        mPrefixes = new ArrayList<String>();
+        mLimits = new ConcurrentHashMap<String, Limit>();
+        mLatencyThreshold = 0;
+    }
+
+    /**
+     * Gives URIs starting with the prefix a limit of their own instead of sharing the limit of
+     * their host.
+     */
+    public synchronized void addPrefix(String prefix) {
+        mPrefixes.add(prefix);
+    }
+
+    /**
+     * Responses slower than the threshold are treated like drops. Zero disables the check.
+     */
+    public void setLatencyThreshold(long millis) {
+        mLatencyThreshold = millis;
+    }
+
+    public synchronized String getKey(String uri) {
+        String key = null;
+        for (String prefix : mPrefixes) {
+            if (uri.startsWith(prefix) && (key == null || prefix.length() > key.length()))
+                key = prefix;
+        }
+        if (key != null)
+            return key;
+
+        /* scheme://authority */
+        int schemeEnd = uri.indexOf("://");
+        int authorityEnd = uri.indexOf('/', schemeEnd < 0 ? 0 : schemeEnd + 3);
+        return authorityEnd < 0 ? uri : uri.substring(0, authorityEnd);
+    }
+
+    /**
+     * Runs the task on the calling thread if the limit allows it, or later on the thread which
+     * releases a slot. Every task which ran must be followed by exactly one call to
+     * {@link #release} or {@link #releaseIgnored}.
+     *
+     * @return false if the task was neither run nor queued because the queue is full
+     */
+    public boolean execute(String key, Runnable task) {
+        Limit limit = limitOf(key);
+        synchronized (limit) {
+            if (limit.inFlight >= (int) limit.limit) {
+                if (limit.queue.size() >= mMaxQueueDepth)
+                    return false;
+                limit.queue.add(task);
+                return true;
+            }
+            ++limit.inFlight;
+        }
+
+        task.run();
+        return true;
+    }
+
+    public void release(String key, long latencyMillis, boolean dropped) {
+        Limit limit = limitOf(key);
+        synchronized (limit) {
+            if (dropped || (mLatencyThreshold > 0 && latencyMillis > mLatencyThreshold)) {
+                limit.limit = Math.max(mMinLimit, limit.limit * mBackoffRatio);
+            } else if (limit.inFlight * 2 >= limit.limit) {
+                /* grow only while the limit is actually being used */
+                limit.limit = Math.min(mMaxLimit, limit.limit + 1.0 / limit.limit);
+            }
+        }
+
+        releaseIgnored(key);
+    }
+
+    /**
+     * Frees a slot without taking the outcome into account, e.g. for a cancelled request.
+     */
+    public void releaseIgnored(String key) {
+        Limit limit = limitOf(key);
+        List<Runnable> runnable = null;
+        synchronized (limit) {
+            --limit.inFlight;
+            while (limit.inFlight < (int) limit.limit && !limit.queue.isEmpty()) {
+                if (runnable == null)
+                    runnable = new ArrayList<Runnable>(1);
+                runnable.add(limit.queue.poll());
+                ++limit.inFlight;
+            }
+        }
+
+        if (runnable != null) {
+            for (Runnable task : runnable)
+                task.run();
+        }
+    }
+
+    public int getLimit(String key) {
+        Limit limit = limitOf(key);
+        synchronized (limit) {
+            return (int) limit.limit;
+        }
+    }
+
+    public int getInFlight(String key) {
+        Limit limit = limitOf(key);
+        synchronized (limit) {
+            return limit.inFlight;
+        }
+    }
+
+    public int getQueueDepth(String key) {
+        Limit limit = limitOf(key);
+        synchronized (limit) {
+            return limit.queue.size();
+        }
+    }
+
+    private Limit limitOf(String key) {
+        Limit limit = mLimits.get(key);
+        if (limit == null) {
+            Limit newLimit = new Limit();
+            newLimit.limit = mInitialLimit;
+            limit = mLimits.putIfAbsent(key, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+                if (Config.DEBUG_DUMP_REQUEST)
+                    Logger.debug(TAG, "New concurrency limit for %1$s", key);
+            }
+        }
+
+        return limit;
+    }
+
+}
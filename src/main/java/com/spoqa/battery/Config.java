@@ -9,4 +9,7 @@ public final class Config {
     static public boolean DEBUG_DUMP_REQUEST = false;
     static public boolean DEBUG_DUMP_RESPONSE = false;
 
+    /* skip capturing stack traces of the library's own exceptions; cheaper under high failure rates */
+    static public boolean STACKLESS_EXCEPTIONS = false;
+
 }
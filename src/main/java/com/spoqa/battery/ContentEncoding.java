@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public final class ContentEncoding {
+    private static final String TAG = "ContentEncoding";
+
+    public static final String IDENTITY = "identity";
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /* value of Accept-Encoding advertised on every request */
+    public static final String ACCEPTED = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public static byte[] gzip(byte[] input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4 + 64);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(output, BUFFER_SIZE);
+        try {
+            gzipStream.write(input);
+        } finally {
+            gzipStream.close();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Wraps a streaming request body so that it is compressed while being written. The length
+     * of the result is never known in advance.
+     */
+    public static StreamingRequestBody gzip(final StreamingRequestBody input) {
+        return new StreamingRequestBody() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                /* the connection's stream belongs to the transport; only the trailer is ours */
+                GZIPOutputStream gzipStream = new GZIPOutputStream(new FilterOutputStream(output) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }, BUFFER_SIZE);
+                try {
+                    input.writeTo(gzipStream);
+                } finally {
+                    gzipStream.close();
+                }
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return input.isRepeatable();
+            }
+        };
+    }
+
+    /**
+     * Wraps a response body so that it is decoded while being read. Unknown encodings are
+     * passed through untouched.
+     */
+    public static InputStream decode(InputStream input, String contentEncoding) throws IOException {
+        if (contentEncoding == null)
+            return input;
+
+        String encoding = contentEncoding.trim();
+        if (encoding.equalsIgnoreCase(GZIP) || encoding.equalsIgnoreCase("x-gzip")) {
+            return new GZIPInputStream(input, BUFFER_SIZE);
+        } else if (encoding.equalsIgnoreCase(DEFLATE)) {
+            return new InflaterInputStream(input);
+        } else if (encoding.length() > 0 && !encoding.equalsIgnoreCase(IDENTITY)) {
+            Logger.warn(TAG, "Unsupported content encoding '%1$s'", encoding);
+        }
+
+        return input;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Implemented by RpcObjects declared with {@code @RpcObject(streaming = true)}, whose response
+ * is a sequence of newline-delimited JSON documents. Each line is bound into an element as soon
+ * as it has been read, so only one element is held in memory at a time.
+ *
+ * Both methods are called on the thread reading the response, never on the delivery thread.
+ * Reading does not continue until onElement() returns, which pushes back on the server through
+ * the connection's flow control.
+ */
+public interface ElementStream<E> {
+
+    /**
+     * @param recycled the element handed to the previous onElement() call, or null for the
+     *                 first line. It may be returned to be bound again.
+     * @return object the next line is bound into
+     */
+    public E obtainElement(E recycled);
+
+    /**
+     * @return false to stop reading the rest of the response
+     */
+    public boolean onElement(E element);
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Receives the lifecycle events of every single call, e.g. to build traces of slow calls.
+ * Events of one call share its call id; timestamps are in System.nanoTime() units. Events
+ * are sent from the caller's, the network and the delivery threads, and a retried or hedged
+ * call sends the transport events once per attempt. connectionAcquired and headersReceived are
+ * sent once per exchange with the server, so redirects and authentication follow-ups within an
+ * attempt send them again.
+ *
+ * All methods do nothing by default.
+ */
+public abstract class EventListener {
+
+    public void requestCreated(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void requestSerialized(long callId, Object rpcObject, long nanoTime, long bytes) {
+    }
+
+    public void requestEnqueued(long callId, Object rpcObject, long nanoTime, int attempt) {
+    }
+
+    public void connectionAcquired(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void headersReceived(long callId, Object rpcObject, long nanoTime, int statusCode) {
+    }
+
+    public void bodyReceived(long callId, Object rpcObject, long nanoTime, long bytes) {
+    }
+
+    public void parseStarted(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void parseFinished(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void bindFinished(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void validated(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void delivered(long callId, Object rpcObject, long nanoTime) {
+    }
+
+    public void failed(long callId, Object rpcObject, long nanoTime, Throwable error) {
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler running on a single daemon thread of its own, for use without a platform main
+ * thread (e.g. on a plain JVM).
+ */
+public class ExecutorScheduler implements Scheduler {
+
+    private final ScheduledExecutorService mExecutor;
+    private final ConcurrentHashMap<Runnable, ScheduledFuture<?>> mScheduled;
+    private volatile Thread mThread;
+
+    public ExecutorScheduler() {
+        mScheduled = new ConcurrentHashMap<Runnable, ScheduledFuture<?>>();
+        mExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RpcDelivery");
+            thread.setDaemon(true);
+            mThread = thread;
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        ScheduledFuture<?> future = mExecutor.schedule(() -> {
+            mScheduled.remove(task);
+            task.run();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        mScheduled.put(task, future);
+
+        /* it may have run before it was put */
+        if (future.isDone())
+            mScheduled.remove(task, future);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        ScheduledFuture<?> future = mScheduled.remove(task);
+        if (future != null)
+            future.cancel(false);
+    }
+
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
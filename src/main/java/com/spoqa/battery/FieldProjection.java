@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Derives the sparse fieldset of an RpcObject (e.g. "id,name,author.name") from the fields
+ * ObjectBuilder would bind its response into. Nested objects are expanded into dotted paths;
+ * members whose type cannot be resolved statically (type variables, maps) are requested as a
+ * whole.
+ */
+public final class FieldProjection {
+
+    public static String compute(ReflectionCache cache, Class<?> rpcObjectClass,
+                                 FieldNameTranslator translator, TypeAdapterCollection typeAdapters) {
+        Set<String> paths = new LinkedHashSet<String>();
+        Set<Class<?>> visiting = new HashSet<Class<?>>();
+
+        List<Field> responseObjects = CodecUtils.getAnnotatedFields(cache, ResponseObject.class, rpcObjectClass);
+        if (responseObjects.size() == 1) {
+            visiting.add(responseObjects.get(0).getType());
+            visit(cache, responseObjects.get(0).getType(), false, "", translator, typeAdapters,
+                    paths, visiting);
+        } else {
+            visiting.add(rpcObjectClass);
+            visit(cache, rpcObjectClass, true, "", translator, typeAdapters, paths, visiting);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String path : paths) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(path);
+        }
+        return sb.toString();
+    }
+
+    private static void visit(ReflectionCache cache, Class<?> clazz, boolean filterByAnnotation,
+                              String prefix, FieldNameTranslator translator,
+                              TypeAdapterCollection typeAdapters, Set<String> paths,
+                              Set<Class<?>> visiting) {
+        List<Field> fields;
+        List<Method> setters;
+
+        if (filterByAnnotation) {
+            fields = CodecUtils.getAnnotatedFields(cache, Response.class, clazz);
+            setters = CodecUtils.getAnnotatedSetterMethods(cache, Response.class, clazz);
+        } else {
+            fields = CodecUtils.getAllFields(cache, clazz);
+            setters = CodecUtils.getAllSetterMethods(cache, clazz);
+        }
+
+        for (Field f : fields) {
+            if (Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers()))
+                continue;
+
+            String name = remoteName(f.getAnnotation(Response.class), f.getName(), translator);
+            visitMember(cache, prefix + name, f.getGenericType(), translator, typeAdapters,
+                    paths, visiting);
+        }
+
+        for (Method m : setters) {
+            String name = remoteName(m.getAnnotation(Response.class),
+                    CodecUtils.normalizeSetterName(m.getName()), translator);
+            visitMember(cache, prefix + name, m.getGenericParameterTypes()[0], translator,
+                    typeAdapters, paths, visiting);
+        }
+    }
+
+    private static void visitMember(ReflectionCache cache, String path, Type type,
+                                    FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                    Set<String> paths, Set<Class<?>> visiting) {
+        Class<?> clazz = rawType(type);
+
+        /* elements of a list are projected the same way as a single nested object */
+        if (clazz != null && CodecUtils.isList(clazz)) {
+            if (type instanceof ParameterizedType)
+                clazz = rawType(((ParameterizedType) type).getActualTypeArguments()[0]);
+            else
+                clazz = null;
+        }
+
+        if (clazz == null || !isNestedObject(clazz, typeAdapters) || !visiting.add(clazz)) {
+            paths.add(path);
+            return;
+        }
+
+        int count = paths.size();
+        visit(cache, clazz, false, path + ".", translator, typeAdapters, paths, visiting);
+        visiting.remove(clazz);
+
+        /* nothing to bind into; ask for the whole object rather than leaving it out */
+        if (paths.size() == count)
+            paths.add(path);
+    }
+
+    private static String remoteName(Response annotation, String localName, FieldNameTranslator translator) {
+        if (annotation != null && annotation.value().length() > 0)
+            return annotation.value();
+        return translator.localToRemote(localName);
+    }
+
+    static Class<?> rawType(Type type) {
+        if (type instanceof Class)
+            return (Class<?>) type;
+        else if (type instanceof ParameterizedType)
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        return null;
+    }
+
+    static boolean isNestedObject(Class<?> clazz, TypeAdapterCollection typeAdapters) {
+        return !clazz.isPrimitive() && !clazz.isArray() && !clazz.isEnum() &&
+                !CodecUtils.isBuiltIn(clazz) && !CodecUtils.isMap(clazz) &&
+                clazz.getPackage() != null && !CodecUtils.shouldBeExcluded(clazz) &&
+                !typeAdapters.contains(clazz);
+    }
+
+}
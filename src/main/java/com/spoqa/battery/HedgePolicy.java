@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when a hedged GET sends a duplicate request. A duplicate is sent once the first
+ * attempt has taken longer than the configured latency percentile of its endpoint. The number
+ * of duplicates is capped to a fraction of the hedged calls.
+ */
+public class HedgePolicy {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final float DEFAULT_MAX_EXTRA_LOAD = 0.1f;
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+
+    /* burst allowance and token unit; tokens are counted in thousandths */
+    private static final int MAX_TOKENS = 10 * 1000;
+    private static final int TOKEN = 1000;
+
+    private final double mPercentile;
+    private final int mTokenRatio;
+    private final int mMinSamples;
+    private final ConcurrentHashMap<Class<?>, LatencyTracker> mTrackers;
+    private final AtomicInteger mTokens;
+
+    public HedgePolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MAX_EXTRA_LOAD, DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * @param percentile   latency percentile after which the duplicate is sent, between 0 and 1
+     * @param maxExtraLoad maximum ratio of duplicates to hedged calls
+     * @param minSamples   number of latencies observed before an endpoint is hedged
+     */
+    public HedgePolicy(double percentile, float maxExtraLoad, int minSamples) {
+        mPercentile = percentile;
+        mTokenRatio = (int) (maxExtraLoad * TOKEN);
+        mMinSamples = minSamples;
+        mTrackers = new ConcurrentHashMap<Class<?>, LatencyTracker>();
+        mTokens = new AtomicInteger(0);
+    }
+
+    /**
+     * Registers a hedged call to the endpoint.
+     *
+     * @return milliseconds after which a duplicate should be sent, or -1 if not enough
+     * latencies have been observed yet
+     */
+    public long onCall(Class<?> endpoint) {
+        int current;
+        do {
+            current = mTokens.get();
+            if (current >= MAX_TOKENS)
+                break;
+        } while (!mTokens.compareAndSet(current, Math.min(MAX_TOKENS, current + mTokenRatio)));
+
+        LatencyTracker tracker = getTracker(endpoint);
+        if (tracker.getSampleCount() < mMinSamples)
+            return -1;
+
+        return tracker.getPercentile(mPercentile);
+    }
+
+    /**
+     * @return true if the extra load cap still allows sending a duplicate
+     */
+    public boolean tryHedge() {
+        int current;
+        do {
+            current = mTokens.get();
+            if (current < TOKEN)
+                return false;
+        } while (!mTokens.compareAndSet(current, current - TOKEN));
+
+        return true;
+    }
+
+    public void recordLatency(Class<?> endpoint, long millis) {
+        getTracker(endpoint).record(millis);
+    }
+
+    public LatencyTracker getTracker(Class<?> endpoint) {
+        LatencyTracker tracker = mTrackers.get(endpoint);
+        if (tracker == null) {
+            LatencyTracker newTracker = new LatencyTracker();
+            tracker = mTrackers.putIfAbsent(endpoint, newTracker);
+            if (tracker == null)
+                tracker = newTracker;
+        }
+
+        return tracker;
+    }
+
+}
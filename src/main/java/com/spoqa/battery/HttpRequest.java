@@ -20,16 +20,33 @@ public class HttpRequest {
         public static final int DELETE = 4;
     }
 
+    /* transports without prioritization (e.g. OkHttpTransport) send requests in order */
+    public static final class Priorities {
+        public static final int LOW = 0;
+        public static final int NORMAL = 1;
+        public static final int HIGH = 2;
+        public static final int IMMEDIATE = 3;
+    }
+
     public static final String HEADER_ACCEPT = "Accept";
     public static final String HEADER_CONTENT_TYPE = "Content-Type";
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
 
     private final int mMethod;
     private final String mUri;
     private final Map<String, String> mHeaders;
     private final Map<String, Object> mParams;
     private byte[] mRequestBody;
+    private StreamingRequestBody mStreamingRequestBody;
     private FieldNameTranslator mFieldNameTranslator;
     private String mContentType;
+    private boolean mCacheable;
+    private boolean mIdempotent;
+    private boolean mStreamingResponse;
+    private int mPriority = Priorities.NORMAL;
+    private RetryPolicy mRetryPolicy;
+    private CallTrace mCallTrace;
 
     public HttpRequest(int method, String uri) {
         mMethod = method;
@@ -40,12 +57,43 @@ public class HttpRequest {
 
     public void setRequestBody(byte[] body) {
         mRequestBody = body;
+        mStreamingRequestBody = null;
+    }
+
+    /* replaces any body set with setRequestBody() */
+    public void setStreamingRequestBody(StreamingRequestBody body) {
+        mStreamingRequestBody = body;
+        mRequestBody = null;
     }
 
     public void setContentType(String contentType) {
         mContentType = contentType;
     }
 
+    public void setCacheable(boolean cacheable) {
+        mCacheable = cacheable;
+    }
+
+    public void setIdempotent(boolean idempotent) {
+        mIdempotent = idempotent;
+    }
+
+    public void setStreamingResponse(boolean streamingResponse) {
+        mStreamingResponse = streamingResponse;
+    }
+
+    public void setPriority(int priority) {
+        mPriority = priority;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    public void setCallTrace(CallTrace callTrace) {
+        mCallTrace = callTrace;
+    }
+
     public void putHeader(String key, String value) {
         mHeaders.put(key, value);
     }
@@ -63,6 +111,14 @@ public class HttpRequest {
         return mRequestBody;
     }
 
+    /**
+     * @return body to be written while the request is sent, or null if the body (if any) is
+     *         held by getRequestBody()
+     */
+    public StreamingRequestBody getStreamingRequestBody() {
+        return mStreamingRequestBody;
+    }
+
     public Map<String, String> getHeaders() {
         return mHeaders;
     }
@@ -75,6 +131,33 @@ public class HttpRequest {
         return mContentType;
     }
 
+    public boolean isCacheable() {
+        return mCacheable;
+    }
+
+    public boolean isIdempotent() {
+        return mIdempotent;
+    }
+
+    public boolean isStreamingResponse() {
+        return mStreamingResponse;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * @return trace of the call this request belongs to, or null if the call is not traced
+     */
+    public CallTrace getCallTrace() {
+        return mCallTrace;
+    }
+
     public FieldNameTranslator getFieldNameTranslator() {
         return mFieldNameTranslator;
     }
@@ -104,7 +187,7 @@ public class HttpRequest {
         }
 
         String output = sb.toString();
-        Logger.debug(TAG, "built uri: " + output);
+        Logger.debug(TAG, "built uri: %1$s", output);
 
         return output;
     }
@@ -117,7 +200,7 @@ public class HttpRequest {
             sb.append(String.format("%1$c%2$s=%3$s", delimiter, key,
                     URLEncoder.encode(value.toString(), "utf-8")));
         } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
             return false;
         }
 
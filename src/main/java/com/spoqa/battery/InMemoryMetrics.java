@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RpcMetrics which keeps everything in memory, for tests and for dumping to the log during
+ * development.
+ */
+public class InMemoryMetrics implements RpcMetrics {
+    private static final String TAG = "InMemoryMetrics";
+
+    public static final class Endpoint {
+        private final Map<Phase, LatencyHistogram> mPhases;
+        private final AtomicLong mBytesSent;
+        private final AtomicLong mBytesReceived;
+        private final AtomicLong mErrors;
+
+        Endpoint() {
+            mPhases = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+            for (Phase phase : Phase.values())
+                mPhases.put(phase, new LatencyHistogram());
+            mBytesSent = new AtomicLong();
+            mBytesReceived = new AtomicLong();
+            mErrors = new AtomicLong();
+        }
+
+        /* latencies are in nanoseconds */
+        public LatencyHistogram getPhase(Phase phase) {
+            return mPhases.get(phase);
+        }
+
+        public long getBytesSent() {
+            return mBytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return mBytesReceived.get();
+        }
+
+        public long getErrorCount() {
+            return mErrors.get();
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, Endpoint> mEndpoints;
+
+    public InMemoryMetrics() {
+        mEndpoints = new ConcurrentHashMap<Class<?>, Endpoint>();
+    }
+
+    @Override
+    public void recordPhase(Class<?> endpoint, Phase phase, long nanos) {
+        endpointOf(endpoint).mPhases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordBytesSent(Class<?> endpoint, long bytes) {
+        endpointOf(endpoint).mBytesSent.addAndGet(bytes);
+    }
+
+    @Override
+    public void recordBytesReceived(Class<?> endpoint, long bytes) {
+        endpointOf(endpoint).mBytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public void recordError(Class<?> endpoint, Throwable error) {
+        endpointOf(endpoint).mErrors.incrementAndGet();
+    }
+
+    public Set<Class<?>> getEndpoints() {
+        return Collections.unmodifiableSet(mEndpoints.keySet());
+    }
+
+    /**
+     * @return metrics of the endpoint, or null if no call to it has been recorded
+     */
+    public Endpoint getEndpoint(Class<?> endpoint) {
+        return mEndpoints.get(endpoint);
+    }
+
+    public void reset() {
+        mEndpoints.clear();
+    }
+
+    /**
+     * Writes count, median, 99th percentile and maximum of every recorded phase to the log.
+     */
+    public void report() {
+        for (Map.Entry<Class<?>, Endpoint> entry : mEndpoints.entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            Logger.info(TAG, "%1$s: %2$d bytes sent, %3$d bytes received, %4$d errors",
+                    entry.getKey().getName(), endpoint.getBytesSent(), endpoint.getBytesReceived(),
+                    endpoint.getErrorCount());
+
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = endpoint.getPhase(phase);
+                if (histogram.getCount() == 0)
+                    continue;
+                Logger.info(TAG, "    %1$s: n=%2$d p50=%3$dus p99=%4$dus max=%5$dus", phase,
+                        histogram.getCount(),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.5)),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(0.99)),
+                        TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+            }
+        }
+    }
+
+    private Endpoint endpointOf(Class<?> endpoint) {
+        Endpoint metrics = mEndpoints.get(endpoint);
+        if (metrics == null) {
+            Endpoint newMetrics = new Endpoint();
+            metrics = mEndpoints.putIfAbsent(endpoint, newMetrics);
+            if (metrics == null)
+                metrics = newMetrics;
+        }
+
+        return metrics;
+    }
+}
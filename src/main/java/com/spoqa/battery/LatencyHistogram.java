@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with log-linear buckets: every power of two is
+ * split into 8 buckets, so a percentile is accurate to within 12.5%.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray mBuckets;
+    private final AtomicLong mCount;
+    private final AtomicLong mTotal;
+    private final AtomicLong mMax;
+
+    public LatencyHistogram() {
+        mBuckets = new AtomicLongArray(BUCKETS);
+        mCount = new AtomicLong();
+        mTotal = new AtomicLong();
+        mMax = new AtomicLong();
+    }
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        mBuckets.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(value);
+
+        long max;
+        do {
+            max = mMax.get();
+        } while (value > max && !mMax.compareAndSet(max, value));
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getTotal() {
+        return mTotal.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotal.get() / count;
+    }
+
+    /**
+     * @param percentile value between 0 and 1
+     * @return upper bound of the bucket holding the percentile, or -1 if nothing has been
+     *         recorded yet
+     */
+    public long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0)
+            return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += mBuckets.get(i);
+            if (seen >= rank)
+                return Math.min(upperBoundOf(i), mMax.get());
+        }
+
+        return mMax.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i)
+            mBuckets.set(i, 0);
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent latency samples of an endpoint in a lock-free ring buffer and answers
+ * percentile queries over them. Percentiles are recomputed only every few samples.
+ */
+public class LatencyTracker {
+
+    private static final int WINDOW = 256;
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    private final AtomicLongArray mSamples;
+    /* wraps around; only its low bits and differences between its values are used */
+    private final AtomicInteger mWritten;
+    private final AtomicInteger mCount;
+    private volatile long[] mSorted;
+    private volatile int mSortedAt;
+
+    public LatencyTracker() {
+        mSamples = new AtomicLongArray(WINDOW);
+        mWritten = new AtomicInteger(0);
+        mCount = new AtomicInteger(0);
+        mSortedAt = -RECOMPUTE_INTERVAL;
+    }
+
+    public void record(long millis) {
+        int index = mWritten.getAndIncrement();
+        mSamples.set(index & (WINDOW - 1), millis);
+
+        int count;
+        do {
+            count = mCount.get();
+            if (count >= WINDOW)
+                return;
+        } while (!mCount.compareAndSet(count, count + 1));
+    }
+
+    public int getSampleCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @param percentile value between 0 and 1
+     * @return latency in milliseconds, or -1 if nothing has been recorded yet
+     */
+    public long getPercentile(double percentile) {
+        int count = mCount.get();
+        if (count == 0)
+            return -1;
+
+        int written = mWritten.get();
+        long[] sorted = mSorted;
+        if (sorted == null || written - mSortedAt >= RECOMPUTE_INTERVAL) {
+            sorted = new long[count];
+            for (int i = 0; i < count; ++i)
+                sorted[i] = mSamples.get(i);
+            Arrays.sort(sorted);
+            mSorted = sorted;
+            mSortedAt = written;
+        }
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.LazyBindingException;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * List bound into fields annotated with {@code @Response(lazy = true)}. It keeps the parsed
+ * elements of the response and binds each of them on its first get(); the parsed response
+ * stays in memory for as long as the list does.
+ *
+ * Like ArrayList, it must not be read from several threads at once. Reading an element which
+ * fails to bind throws a LazyBindingException, again on every later read.
+ */
+final class LazyList extends AbstractList<Object> implements RandomAccess {
+    /* marks positions which have not been bound yet */
+    private static final Object UNBOUND = new Object();
+
+    private final ReflectionCache mCache;
+    private final ResponseDeserializer mDeserializer;
+    private final Class<?> mInnerType;
+    private final FieldNameTranslator mTranslator;
+    private final TypeAdapterCollection mTypeAdapters;
+    private Object[] mElements;
+    private Object[] mValues;
+    private int mSize;
+    private int mBound;
+
+    LazyList(ReflectionCache cache, ResponseDeserializer deserializer, Object internalArray,
+             Class<?> innerType, FieldNameTranslator translator, TypeAdapterCollection typeAdapters) {
+        mCache = cache;
+        mDeserializer = deserializer;
+        mInnerType = innerType;
+        mTranslator = translator;
+        mTypeAdapters = typeAdapters;
+
+        /* only references to the parsed elements are collected here */
+        Object[] elements = new Object[16];
+        int size = 0;
+        for (Object element : deserializer.queryArrayChildren(internalArray)) {
+            if (size == elements.length) {
+                Object[] grown = new Object[size * 2];
+                System.arraycopy(elements, 0, grown, 0, size);
+                elements = grown;
+            }
+            elements[size++] = element;
+        }
+
+        if (size < elements.length) {
+            Object[] trimmed = new Object[size];
+            System.arraycopy(elements, 0, trimmed, 0, size);
+            elements = trimmed;
+        }
+
+        mElements = elements;
+        mValues = new Object[size];
+        for (int i = 0; i < size; ++i)
+            mValues[i] = UNBOUND;
+        mSize = size;
+    }
+
+    @Override
+    public Object get(int location) {
+        if (location < 0 || location >= mSize)
+            throw new IndexOutOfBoundsException(String.format("Index %1$d, size %2$d", location, mSize));
+
+        Object value = mValues[location];
+        if (value != UNBOUND)
+            return value;
+
+        try {
+            value = ObjectBuilder.bindElement(mCache, mDeserializer, mElements[location], mInnerType,
+                    location, mTranslator, mTypeAdapters);
+            if (value == ObjectBuilder.UNSUPPORTED_ELEMENT)
+                value = null;
+        } catch (DeserializationException e) {
+            throw new LazyBindingException(location, e);
+        }
+
+        mValues[location] = value;
+        mElements[location] = null;
+        if (++mBound == mSize)
+            mElements = null;
+
+        return value;
+    }
+
+    @Override
+    public Object set(int location, Object object) {
+        Object previous = get(location);
+        mValues[location] = object;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+}
@@ -6,6 +6,13 @@ package com.spoqa.battery;
 
 public final class Logger {
 
+    /* same priorities as android.util.Log */
+    static public final int VERBOSE = 2;
+    static public final int DEBUG = 3;
+    static public final int INFO = 4;
+    static public final int WARN = 5;
+    static public final int ERROR = 6;
+
     static public interface LoggerImpl {
         abstract void debug(String tag, String msg);
         abstract void error(String tag, String msg);
@@ -14,6 +21,21 @@ public final class Logger {
         abstract void warn(String tag, String msg);
     }
 
+    /**
+     * A logger which can tell whether it is going to write a message, so that messages it
+     * would drop are not built at all. Plain LoggerImpls are handed every message.
+     */
+    static public interface LevelAwareLoggerImpl extends LoggerImpl {
+        abstract boolean isLoggable(String tag, int level);
+    }
+
+    /**
+     * Builds a log message only if it is going to be written.
+     */
+    static public interface MessageSupplier {
+        abstract String get();
+    }
+
     static private LoggerImpl sCurrentLogger;
 
     static public void registerLogger(LoggerImpl logger) {
@@ -24,28 +46,89 @@ public final class Logger {
         sCurrentLogger = null;
     }
 
+    /**
+     * Call sites which need more than a format string and a few arguments to build their
+     * message should check this first.
+     */
+    static public boolean isLoggable(String tag, int level) {
+        LoggerImpl logger = sCurrentLogger;
+        if (logger instanceof LevelAwareLoggerImpl)
+            return ((LevelAwareLoggerImpl) logger).isLoggable(tag, level);
+        return logger != null;
+    }
+
     static public void debug(String tag, String msg) {
-        if (sCurrentLogger != null)
+        if (isLoggable(tag, DEBUG))
             sCurrentLogger.debug(tag, msg);
     }
 
+    static public void debug(String tag, String format, Object... args) {
+        if (isLoggable(tag, DEBUG))
+            sCurrentLogger.debug(tag, String.format(format, args));
+    }
+
+    static public void debug(String tag, MessageSupplier msg) {
+        if (isLoggable(tag, DEBUG))
+            sCurrentLogger.debug(tag, msg.get());
+    }
+
     static public void error(String tag, String msg) {
-        if (sCurrentLogger != null)
+        if (isLoggable(tag, ERROR))
             sCurrentLogger.error(tag, msg);
     }
 
+    static public void error(String tag, String format, Object... args) {
+        if (isLoggable(tag, ERROR))
+            sCurrentLogger.error(tag, String.format(format, args));
+    }
+
+    static public void error(String tag, MessageSupplier msg) {
+        if (isLoggable(tag, ERROR))
+            sCurrentLogger.error(tag, msg.get());
+    }
+
     static public void info(String tag, String msg) {
-        if (sCurrentLogger != null)
+        if (isLoggable(tag, INFO))
             sCurrentLogger.info(tag, msg);
     }
 
+    static public void info(String tag, String format, Object... args) {
+        if (isLoggable(tag, INFO))
+            sCurrentLogger.info(tag, String.format(format, args));
+    }
+
+    static public void info(String tag, MessageSupplier msg) {
+        if (isLoggable(tag, INFO))
+            sCurrentLogger.info(tag, msg.get());
+    }
+
     static public void verbose(String tag, String msg) {
-        if (sCurrentLogger != null)
+        if (isLoggable(tag, VERBOSE))
             sCurrentLogger.verbose(tag, msg);
     }
 
+    static public void verbose(String tag, String format, Object... args) {
+        if (isLoggable(tag, VERBOSE))
+            sCurrentLogger.verbose(tag, String.format(format, args));
+    }
+
+    static public void verbose(String tag, MessageSupplier msg) {
+        if (isLoggable(tag, VERBOSE))
+            sCurrentLogger.verbose(tag, msg.get());
+    }
+
     static public void warn(String tag, String msg) {
-        if (sCurrentLogger != null)
+        if (isLoggable(tag, WARN))
             sCurrentLogger.warn(tag, msg);
     }
+
+    static public void warn(String tag, String format, Object... args) {
+        if (isLoggable(tag, WARN))
+            sCurrentLogger.warn(tag, String.format(format, args));
+    }
+
+    static public void warn(String tag, MessageSupplier msg) {
+        if (isLoggable(tag, WARN))
+            sCurrentLogger.warn(tag, msg.get());
+    }
 }
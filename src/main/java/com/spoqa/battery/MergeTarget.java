@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Set;
+
+/**
+ * May be implemented by RpcObjects declared with {@code @RpcObject(merge = true)} to learn
+ * what a response changed in the object graph it was merged into.
+ */
+public interface MergeTarget {
+
+    /**
+     * Called on the delivery thread right before OnResponse.onResponse().
+     *
+     * @param changedFields paths of the local fields which changed, e.g. "items.2.title"; a
+     *                      list whose size changed is listed by its own path
+     */
+    public void onMerged(Set<String> changedFields);
+
+}
@@ -11,6 +11,10 @@ import com.spoqa.battery.exceptions.IncompatibleTypeException;
 import com.spoqa.battery.exceptions.MissingFieldException;
 import com.spoqa.battery.exceptions.RpcException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -18,84 +22,264 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public final class ObjectBuilder {
     private static final String TAG = "ObjectBuilder";
 
-    private static Map<String, ResponseDeserializer> sDeserializerMap;
+    private static final int MIN_PARALLEL_CHUNK = 256;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
 
-    static {
-        sDeserializerMap = new HashMap<String, ResponseDeserializer>();
-        registerDeserializer(new JsonCodec());
+    private static final CodecRegistry sDefaultRegistry = CodecRegistry.createDefault();
+
+    private static volatile ForkJoinPool sParallelPool;
+    private static volatile int sParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Codecs every RpcContext starts out with (a context copies them when it is created).
+     */
+    public static CodecRegistry getDefaultRegistry() {
+        return sDefaultRegistry;
     }
 
+    /**
+     * Registers a deserializer to the default registry; only contexts created afterwards see
+     * it. Prefer RpcContext.registerDeserializer().
+     */
     public static void registerDeserializer(ResponseDeserializer deserializer) {
         try {
-            sDeserializerMap.put(deserializer.deserializationContentType(), deserializer);
+            sDefaultRegistry.register(deserializer);
         } catch (Exception e) {
-            Logger.error(TAG, "Could not register deserializer class");
-            e.printStackTrace();
+            Logger.error(TAG, "Could not register deserializer class: %1$s", e);
+        }
+    }
+
+    /**
+     * Configures the binding of lists annotated with {@code @Response(parallel = true)}.
+     *
+     * @param pool pool to bind elements on, or null to have one with a thread per CPU created
+     *             on first use
+     * @param threshold lists with fewer elements than this are bound sequentially
+     */
+    public static void setParallelBinding(ForkJoinPool pool, int threshold) {
+        sParallelPool = pool;
+        sParallelThreshold = threshold;
+    }
+
+    private static ForkJoinPool getParallelPool() {
+        ForkJoinPool pool = sParallelPool;
+        if (pool == null) {
+            synchronized (ObjectBuilder.class) {
+                pool = sParallelPool;
+                if (pool == null) {
+                    pool = new ForkJoinPool();
+                    sParallelPool = pool;
+                }
+            }
         }
+        return pool;
     }
 
     public static void build(String contentType, String input, Object object,
                              FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
             throws DeserializationException {
-        String mime = extractMime(contentType);
+        build(sDefaultRegistry, contentType, input, object, translator, typeAdapters);
+    }
 
+    public static void build(CodecRegistry registry, String contentType, String input, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
         if (Config.DEBUG_DUMP_RESPONSE) {
-            Logger.debug(TAG, "Mime: " + mime);
-            Logger.debug(TAG, "Response: " + input);
+            Logger.debug(TAG, "Mime: %1$s", registry.parseMime(contentType));
+            Logger.debug(TAG, "Response: %1$s", input);
         }
-        
-        if (!sDeserializerMap.containsKey(mime)) {
-            RpcException e = new RpcException(String.format("No deserializer associated with MIME type %1$s", mime));
-            throw new DeserializationException(e);
+
+        ResponseDeserializer deserializer = queryDeserializer(registry, contentType);
+        bind(deserializer, deserializer.parseInput(input), object, translator, typeAdapters, null);
+    }
+
+    public static void build(String contentType, InputStream input, String charset, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        build(sDefaultRegistry, contentType, input, charset, object, translator, typeAdapters, null);
+    }
+
+    /**
+     * Same as above, reporting decoding and binding of the response to the given trace (if
+     * not null).
+     */
+    public static void build(String contentType, InputStream input, String charset, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                             CallTrace trace)
+            throws DeserializationException {
+        build(sDefaultRegistry, contentType, input, charset, object, translator, typeAdapters, trace);
+    }
+
+    public static void build(CodecRegistry registry, String contentType, InputStream input,
+                             String charset, Object object, FieldNameTranslator translator,
+                             TypeAdapterCollection typeAdapters, CallTrace trace)
+            throws DeserializationException {
+        build(registry, contentType, input, charset, object, translator, typeAdapters, trace, null);
+    }
+
+    /**
+     * Binds a response into the object graph already held by the given object instead of
+     * replacing it: nested objects and lists are reused, and only values which differ are
+     * overwritten.
+     *
+     * @return paths of the local fields which changed, e.g. "items.2.title". Members bound
+     * through setters cannot be compared and are always included.
+     */
+    public static Set<String> merge(CodecRegistry registry, String contentType, InputStream input,
+                                    String charset, Object object, FieldNameTranslator translator,
+                                    TypeAdapterCollection typeAdapters, CallTrace trace)
+            throws DeserializationException {
+        Set<String> changes = new LinkedHashSet<String>();
+        build(registry, contentType, input, charset, object, translator, typeAdapters, trace, changes);
+        return changes;
+    }
+
+    private static void build(CodecRegistry registry, String contentType, InputStream input,
+                              String charset, Object object, FieldNameTranslator translator,
+                              TypeAdapterCollection typeAdapters, CallTrace trace, Set<String> changes)
+            throws DeserializationException {
+        ResponseDeserializer deserializer = queryDeserializer(registry, contentType);
+        if (trace != null)
+            trace.parseStarted();
+
+        Object internalObject;
+        if (deserializer instanceof StreamingResponseDeserializer && !Config.DEBUG_DUMP_RESPONSE) {
+            internalObject = ((StreamingResponseDeserializer) deserializer).parseInput(input, charset);
+        } else {
+            String body;
+            try {
+                body = StringUtils.read(input, charset);
+            } catch (IOException e) {
+                throw new DeserializationException(e);
+            }
+
+            if (Config.DEBUG_DUMP_RESPONSE) {
+                Logger.debug(TAG, "Mime: %1$s", registry.parseMime(contentType));
+                Logger.debug(TAG, "Response: %1$s", body);
+            }
+
+            internalObject = deserializer.parseInput(body);
         }
 
-        ReflectionCache cache = new ReflectionCache();
+        if (trace != null)
+            trace.parseFinished();
+
+        bind(deserializer, internalObject, object, translator, typeAdapters, changes);
+
+        if (trace != null)
+            trace.bindFinished();
+    }
+
+    /**
+     * Binds each line of a newline-delimited JSON body into an element obtained from the given
+     * stream and hands it over before the next line is read.
+     *
+     * @return number of elements read
+     */
+    public static <E> int buildElements(InputStream input, ElementStream<E> stream,
+                                        FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                        CallTrace trace)
+            throws DeserializationException {
+        return buildElements(sDefaultRegistry, input, stream, translator, typeAdapters, trace);
+    }
+
+    /**
+     * Same as above, parsing each line with the JSON deserializer of the given registry.
+     */
+    public static <E> int buildElements(CodecRegistry registry, InputStream input, ElementStream<E> stream,
+                                        FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                        CallTrace trace)
+            throws DeserializationException {
+        ResponseDeserializer deserializer = queryDeserializer(registry, JsonCodec.MIME_TYPE);
+        if (trace != null)
+            trace.parseStarted();
 
+        int count = 0;
+        E element = null;
         try {
-            CodecUtils.ResponseWithTypeParameters rt = CodecUtils.getResponseObject(cache, object, true);
-            if (rt == null) {
-                deserializeObject(cache, sDeserializerMap.get(mime), input, object,
-                        translator, typeAdapters, true, null);
-            } else {
-                deserializeObject(cache, sDeserializerMap.get(mime), input, rt.object,
-                        translator, typeAdapters, false, rt.typeVariables);
+            /* NDJSON is always UTF-8 */
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0)
+                    continue;
+
+                if (Config.DEBUG_DUMP_RESPONSE)
+                    Logger.debug(TAG, "Element: %1$s", line);
+
+                element = stream.obtainElement(element);
+                bind(deserializer, deserializer.parseInput(line), element, translator, typeAdapters, null);
+                ++count;
+                if (!stream.onElement(element))
+                    break;
             }
-        } catch (RpcException e) {
+        } catch (IOException e) {
             throw new DeserializationException(e);
         }
+
+        if (trace != null) {
+            trace.parseFinished();
+            trace.bindFinished();
+        }
+
+        return count;
     }
 
-    private static String extractMime(String contentType) {
-        String[] parts = contentType.split(";");
-        if (parts.length == 0)
-            return null;
-        return parts[0].trim();
+    private static ResponseDeserializer queryDeserializer(CodecRegistry registry, String contentType)
+            throws DeserializationException {
+        ResponseDeserializer deserializer = registry.query(contentType);
+        if (deserializer == null) {
+            RpcException e = new RpcException(String.format("No deserializer associated with MIME type %1$s",
+                    registry.parseMime(contentType)));
+            throw new DeserializationException(e);
+        }
+
+        return deserializer;
     }
 
-    private static void deserializeObject(ReflectionCache cache, ResponseDeserializer deserializer,
-                                          String input, Object object, FieldNameTranslator translator,
-                                          TypeAdapterCollection typeAdapters, boolean filterByAnnotation,
-                                          Type[] genericTypes)
+    private static void bind(ResponseDeserializer deserializer, Object internalObject, Object object,
+                             FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                             Set<String> changes)
             throws DeserializationException {
-        /* Let's assume the root element is always an object */
-        Object internalObject = deserializer.parseInput(input);
+        ReflectionCache cache = ReflectionCache.getShared();
 
-        visitObject(cache, deserializer, internalObject, object,
-                translator, typeAdapters, filterByAnnotation, genericTypes);
+        try {
+            /* merging keeps the response object the previous response was bound into */
+            CodecUtils.ResponseWithTypeParameters rt = CodecUtils.getResponseObject(cache, object,
+                    changes == null);
+            /* Let's assume the root element is always an object */
+            if (rt == null) {
+                visitObject(cache, deserializer, internalObject, object,
+                        translator, typeAdapters, true, null, "", changes);
+            } else {
+                visitObject(cache, deserializer, internalObject, rt.object,
+                        translator, typeAdapters, false, rt.typeVariables, "", changes);
+            }
+        } catch (RpcException e) {
+            throw new DeserializationException(e);
+        }
     }
 
     private static void visitObject(ReflectionCache cache, ResponseDeserializer deserializer,
                                     Object internalObject, Object dest, FieldNameTranslator translator,
                                     TypeAdapterCollection typeAdapters,
-                                    boolean filterByAnnotation, Type[] genericTypes)
+                                    boolean filterByAnnotation, Type[] genericTypes,
+                                    String path, Set<String> changes)
             throws DeserializationException {
         List<Field> fields;
         List<Method> setters;
@@ -143,7 +327,7 @@ public final class ObjectBuilder {
                 }
 
                 if (Config.DEBUG_DUMP_RESPONSE) {
-                    Logger.debug(TAG, "read field " + fieldName);
+                    Logger.debug(TAG, "read field %1$s", fieldName);
                 }
 
                 Response annotation;
@@ -191,6 +375,19 @@ public final class ObjectBuilder {
                     throw new DeserializationException(new MissingFieldException(f.getName()));
                 }
 
+                String fieldPath = changes != null ? path + fieldName : null;
+                boolean primitive = changes != null && fieldType.isPrimitive();
+                long previousBits = primitive ? getPrimitiveBits(f, dest) : 0;
+                Object previous = changes != null && !primitive ? f.get(dest) : null;
+                if (changes != null && hasValue && value != null && previous != null) {
+                    Class innerType = CodecUtils.isList(fieldType) ?
+                            CodecUtils.getGenericTypeOfField(dest.getClass(), f.getName(), genericTypes) : null;
+                    if (mergeInto(cache, deserializer, value, previous, fieldType, genericType, innerType,
+                            annotation != null && annotation.lazy(), translator, typeAdapters,
+                            fieldPath, changes))
+                        continue;
+                }
+
                 if (hasValue) {
                     if (internalObject == null || value == null) {
                         f.set(dest, null);
@@ -210,20 +407,19 @@ public final class ObjectBuilder {
                         f.set(dest, CodecUtils.parseLong(fieldName, value));
                     } else if (CodecUtils.isList(fieldType)) {
                         if (fieldType != List.class && fieldType != ArrayList.class) {
-                            Logger.error(TAG, String.format("field '%1$s' is not ArrayList or its superclass.",
-                                    fieldName));
+                            Logger.error(TAG, "field '%1$s' is not ArrayList or its superclass.",
+                                    fieldName);
                             continue;
                         }
                         if (!deserializer.isArray(value.getClass())) {
-                            Logger.error(TAG, String.format("internal class of '%1$s' is not an array",
-                                    fieldName));
+                            Logger.error(TAG, "internal class of '%1$s' is not an array",
+                                    fieldName);
                             continue;
                         }
-                        List newList = ArrayList.class.newInstance();
-                        visitArray(cache, deserializer, value, newList,
-                                CodecUtils.getGenericTypeOfField(dest.getClass(), f.getName(), genericTypes),
-                                translator, typeAdapters);
-                        f.set(dest, newList);
+                        Class innerType = CodecUtils.getGenericTypeOfField(dest.getClass(), f.getName(),
+                                genericTypes);
+                        f.set(dest, newList(cache, deserializer, value, fieldType, innerType,
+                                annotation, translator, typeAdapters));
                     } else if (CodecUtils.isMap(fieldType)) {
                         Map newMap = (Map) fieldType.newInstance();
                         visitMap(cache, deserializer, value, newMap);
@@ -242,6 +438,8 @@ public final class ObjectBuilder {
                         f.set(dest, CodecUtils.parseDouble(fieldName, value));
                     } else if (fieldType.isEnum()) {
                         f.set(dest, CodecUtils.parseEnum(fieldType, value.toString()));
+                    } else if (isNativeValue(fieldType, value)) {
+                        f.set(dest, value);
                     } else {
                         if (!CodecUtils.shouldBeExcluded(fieldType)) {
                             /* or it should be a POJO... */
@@ -253,7 +451,7 @@ public final class ObjectBuilder {
 
                             Object newObject = fieldType.newInstance();
                             visitObject(cache, deserializer, value, newObject, translator,
-                                    typeAdapters, false, typeArguments);
+                                    typeAdapters, false, typeArguments, null, null);
                             f.set(dest, newObject);
                         }
                     }
@@ -261,6 +459,13 @@ public final class ObjectBuilder {
                     if (!CodecUtils.isPrimitive(fieldType))
                         f.set(dest, null);
                 }
+
+                if (primitive) {
+                    if (getPrimitiveBits(f, dest) != previousBits)
+                        changes.add(fieldPath);
+                } else if (changes != null && !isEqual(previous, f.get(dest))) {
+                    changes.add(fieldPath);
+                }
             }
 
             /* search methods */
@@ -283,7 +488,7 @@ public final class ObjectBuilder {
                 }
 
                 if (Config.DEBUG_DUMP_RESPONSE) {
-                    Logger.debug(TAG, "read method " + fieldName);
+                    Logger.debug(TAG, "read method %1$s", fieldName);
                 }
 
                 Response annotation;
@@ -331,6 +536,10 @@ public final class ObjectBuilder {
                     throw new DeserializationException(new MissingFieldException(fieldName));
                 }
 
+                /* setters cannot be read back to compare */
+                if (changes != null && hasValue)
+                    changes.add(path + fieldName);
+
                 if (hasValue) {
                     if (internalObject == null || value == null) {
                         //m.invoke(dest, null);
@@ -346,21 +555,20 @@ public final class ObjectBuilder {
                         m.invoke(dest, CodecUtils.parseLong(fieldName, value));
                     } else if (CodecUtils.isList(fieldType)) {
                         if (fieldType != List.class && fieldType != ArrayList.class) {
-                            Logger.error(TAG, String.format("argument of method '%1$s' is not " +
+                            Logger.error(TAG, "argument of method '%1$s' is not " +
                                     "ArrayList or its superclass.",
-                                    fieldName));
+                                    fieldName);
                             continue;
                         }
                         if (!deserializer.isArray(value.getClass())) {
-                            Logger.error(TAG, String.format("internal class of '%1$s' is not an array",
-                                    fieldName));
+                            Logger.error(TAG, "internal class of '%1$s' is not an array",
+                                    fieldName);
                             continue;
                         }
-                        List newList = ArrayList.class.newInstance();
-                        visitArray(cache, deserializer, value, newList,
-                                CodecUtils.getGenericTypeOfMethod(dest.getClass(), m.getName(), List.class),
-                                translator, typeAdapters);
-                        m.invoke(dest, newList);
+                        Class innerType = CodecUtils.getGenericTypeOfMethod(dest.getClass(), m.getName(),
+                                List.class);
+                        m.invoke(dest, newList(cache, deserializer, value, fieldType, innerType,
+                                annotation, translator, typeAdapters));
                     } else if (CodecUtils.isMap(fieldType)) {
                         Map newMap = (Map) fieldType.newInstance();
                         visitMap(cache, deserializer, value, newMap);
@@ -373,6 +581,8 @@ public final class ObjectBuilder {
                         m.invoke(dest, CodecUtils.parseDouble(fieldName, value));
                     } else if (fieldType.isEnum()) {
                         m.invoke(dest, CodecUtils.parseEnum(fieldType, value.toString()));
+                    } else if (isNativeValue(fieldType, value)) {
+                        m.invoke(dest, value);
                     } else {
                         if (!CodecUtils.shouldBeExcluded(fieldType)) {
                             /* or it should be a POJO... */
@@ -384,72 +594,218 @@ public final class ObjectBuilder {
 
                             Object newObject = fieldType.newInstance();
                             visitObject(cache, deserializer, value, newObject, translator,
-                                    typeAdapters, false, typeArguments);
+                                    typeAdapters, false, typeArguments, null, null);
                             m.invoke(dest, newObject);
                         }
                     }
                 }
             }
         } catch (Exception e) {
-            if (BuildConfig.DEBUG)
-                e.printStackTrace();
             throw new DeserializationException(e);
         } catch (IncompatibleTypeException e) {
-            if (BuildConfig.DEBUG)
-                e.printStackTrace();
             throw new DeserializationException(e);
         }
     }
 
+    private static List newList(ReflectionCache cache, ResponseDeserializer deserializer,
+                                Object internalArray, Class listType, Class innerType,
+                                Response annotation, FieldNameTranslator translator,
+                                TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        /* a LazyList is not an ArrayList; fields declared as such are always bound eagerly */
+        if (annotation != null && annotation.lazy() && listType == List.class)
+            return new LazyList(cache, deserializer, internalArray, innerType, translator, typeAdapters);
+
+        if (annotation != null && annotation.parallel())
+            return visitArrayInParallel(cache, deserializer, internalArray, innerType, translator, typeAdapters);
+
+        List list = new ArrayList();
+        visitArray(cache, deserializer, internalArray, list, innerType, translator, typeAdapters);
+        return list;
+    }
+
+    private static List<Object> visitArrayInParallel(ReflectionCache cache, ResponseDeserializer deserializer,
+                                                     Object internalArray, Class<?> innerType,
+                                                     FieldNameTranslator translator,
+                                                     TypeAdapterCollection typeAdapters)
+            throws DeserializationException {
+        Iterable<Object> children = deserializer.queryArrayChildren(internalArray);
+        if (!hasAtLeast(children, sParallelThreshold)) {
+            List<Object> list = new ArrayList<Object>();
+            visitArray(cache, deserializer, internalArray, list, innerType, translator, typeAdapters);
+            return list;
+        }
+
+        /* subtasks look their elements up by index */
+        List<Object> elements;
+        if (children instanceof List && children instanceof RandomAccess) {
+            elements = (List<Object>) children;
+        } else {
+            elements = new ArrayList<Object>();
+            for (Object element : children)
+                elements.add(element);
+        }
+
+        int size = elements.size();
+        List<Object> list = new ArrayList<Object>(size);
+        ForkJoinPool pool = getParallelPool();
+        Object[] values = new Object[size];
+        ParallelBindTask task = new ParallelBindTask(cache, deserializer, elements, values, innerType,
+                translator, typeAdapters, 0, size,
+                Math.max(MIN_PARALLEL_CHUNK, size / (pool.getParallelism() * 4)));
+        pool.invoke(task);
+        if (task.mError[0] != null)
+            throw task.mError[0];
+
+        for (Object value : values) {
+            if (value != UNSUPPORTED_ELEMENT)
+                list.add(value);
+        }
+        return list;
+    }
+
+    /* counts no further than needed unless the array knows its size */
+    private static boolean hasAtLeast(Iterable<Object> elements, int count) {
+        if (elements instanceof Collection)
+            return ((Collection<Object>) elements).size() >= count;
+
+        Iterator<Object> iterator = elements.iterator();
+        for (int i = 0; i < count; ++i) {
+            if (!iterator.hasNext())
+                return false;
+            iterator.next();
+        }
+        return true;
+    }
+
+    /* binds elements [from, to) of a list into the same positions of values */
+    private static final class ParallelBindTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ReflectionCache mCache;
+        private final ResponseDeserializer mDeserializer;
+        private final List<Object> mElements;
+        private final Object[] mValues;
+        private final Class<?> mInnerType;
+        private final FieldNameTranslator mTranslator;
+        private final TypeAdapterCollection mTypeAdapters;
+        private final int mFrom;
+        private final int mTo;
+        private final int mChunk;
+        /* first error of the whole list, shared by every subtask */
+        private final DeserializationException[] mError;
+
+        ParallelBindTask(ReflectionCache cache, ResponseDeserializer deserializer, List<Object> elements,
+                         Object[] values, Class<?> innerType, FieldNameTranslator translator,
+                         TypeAdapterCollection typeAdapters, int from, int to, int chunk) {
+            this(cache, deserializer, elements, values, innerType, translator, typeAdapters, from, to,
+                    chunk, new DeserializationException[1]);
+        }
+
+        private ParallelBindTask(ReflectionCache cache, ResponseDeserializer deserializer,
+                                 List<Object> elements, Object[] values, Class<?> innerType,
+                                 FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                 int from, int to, int chunk, DeserializationException[] error) {
+            mCache = cache;
+            mDeserializer = deserializer;
+            mElements = elements;
+            mValues = values;
+            mInnerType = innerType;
+            mTranslator = translator;
+            mTypeAdapters = typeAdapters;
+            mFrom = from;
+            mTo = to;
+            mChunk = chunk;
+            mError = error;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > mChunk) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(fork(mFrom, middle), fork(middle, mTo));
+                return;
+            }
+
+            for (int i = mFrom; i < mTo; ++i) {
+                if (mError[0] != null)
+                    return;
+                try {
+                    mValues[i] = bindElement(mCache, mDeserializer, mElements.get(i), mInnerType, i,
+                            mTranslator, mTypeAdapters);
+                } catch (DeserializationException e) {
+                    synchronized (mError) {
+                        if (mError[0] == null)
+                            mError[0] = e;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private ParallelBindTask fork(int from, int to) {
+            return new ParallelBindTask(mCache, mDeserializer, mElements, mValues, mInnerType,
+                    mTranslator, mTypeAdapters, from, to, mChunk, mError);
+        }
+    }
+
     private static void visitArray(ReflectionCache cache,
                                    ResponseDeserializer deserializer, Object internalArray,
-                                   List<?> output, Class innerType,
+                                   List output, Class innerType,
                                    FieldNameTranslator translator,
                                    TypeAdapterCollection typeAdapters) throws DeserializationException {
-        try {
-            Method add = List.class.getDeclaredMethod("add", Object.class);
-            Integer index = 0;
-
-            for (Object element : deserializer.queryArrayChildren(internalArray)) {
-                if (element == null) {
-                    add.invoke(output, (Object) null);
-                } else if (CodecUtils.isList(innerType)) {
-                    /* TODO implement nested list */
-                } else if (CodecUtils.isMap(innerType)) {
-                    /* TODO implement nested map */
-                } else if (deserializer.isObject(element.getClass())) {
-                    Object o = innerType.newInstance();
-                    visitObject(cache, deserializer, element, o, translator, typeAdapters, false, null);
-                    add.invoke(output, o);
-                } else {
-                    Object newElem = element;
-                    try {
-                        if (typeAdapters.contains(innerType))
-                            newElem = typeAdapters.query(innerType).decode(element.toString());
-                        else if (CodecUtils.isString(innerType))
-                            newElem = CodecUtils.parseString(element);
-                        else if (CodecUtils.isInteger(innerType))
-                            newElem = CodecUtils.parseInteger(index.toString(), element);
-                        else if (CodecUtils.isBoolean(innerType))
-                            newElem = CodecUtils.parseBoolean(index.toString(), element);
-                        else if (CodecUtils.isDouble(innerType))
-                            newElem = CodecUtils.parseDouble(index.toString(), element);
-                        else if (CodecUtils.isFloat(innerType))
-                            newElem = CodecUtils.parseFloat(index.toString(), element);
-                        else if (CodecUtils.isLong(innerType))
-                            newElem = CodecUtils.parseLong(index.toString(), element);
-                    } catch (IncompatibleTypeException e) {
-                        throw new DeserializationException(e);
-                    }
+        int index = 0;
+
+        for (Object element : deserializer.queryArrayChildren(internalArray)) {
+            Object newElem = bindElement(cache, deserializer, element, innerType, index,
+                    translator, typeAdapters);
+            if (newElem != UNSUPPORTED_ELEMENT)
+                output.add(newElem);
+            ++index;
+        }
+    }
 
-                    add.invoke(output, newElem);
+    /* returned by bindElement() for elements which cannot be bound yet */
+    static final Object UNSUPPORTED_ELEMENT = new Object();
 
-                    ++index;
-                }
+    static Object bindElement(ReflectionCache cache, ResponseDeserializer deserializer,
+                              Object element, Class innerType, int index,
+                              FieldNameTranslator translator,
+                              TypeAdapterCollection typeAdapters) throws DeserializationException {
+        try {
+            if (element == null) {
+                return null;
+            } else if (CodecUtils.isList(innerType)) {
+                /* TODO implement nested list */
+                return UNSUPPORTED_ELEMENT;
+            } else if (CodecUtils.isMap(innerType)) {
+                /* TODO implement nested map */
+                return UNSUPPORTED_ELEMENT;
+            } else if (deserializer.isObject(element.getClass())) {
+                Object o = innerType.newInstance();
+                visitObject(cache, deserializer, element, o, translator, typeAdapters, false, null,
+                        null, null);
+                return o;
             }
-        } catch (NoSuchMethodException e) {
-            // there's no List without add()
-        } catch (InvocationTargetException e) {
+
+            String position = Integer.toString(index);
+            if (typeAdapters.contains(innerType))
+                return typeAdapters.query(innerType).decode(element.toString());
+            else if (CodecUtils.isString(innerType))
+                return CodecUtils.parseString(element);
+            else if (CodecUtils.isInteger(innerType))
+                return CodecUtils.parseInteger(position, element);
+            else if (CodecUtils.isBoolean(innerType))
+                return CodecUtils.parseBoolean(position, element);
+            else if (CodecUtils.isDouble(innerType))
+                return CodecUtils.parseDouble(position, element);
+            else if (CodecUtils.isFloat(innerType))
+                return CodecUtils.parseFloat(position, element);
+            else if (CodecUtils.isLong(innerType))
+                return CodecUtils.parseLong(position, element);
+            else
+                return element;
+        } catch (IncompatibleTypeException e) {
             throw new DeserializationException(e);
         } catch (IllegalAccessException e) {
             throw new DeserializationException(e);
@@ -458,11 +814,130 @@ public final class ObjectBuilder {
         }
     }
 
+    /* binds into the object or list already held by a member instead of replacing it */
+    private static boolean mergeInto(ReflectionCache cache, ResponseDeserializer deserializer,
+                                     Object value, Object existing, Class<?> fieldType, Type genericType,
+                                     Class<?> innerType, boolean lazy, FieldNameTranslator translator,
+                                     TypeAdapterCollection typeAdapters, String path, Set<String> changes)
+            throws DeserializationException {
+        if (CodecUtils.isList(fieldType)) {
+            if (lazy || !(existing instanceof ArrayList) || !deserializer.isArray(value.getClass()))
+                return false;
+
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) existing;
+            mergeArray(cache, deserializer, value, list, innerType, translator, typeAdapters,
+                    path, changes);
+            return true;
+        }
+
+        if (deserializer.isObject(value.getClass()) && fieldType.isInstance(existing) &&
+                !CodecUtils.isMap(fieldType) && !CodecUtils.shouldBeExcluded(existing.getClass())) {
+            Type[] typeArguments = null;
+            if (genericType instanceof ParameterizedType)
+                typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+
+            visitObject(cache, deserializer, value, existing, translator, typeAdapters, false,
+                    typeArguments, path + ".", changes);
+            return true;
+        }
+
+        return false;
+    }
+
+    private static void mergeArray(ReflectionCache cache, ResponseDeserializer deserializer,
+                                   Object internalArray, List<Object> list, Class<?> innerType,
+                                   FieldNameTranslator translator, TypeAdapterCollection typeAdapters,
+                                   String path, Set<String> changes) throws DeserializationException {
+        int index = 0;
+        int position = 0;
+        boolean resized = false;
+
+        for (Object element : deserializer.queryArrayChildren(internalArray)) {
+            Object current = position < list.size() ? list.get(position) : null;
+            String elementPath = path + "." + position;
+
+            if (element != null && current != null && deserializer.isObject(element.getClass()) &&
+                    !CodecUtils.isList(innerType) && !CodecUtils.isMap(innerType) &&
+                    innerType.isInstance(current)) {
+                visitObject(cache, deserializer, element, current, translator, typeAdapters, false,
+                        null, elementPath + ".", changes);
+            } else {
+                Object newElem = bindElement(cache, deserializer, element, innerType, index,
+                        translator, typeAdapters);
+                if (newElem == UNSUPPORTED_ELEMENT) {
+                    ++index;
+                    continue;
+                }
+
+                if (position < list.size()) {
+                    if (!isEqual(current, newElem)) {
+                        list.set(position, newElem);
+                        changes.add(elementPath);
+                    }
+                } else {
+                    list.add(newElem);
+                    resized = true;
+                }
+            }
+
+            ++index;
+            ++position;
+        }
+
+        while (list.size() > position) {
+            list.remove(list.size() - 1);
+            resized = true;
+        }
+
+        if (resized)
+            changes.add(path);
+    }
+
+    /* reads a primitive field without boxing it; equal bits mean an equal value */
+    private static long getPrimitiveBits(Field f, Object dest) throws IllegalAccessException {
+        Class<?> type = f.getType();
+        if (type == int.class)
+            return f.getInt(dest);
+        else if (type == long.class)
+            return f.getLong(dest);
+        else if (type == double.class)
+            return Double.doubleToLongBits(f.getDouble(dest));
+        else if (type == float.class)
+            return Float.floatToIntBits(f.getFloat(dest));
+        else if (type == boolean.class)
+            return f.getBoolean(dest) ? 1 : 0;
+        else if (type == short.class)
+            return f.getShort(dest);
+        else if (type == byte.class)
+            return f.getByte(dest);
+        else
+            return f.getChar(dest);
+    }
+
+    private static boolean isEqual(Object a, Object b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+        /* comparing would bind every element */
+        if (a instanceof LazyList || b instanceof LazyList)
+            return false;
+        if (a instanceof byte[] && b instanceof byte[])
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        return a.equals(b);
+    }
+
     private static void visitMap(ReflectionCache cache, ResponseDeserializer deserializer,
                                  Object internalObject, Map<?, ?> m) throws DeserializationException {
         /* TODO implement deserialization into Map<?,?> */
     }
 
+    /* binary codecs decode some types (byte[], timestamps) into their final Java form */
+    private static boolean isNativeValue(Class fieldType, Object value) {
+        return fieldType != Object.class && fieldType.isInstance(value);
+    }
+
     private static Object findChild(ResponseDeserializer deserializer, Object internalObject,
                              String path) throws NoSuchElementException {
         String[] frags = path.split("\\.");
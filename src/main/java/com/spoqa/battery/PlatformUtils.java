@@ -1,6 +1,7 @@
 package com.spoqa.battery;
 
 import java.io.File;
+import java.net.URLConnection;
 
 public final class PlatformUtils {
 
@@ -24,8 +25,8 @@ public final class PlatformUtils {
         if (sCurrentImpl != null) {
             return sCurrentImpl.getMimeType(path);
         } else {
-            Logger.warn(TAG, "No PlaformUtilsImpl installed");
-            return null;
+            /* off-device (e.g. in benchmarks on a plain JVM) fall back to the JDK's file name map */
+            return URLConnection.guessContentTypeFromName(path.getName());
         }
     }
 }
@@ -0,0 +1,18 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Notified once RpcContext.prewarmAsync() is done, on the context's Scheduler if it has one.
+ */
+public interface PrewarmListener {
+
+    /**
+     * @param rpcObjects number of RpcObject classes prewarmed
+     * @param elapsedMillis time taken, including the package scan if there was one
+     */
+    public void onPrewarmed(int rpcObjects, long elapsedMillis);
+
+}
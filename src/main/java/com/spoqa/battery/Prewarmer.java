@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.Uri;
+import com.spoqa.battery.annotations.UriPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Walks the request and response bindings of RpcObject classes the way RequestFactory and
+ * ObjectBuilder do, so that the shared ReflectionCache is filled before the first call.
+ */
+final class Prewarmer {
+    private static final String TAG = "Prewarmer";
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * @return false if the class is no RpcObject or its declaration cannot be used
+     */
+    static boolean prewarm(RpcContext<?> context, Class<?> rpcObjectClass) {
+        RpcObject decl = rpcObjectClass.getAnnotation(RpcObject.class);
+        if (decl == null)
+            return false;
+
+        ReflectionCache cache = ReflectionCache.getShared();
+        TypeAdapterCollection typeAdapters = context.getTypeAdapters();
+        FieldNameTranslator translator;
+        try {
+            /* loads the classes the request names, besides instantiating them once */
+            translator = RequestFactory.getNameTranslator(context, decl);
+            Class<?> retryPolicy = decl.retryPolicy();
+            if (retryPolicy != RpcObject.NULL.class)
+                retryPolicy.getDeclaredConstructor().newInstance();
+            Class<?> requestSerializer = decl.requestSerializer();
+            if (requestSerializer != RpcObject.NULL.class)
+                requestSerializer.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            Logger.warn(TAG, "Could not prewarm %1$s: %2$s", rpcObjectClass.getName(), e);
+            return false;
+        }
+
+        /* request */
+        CodecUtils.getAnnotatedFields(cache, Uri.class, rpcObjectClass);
+        CodecUtils.getAnnotatedFields(cache, UriPath.class, rpcObjectClass);
+        CodecUtils.getAnnotatedFields(cache, QueryString.class, rpcObjectClass);
+        visitRequest(cache, rpcObjectClass, typeAdapters);
+
+        /* response */
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        if (decl.streaming()) {
+            Class<?> elementType = getElementType(rpcObjectClass);
+            if (elementType != null)
+                visitResponse(cache, elementType, true, typeAdapters, visited);
+        } else {
+            List<Field> responseObjects = CodecUtils.getAnnotatedFields(cache, ResponseObject.class,
+                    rpcObjectClass);
+            if (responseObjects.size() == 1)
+                visitResponse(cache, responseObjects.get(0).getType(), false, typeAdapters, visited);
+            else
+                visitResponse(cache, rpcObjectClass, true, typeAdapters, visited);
+
+            if (context.getFieldProjectionParameter() != null)
+                context.getFieldProjection(rpcObjectClass, translator);
+        }
+
+        return true;
+    }
+
+    private static void visitRequest(ReflectionCache cache, Class<?> clazz, TypeAdapterCollection typeAdapters) {
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestObject.class, clazz);
+        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestObject.class, clazz);
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+
+        if (fields.size() + getters.size() == 1) {
+            Class<?> requestType = fields.size() == 1 ? fields.get(0).getType() : getters.get(0).getReturnType();
+            visitRequestBody(cache, requestType, false, typeAdapters, visited);
+        } else {
+            visitRequestBody(cache, clazz, true, typeAdapters, visited);
+        }
+    }
+
+    private static void visitRequestBody(ReflectionCache cache, Class<?> clazz, boolean filterByAnnotation,
+                                         TypeAdapterCollection typeAdapters, Set<Class<?>> visited) {
+        if (!visited.add(clazz))
+            return;
+
+        List<Field> fields;
+        List<Method> getters;
+        if (filterByAnnotation) {
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, clazz);
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, clazz);
+        } else {
+            fields = CodecUtils.getAllFields(cache, clazz);
+            getters = CodecUtils.getAllGetterMethods(cache, clazz);
+        }
+
+        for (Field f : fields) {
+            Class<?> nested = getNestedType(f.getGenericType(), typeAdapters);
+            if (nested != null)
+                visitRequestBody(cache, nested, false, typeAdapters, visited);
+        }
+        for (Method m : getters) {
+            Class<?> nested = getNestedType(m.getGenericReturnType(), typeAdapters);
+            if (nested != null)
+                visitRequestBody(cache, nested, false, typeAdapters, visited);
+        }
+    }
+
+    private static void visitResponse(ReflectionCache cache, Class<?> clazz, boolean filterByAnnotation,
+                                      TypeAdapterCollection typeAdapters, Set<Class<?>> visited) {
+        if (!visited.add(clazz))
+            return;
+
+        List<Field> fields;
+        List<Method> setters;
+        if (filterByAnnotation) {
+            fields = CodecUtils.getAnnotatedFields(cache, Response.class, clazz);
+            setters = CodecUtils.getAnnotatedSetterMethods(cache, Response.class, clazz);
+        } else {
+            fields = CodecUtils.getAllFields(cache, clazz);
+            setters = CodecUtils.getAllSetterMethods(cache, clazz);
+        }
+
+        for (Field f : fields) {
+            if (Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers()))
+                continue;
+            if (!cache.containsFieldAnnotation(f, Response.class))
+                cache.cacheFieldAnnotation(f, Response.class, f.getAnnotation(Response.class));
+
+            Class<?> nested = getNestedType(f.getGenericType(), typeAdapters);
+            if (nested != null)
+                visitResponse(cache, nested, false, typeAdapters, visited);
+        }
+
+        for (Method m : setters) {
+            if (!cache.containsMethodAnnotation(m, Response.class))
+                cache.cacheMethodAnnotation(m, Response.class, m.getAnnotation(Response.class));
+
+            Class<?> nested = getNestedType(m.getGenericParameterTypes()[0], typeAdapters);
+            if (nested != null)
+                visitResponse(cache, nested, false, typeAdapters, visited);
+        }
+    }
+
+    /* type of the object (or of the list elements) a member binds into, if it is one */
+    private static Class<?> getNestedType(Type type, TypeAdapterCollection typeAdapters) {
+        Class<?> clazz = FieldProjection.rawType(type);
+        if (clazz != null && CodecUtils.isList(clazz)) {
+            if (type instanceof ParameterizedType)
+                clazz = FieldProjection.rawType(((ParameterizedType) type).getActualTypeArguments()[0]);
+            else
+                clazz = null;
+        }
+
+        if (clazz == null || !FieldProjection.isNestedObject(clazz, typeAdapters))
+            return null;
+        return clazz;
+    }
+
+    private static Class<?> getElementType(Class<?> rpcObjectClass) {
+        for (Class<?> c = rpcObjectClass; c != null; c = c.getSuperclass()) {
+            for (Type type : c.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType &&
+                        ((ParameterizedType) type).getRawType() == ElementStream.class)
+                    return FieldProjection.rawType(((ParameterizedType) type).getActualTypeArguments()[0]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names of the classes in a package and its subpackages, looked up in the directories and
+     * JAR files of the given class loader.
+     */
+    static List<String> findClassNames(ClassLoader classLoader, String packageName) throws IOException {
+        List<String> names = new ArrayList<String>();
+        String path = packageName.replace('.', '/');
+
+        Enumeration<URL> resources = classLoader.getResources(path);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            if ("file".equals(url.getProtocol())) {
+                findClassNames(new File(URLDecoder.decode(url.getPath(), "UTF-8")), packageName, names);
+            } else if ("jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+                if (!(connection instanceof JarURLConnection))
+                    continue;
+                JarFile jar = ((JarURLConnection) connection).getJarFile();
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(path + "/") && name.endsWith(CLASS_SUFFIX))
+                        names.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static void findClassNames(File directory, String packageName, List<String> names) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory())
+                findClassNames(file, packageName + "." + name, names);
+            else if (name.endsWith(CLASS_SUFFIX))
+                names.add(packageName + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+        }
+    }
+}
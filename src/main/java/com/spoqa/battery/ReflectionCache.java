@@ -7,18 +7,21 @@ package com.spoqa.battery;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ReflectionCache {
 
     private static class AnnotatedPropertyKey {
-        public static AnnotatedPropertyKey instance = null;
-
-        static {
-            instance = new AnnotatedPropertyKey();
-        }
+        /* probe reused for lookups so that cache hits do not allocate */
+        public static final ThreadLocal<AnnotatedPropertyKey> instance = new ThreadLocal<AnnotatedPropertyKey>() {
+            @Override
+            protected AnnotatedPropertyKey initialValue() {
+                return new AnnotatedPropertyKey();
+            }
+        };
 
         public Class<? extends Annotation> annotation;
         public Class baseClass;
@@ -71,11 +74,12 @@ public class ReflectionCache {
     }
 
     private static class FieldAnnotationKey extends MemberAnnotationKey<Field> {
-        static public FieldAnnotationKey instance = null;
-
-        static {
-            instance = new FieldAnnotationKey(null, null);
-        }
+        static public final ThreadLocal<FieldAnnotationKey> instance = new ThreadLocal<FieldAnnotationKey>() {
+            @Override
+            protected FieldAnnotationKey initialValue() {
+                return new FieldAnnotationKey(null, null);
+            }
+        };
 
         public FieldAnnotationKey(Field field, Class<? extends Annotation> annotation) {
             super(field, annotation);
@@ -83,11 +87,12 @@ public class ReflectionCache {
     }
 
     private static class MethodAnnotationKey extends MemberAnnotationKey<Method> {
-        static public MethodAnnotationKey instance = null;
-
-        static {
-            instance = new MethodAnnotationKey(null, null);
-        }
+        static public final ThreadLocal<MethodAnnotationKey> instance = new ThreadLocal<MethodAnnotationKey>() {
+            @Override
+            protected MethodAnnotationKey initialValue() {
+                return new MethodAnnotationKey(null, null);
+            }
+        };
 
         public MethodAnnotationKey(Method method, Class<? extends Annotation> annotation) {
             super(method, annotation);
@@ -100,138 +105,145 @@ public class ReflectionCache {
     private Map<Class, List<Field>> mFieldsCache;
     private Map<Class, List<Method>> mGetterMethodsCache;
     private Map<Class, List<Method>> mSetterMethodsCache;
-    private Map<FieldAnnotationKey, Annotation> mFieldAnnotationCache;
-    private Map<MethodAnnotationKey, Annotation> mMethodAnnotationCache;
+    private Map<FieldAnnotationKey, Object> mFieldAnnotationCache;
+    private Map<MethodAnnotationKey, Object> mMethodAnnotationCache;
+    private final AtomicLong mMissCount;
+
+    /* stands for a member known not to carry the annotation */
+    private static final Object NO_ANNOTATION = new Object();
+
+    private static final ReflectionCache sShared = new ReflectionCache();
 
     public ReflectionCache() {
-        mAnnotatedFieldsCache = new HashMap<AnnotatedPropertyKey, List<Field>>();
-        mAnnotatedGetterMethodsCache = new HashMap<AnnotatedPropertyKey, List<Method>>();
-        mAnnotatedSetterMethodsCache = new HashMap<AnnotatedPropertyKey, List<Method>>();
-        mFieldsCache = new HashMap<Class, List<Field>>();
-        mGetterMethodsCache = new HashMap<Class, List<Method>>();
-        mSetterMethodsCache = new HashMap<Class, List<Method>>();
-        mFieldAnnotationCache = new HashMap<FieldAnnotationKey, Annotation>();
-        mMethodAnnotationCache = new HashMap<MethodAnnotationKey, Annotation>();
+        mAnnotatedFieldsCache = new ConcurrentHashMap<AnnotatedPropertyKey, List<Field>>();
+        mAnnotatedGetterMethodsCache = new ConcurrentHashMap<AnnotatedPropertyKey, List<Method>>();
+        mAnnotatedSetterMethodsCache = new ConcurrentHashMap<AnnotatedPropertyKey, List<Method>>();
+        mFieldsCache = new ConcurrentHashMap<Class, List<Field>>();
+        mGetterMethodsCache = new ConcurrentHashMap<Class, List<Method>>();
+        mSetterMethodsCache = new ConcurrentHashMap<Class, List<Method>>();
+        mFieldAnnotationCache = new ConcurrentHashMap<FieldAnnotationKey, Object>();
+        mMethodAnnotationCache = new ConcurrentHashMap<MethodAnnotationKey, Object>();
+        mMissCount = new AtomicLong();
+    }
+
+    /**
+     * Process-wide cache used by the codecs, ObjectBuilder and RequestFactory. Reflection
+     * results never change for a loaded class, so they are looked up once per class.
+     */
+    public static ReflectionCache getShared() {
+        return sShared;
+    }
+
+    /**
+     * Number of lookups this cache could not answer, i.e. the number of reflective scans made
+     * through it. Stays constant in a steady state; useful as a regression budget.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
     }
 
     public List<Field> queryCachedAnnotatedFields(Class<? extends Annotation> annotation,
                                                   Class baseClass) {
-        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance;
+        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance.get();
         key.annotation = annotation;
         key.baseClass = baseClass;
 
-        if (mAnnotatedFieldsCache.containsKey(key))
-            return mAnnotatedFieldsCache.get(key);
-
-        return null;
+        return mAnnotatedFieldsCache.get(key);
     }
 
     public List<Method> queryCachedAnnotatedGetterMethods(Class<? extends Annotation> annotation,
                                                           Class baseClass) {
-        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance;
+        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance.get();
         key.annotation = annotation;
         key.baseClass = baseClass;
 
-        if (mAnnotatedGetterMethodsCache.containsKey(key))
-            return mAnnotatedGetterMethodsCache.get(key);
-
-        return null;
+        return mAnnotatedGetterMethodsCache.get(key);
     }
 
     public List<Method> queryCachedAnnotatedSetterMethods(Class<? extends Annotation> annotation,
                                                           Class baseClass) {
-        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance;
+        AnnotatedPropertyKey key = AnnotatedPropertyKey.instance.get();
         key.annotation = annotation;
         key.baseClass = baseClass;
 
-        if (mAnnotatedSetterMethodsCache.containsKey(key))
-            return mAnnotatedSetterMethodsCache.get(key);
-
-        return null;
+        return mAnnotatedSetterMethodsCache.get(key);
     }
 
     public List<Field> queryCachedFields(Class baseClass) {
-        if (mFieldsCache.containsKey(baseClass))
-            return mFieldsCache.get(baseClass);
-
-        return null;
+        return mFieldsCache.get(baseClass);
     }
 
     public List<Method> queryCachedGetterMethods(Class baseClass) {
-        if (mGetterMethodsCache.containsKey(baseClass))
-            return mGetterMethodsCache.get(baseClass);
-
-        return null;
+        return mGetterMethodsCache.get(baseClass);
     }
 
     public List<Method> queryCachedSetterMethods(Class baseClass) {
-        if (mSetterMethodsCache.containsKey(baseClass))
-            return mSetterMethodsCache.get(baseClass);
-
-        return null;
+        return mSetterMethodsCache.get(baseClass);
     }
 
     public Annotation queryFieldAnnotation(Field field, Class<? extends Annotation> annotationClass) {
-        FieldAnnotationKey key = FieldAnnotationKey.instance;
+        FieldAnnotationKey key = FieldAnnotationKey.instance.get();
         key.member = field;
         key.annotation = annotationClass;
 
-        if (mFieldAnnotationCache.containsKey(key)) {
-            return mFieldAnnotationCache.get(key);
-        }
-
-        return null;
+        Object annotation = mFieldAnnotationCache.get(key);
+        return annotation != NO_ANNOTATION ? (Annotation) annotation : null;
     }
 
     public Annotation queryMethodAnnotation(Method method, Class<? extends Annotation> annotationClass) {
-        MethodAnnotationKey key = MethodAnnotationKey.instance;
+        MethodAnnotationKey key = MethodAnnotationKey.instance.get();
         key.member = method;
         key.annotation = annotationClass;
 
-        if (mFieldAnnotationCache.containsKey(key)) {
-            return mFieldAnnotationCache.get(key);
-        }
-
-        return null;
+        Object annotation = mMethodAnnotationCache.get(key);
+        return annotation != NO_ANNOTATION ? (Annotation) annotation : null;
     }
 
     public void cacheAnnotatedFields(Class<? extends Annotation> annotation, Class baseClass,
                                      List<Field> fields) {
+        mMissCount.incrementAndGet();
         mAnnotatedFieldsCache.put(new AnnotatedPropertyKey(annotation, baseClass), fields);
     }
 
     public void cacheAnnotatedGetterMethods(Class<? extends Annotation> annotation, Class baseClass,
                                             List<Method> methods) {
+        mMissCount.incrementAndGet();
         mAnnotatedGetterMethodsCache.put(new AnnotatedPropertyKey(annotation, baseClass), methods);
     }
 
     public void cacheAnnotatedSetterMethods(Class<? extends Annotation> annotation, Class baseClass,
                                             List<Method> methods) {
+        mMissCount.incrementAndGet();
         mAnnotatedSetterMethodsCache.put(new AnnotatedPropertyKey(annotation, baseClass), methods);
     }
 
     public void cacheFields(Class baseClass, List<Field> fields) {
+        mMissCount.incrementAndGet();
         mFieldsCache.put(baseClass, fields);
     }
 
     public void cacheGetterMethods(Class baseClass, List<Method> methods) {
+        mMissCount.incrementAndGet();
         mGetterMethodsCache.put(baseClass, methods);
     }
 
     public void cacheSetterMethods(Class baseClass, List<Method> methods) {
+        mMissCount.incrementAndGet();
         mSetterMethodsCache.put(baseClass, methods);
     }
 
     public void cacheFieldAnnotation(Field field, Class<? extends Annotation> annotationClass, Annotation a) {
-        mFieldAnnotationCache.put(new FieldAnnotationKey(field, annotationClass), a);
+        mMissCount.incrementAndGet();
+        mFieldAnnotationCache.put(new FieldAnnotationKey(field, annotationClass), a != null ? a : NO_ANNOTATION);
     }
 
     public void cacheMethodAnnotation(Method method, Class<? extends Annotation> annotationClass, Annotation a) {
-        mMethodAnnotationCache.put(new MethodAnnotationKey(method, annotationClass), a);
+        mMissCount.incrementAndGet();
+        mMethodAnnotationCache.put(new MethodAnnotationKey(method, annotationClass), a != null ? a : NO_ANNOTATION);
     }
 
     public boolean containsFieldAnnotation(Field field, Class<? extends Annotation> annotationClass) {
-        FieldAnnotationKey key = FieldAnnotationKey.instance;
+        FieldAnnotationKey key = FieldAnnotationKey.instance.get();
         key.member = field;
         key.annotation = annotationClass;
 
@@ -239,11 +251,11 @@ public class ReflectionCache {
     }
 
     public boolean containsMethodAnnotation(Method method, Class<? extends Annotation> annotationClass) {
-        MethodAnnotationKey key = MethodAnnotationKey.instance;
+        MethodAnnotationKey key = MethodAnnotationKey.instance.get();
         key.member = method;
         key.annotation = annotationClass;
 
-        return mFieldAnnotationCache.containsKey(key);
+        return mMethodAnnotationCache.containsKey(key);
     }
 
 }
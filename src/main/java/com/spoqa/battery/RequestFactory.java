@@ -8,10 +8,12 @@ import com.spoqa.battery.annotations.QueryString;
 import com.spoqa.battery.annotations.RpcObject;
 import com.spoqa.battery.annotations.Uri;
 import com.spoqa.battery.annotations.UriPath;
+import com.spoqa.battery.codecs.JsonCodec;
 import com.spoqa.battery.codecs.UrlEncodedFormEncoder;
 import com.spoqa.battery.exceptions.ContextException;
 import com.spoqa.battery.exceptions.SerializationException;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.URLEncoder;
@@ -23,37 +25,36 @@ import java.util.Map;
 public final class RequestFactory {
     private static final String TAG = "RequestFactory";
 
-    public static HttpRequest createRequest(RpcContext context, Object object)
+    public static HttpRequest createRequest(RpcContext<?> context, Object object)
             throws SerializationException, ContextException {
+        CallTrace trace = CallTrace.create(context, object);
+        long startTime = trace != null ? System.nanoTime() : 0;
+
         /* validate current preprocessor context (if exists) */
         if (context.getRequestPreprocessor() != null)
             context.getRequestPreprocessor().validateContext(object);
 
         RpcObject annotation = object.getClass().getAnnotation(RpcObject.class);
         if (annotation == null) {
-            Logger.error(TAG, String.format("Attempted to create a request from non-RpcObject"));
+            Logger.error(TAG, "Attempted to create a request from non-RpcObject");
             return null;
         }
 
-        FieldNameTransformer remote, local;
-        local = context.getLocalFieldNameTransformer();
-        remote = context.getRemoteFieldNameTransformer();
+        FieldNameTranslator nameTranslator;
+        RetryPolicy retryPolicy;
+        retryPolicy = context.getRetryPolicy();
         try {
-            if (annotation.remoteName() != RpcObject.NULL.class)
-                remote = (FieldNameTransformer) annotation.remoteName().newInstance();
-            if (annotation.localName() != RpcObject.NULL.class)
-                local = (FieldNameTransformer) annotation.localName().newInstance();
+            nameTranslator = getNameTranslator(context, annotation);
+            if (annotation.retryPolicy() != RpcObject.NULL.class)
+                retryPolicy = (RetryPolicy) annotation.retryPolicy().newInstance();
         } catch (InstantiationException e) {
-            e.printStackTrace();
-            Logger.error(TAG, "Failed to create request.");
+            Logger.error(TAG, "Failed to create request: %1$s", e);
             return null;
         } catch (IllegalAccessException e) {
-            e.printStackTrace();
-            Logger.error(TAG, "Failed to create request.");
+            Logger.error(TAG, "Failed to create request: %1$s", e);
             return null;
         }
 
-        FieldNameTranslator nameTranslator = new FieldNameTranslator(remote, local);
         TypeAdapterCollection typeAdapters = context.getTypeAdapters();
 
         Map<String, Object> parameters = new HashMap<String, Object>();
@@ -64,9 +65,40 @@ public final class RequestFactory {
             return null;
         }
 
+        /* element bindings of streaming objects are not known from their class */
+        String projectionParameter = context.getFieldProjectionParameter();
+        if (projectionParameter != null && !annotation.streaming() &&
+                !parameters.containsKey(projectionParameter)) {
+            String projection = context.getFieldProjection(object.getClass(), nameTranslator);
+            if (projection.length() > 0)
+                parameters.put(projectionParameter, projection);
+        }
+
         HttpRequest request = new HttpRequest(method, uri);
         request.setNameTranslator(nameTranslator);
         request.putParameters(parameters);
+        request.putHeader(HttpRequest.HEADER_ACCEPT_ENCODING, ContentEncoding.ACCEPTED);
+        request.setIdempotent(method != HttpRequest.Methods.POST || annotation.idempotent());
+        request.setPriority(annotation.priority());
+        request.setRetryPolicy(retryPolicy);
+        request.setCallTrace(trace);
+
+        /* only safe requests may be served from the response cache */
+        request.setCacheable(annotation.cacheable() && method == HttpRequest.Methods.GET);
+
+        if (annotation.streaming()) {
+            /* the body is consumed while it arrives; it cannot be cached or replayed */
+            request.setStreamingResponse(true);
+            request.setCacheable(false);
+            request.putHeader(HttpRequest.HEADER_ACCEPT, JsonCodec.MIME_TYPE_NDJSON);
+        } else {
+            String accept = context.getCodecRegistry().getAcceptHeader();
+            if (accept != null)
+                request.putHeader(HttpRequest.HEADER_ACCEPT, accept);
+        }
+
+        if (trace != null)
+            trace.requestCreated();
 
         /* set request body */
         Class serializerCls = annotation.requestSerializer();
@@ -78,19 +110,19 @@ public final class RequestFactory {
                 try {
                     RequestSerializer serializer = (RequestSerializer) serializerCls.newInstance();
                     request.putHeader(HttpRequest.HEADER_CONTENT_TYPE, serializer.serializationContentType());
-                    request.setRequestBody(serializer.serializeObject(object, nameTranslator, typeAdapters));
+                    serialize(context, serializer, object, annotation, request, nameTranslator);
                 } catch (InstantiationException e) {
-                    e.printStackTrace();
+                    Logger.error(TAG, e.toString());
                 } catch (IllegalAccessException e) {
-                    e.printStackTrace();
+                    Logger.error(TAG, e.toString());
                 }
             } else if (context.getRequestSerializer() != null) {
                 RequestSerializer serializer = context.getRequestSerializer();
                 request.setContentType(serializer.serializationContentType());
-                request.setRequestBody(serializer.serializeObject(object, nameTranslator, typeAdapters));
+                serialize(context, serializer, object, annotation, request, nameTranslator);
             } else {
-                Logger.warn(TAG, String.format("Current RpcObject %1$s does not have " +
-                                "RequestSerializer specified.", object.getClass().getName()));
+                Logger.warn(TAG, "Current RpcObject %1$s does not have " +
+                                "RequestSerializer specified.", object.getClass().getName());
             }
         }
 
@@ -98,30 +130,103 @@ public final class RequestFactory {
         if (context.getRequestPreprocessor() != null)
             context.getRequestPreprocessor().processHttpRequest(object, request);
 
+        if (trace != null)
+            trace.requestBuilt(startTime);
+
         return request;
     }
 
+    /* translator of the context's field names, unless the RpcObject declares its own */
+    static FieldNameTranslator getNameTranslator(RpcContext<?> context, RpcObject annotation)
+            throws InstantiationException, IllegalAccessException {
+        FieldNameTransformer remote = context.getRemoteFieldNameTransformer();
+        FieldNameTransformer local = context.getLocalFieldNameTransformer();
+        if (annotation.remoteName() != RpcObject.NULL.class)
+            remote = (FieldNameTransformer) annotation.remoteName().newInstance();
+        if (annotation.localName() != RpcObject.NULL.class)
+            local = (FieldNameTransformer) annotation.localName().newInstance();
+        return new FieldNameTranslator(remote, local);
+    }
+
+    private static void serialize(RpcContext context, RequestSerializer serializer, Object object,
+                                  RpcObject rpcObjectDecl, HttpRequest request, FieldNameTranslator translator)
+            throws SerializationException {
+        CallTrace trace = request.getCallTrace();
+        long startTime = trace != null ? System.nanoTime() : 0;
+
+        if (rpcObjectDecl.streamingRequest()) {
+            if (serializer instanceof StreamingRequestSerializer) {
+                setStreamingRequestBody(context, rpcObjectDecl, request,
+                        ((StreamingRequestSerializer) serializer).serializeStream(object, translator,
+                                context.getTypeAdapters()));
+                /* nothing is serialized yet; the length is reported if it is known */
+                if (trace != null) {
+                    long length = request.getStreamingRequestBody().contentLength();
+                    trace.requestSerialized(startTime, Math.max(length, 0));
+                }
+                return;
+            }
+            Logger.warn(TAG, "%1$s cannot stream request bodies; buffering the body of %2$s",
+                    serializer.getClass().getName(), object.getClass().getName());
+        }
+
+        setRequestBody(context, rpcObjectDecl, request,
+                serializer.serializeObject(object, translator, context.getTypeAdapters()));
+
+        if (trace != null) {
+            byte[] body = request.getRequestBody();
+            trace.requestSerialized(startTime, body != null ? body.length : 0);
+        }
+    }
+
+    private static void setStreamingRequestBody(RpcContext context, RpcObject rpcObjectDecl,
+                                                HttpRequest request, StreamingRequestBody body) {
+        long length = body.contentLength();
+        if (rpcObjectDecl.compressRequest() &&
+                (length < 0 || length >= context.getRequestCompressionThreshold())) {
+            body = ContentEncoding.gzip(body);
+            request.putHeader(HttpRequest.HEADER_CONTENT_ENCODING, ContentEncoding.GZIP);
+        }
+
+        request.setStreamingRequestBody(body);
+    }
+
+    private static void setRequestBody(RpcContext context, RpcObject rpcObjectDecl, HttpRequest request,
+                                       byte[] body) {
+        if (rpcObjectDecl.compressRequest() && body != null &&
+                body.length >= context.getRequestCompressionThreshold()) {
+            try {
+                body = ContentEncoding.gzip(body);
+                request.putHeader(HttpRequest.HEADER_CONTENT_ENCODING, ContentEncoding.GZIP);
+            } catch (IOException e) {
+                Logger.warn(TAG, "Could not compress request body: %1$s", e);
+            }
+        }
+
+        request.setRequestBody(body);
+    }
+
     private static String buildUri(RpcContext context, Object object, RpcObject rpcObjectDecl,
                                    Map<String, Object> params, FieldNameTranslator translator) {
         String uri = null;
 
         /* Search for @Uri field */
-        List<Field> uriFields = CodecUtils.getAnnotatedFields(null, Uri.class, object.getClass());
+        List<Field> uriFields = CodecUtils.getAnnotatedFields(ReflectionCache.getShared(), Uri.class, object.getClass());
         if (uriFields != null && uriFields.size() > 0) {
             if (uriFields.size() > 1) {
-                Logger.error(TAG, String.format("More than one Uri fields in object %1$s",
-                        object.getClass().getName()));
+                Logger.error(TAG, "More than one Uri fields in object %1$s",
+                        object.getClass().getName());
                 return null;
             }
             Field f = uriFields.get(0);
             if (f.getType() != String.class) {
-                Logger.error(TAG, String.format("Field %1$s must be String", f.getType().getName()));
+                Logger.error(TAG, "Field %1$s must be String", f.getType().getName());
                 return null;
             }
             try {
                 uri = f.get(object).toString();
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 return null;
             }
         }
@@ -130,13 +235,13 @@ public final class RequestFactory {
             uri = rpcObjectDecl.uri();
 
         if (uri == null || uri.length() == 0) {
-            Logger.error(TAG, String.format("No URI supplied for object %1$s", object.getClass().getName()));
+            Logger.error(TAG, "No URI supplied for object %1$s", object.getClass().getName());
             return null;
         }
 
         if (!uri.startsWith("http://") && !uri.startsWith("https://")) {
             if (context.getDefaultUriPrefix() == null) {
-                Logger.error(TAG, String.format("No URI prefix given."));
+                Logger.error(TAG, "No URI prefix given.");
                 return null;
             }
             if (uri.startsWith("/"))
@@ -148,7 +253,7 @@ public final class RequestFactory {
 
         /* Build REST URI fragment */
         Class self = object.getClass();
-        List<Field> uriFragments = CodecUtils.getAnnotatedFields(null, UriPath.class, self);
+        List<Field> uriFragments = CodecUtils.getAnnotatedFields(ReflectionCache.getShared(), UriPath.class, self);
         if (uriFragments != null && uriFragments.size() > 0) {
             Map<Integer, Field> fieldMap = new HashMap<Integer, Field>();
             for (Field f : uriFragments) {
@@ -159,8 +264,8 @@ public final class RequestFactory {
             List<Field> fieldList = new ArrayList<Field>();
             for (int i = 1; i <= fieldMap.size(); ++i) {
                 if (!fieldMap.containsKey(i)) {
-                    Logger.error(TAG, String.format("Positional argument %1$d not found in %2$s", i,
-                            self.getName()));
+                    Logger.error(TAG, "Positional argument %1$d not found in %2$s", i,
+                            self.getName());
                     return null;
                 } else {
                     fieldList.add(fieldMap.get(i));
@@ -178,8 +283,8 @@ public final class RequestFactory {
                             (!CodecUtils.isPrimitive(fieldType) &&
                              !CodecUtils.isString(fieldObject)) &&
                              !typeAdapters.contains(fieldType)) {
-                        Logger.error(TAG, String.format("Type '%1$s' of field '%2$s' could not be built into URI.",
-                                fieldType.getName(), paramName));
+                        Logger.error(TAG, "Type '%1$s' of field '%2$s' could not be built into URI.",
+                                fieldType.getName(), paramName);
                         return null;
                     }
 
@@ -195,11 +300,11 @@ public final class RequestFactory {
                         parameters[i] = fieldObject;
                     }
                 } catch (IllegalAccessException e) {
-                    e.printStackTrace();
+                    Logger.error(TAG, e.toString());
                     ++i;
                     continue;
                 } catch (SerializationException e) {
-                    e.printStackTrace();
+                    Logger.error(TAG, e.toString());
                     ++i;
                     continue;
                 }
@@ -210,7 +315,7 @@ public final class RequestFactory {
         }
 
         /* append query string */
-        List<Field> queryStringParams = CodecUtils.getAnnotatedFields(null, QueryString.class, object.getClass());
+        List<Field> queryStringParams = CodecUtils.getAnnotatedFields(ReflectionCache.getShared(), QueryString.class, object.getClass());
         for (Field field : queryStringParams) {
             String fieldName = field.getName();
             Class fieldType = field.getType();
@@ -223,8 +328,8 @@ public final class RequestFactory {
                     !CodecUtils.isLong(fieldType) &&
                     !CodecUtils.isList(fieldType) &&
                     !typeAdapters.contains(fieldType)) {
-                Logger.error(TAG, String.format("Type '%1$s' of field '%2$s' could not be built into URI.",
-                        fieldType.getName(), field.getName()));
+                Logger.error(TAG, "Type '%1$s' of field '%2$s' could not be built into URI.",
+                        fieldType.getName(), field.getName());
                 continue;
             }
 
@@ -243,9 +348,9 @@ public final class RequestFactory {
                     params.put(fieldName, field.get(object));
                 }
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
             } catch (SerializationException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
             }
         }
 
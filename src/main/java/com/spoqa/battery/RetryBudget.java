@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket shared by every call of a context which keeps retries from multiplying the
+ * load on a failing backend. Each retry takes a token, each success puts back a
+ * fraction of one, and retries are only allowed while the bucket is more than half full.
+ */
+public class RetryBudget {
+
+    public static final int DEFAULT_MAX_TOKENS = 10;
+    public static final float DEFAULT_TOKEN_RATIO = 0.1f;
+
+    /* tokens are counted in thousandths */
+    private static final int TOKEN = 1000;
+
+    private final int mMaxTokens;
+    private final int mTokenRatio;
+    private final AtomicInteger mTokens;
+
+    public RetryBudget() {
+        this(DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_RATIO);
+    }
+
+    public RetryBudget(int maxTokens, float tokenRatio) {
+        mMaxTokens = maxTokens * TOKEN;
+        mTokenRatio = (int) (tokenRatio * TOKEN);
+        mTokens = new AtomicInteger(mMaxTokens);
+    }
+
+    public void onSuccess() {
+        int current;
+        do {
+            current = mTokens.get();
+            if (current >= mMaxTokens)
+                return;
+        } while (!mTokens.compareAndSet(current, Math.min(mMaxTokens, current + mTokenRatio)));
+    }
+
+    public void onFailure() {
+        int current;
+        do {
+            current = mTokens.get();
+            if (current <= 0)
+                return;
+        } while (!mTokens.compareAndSet(current, Math.max(0, current - TOKEN)));
+    }
+
+    public boolean canRetry() {
+        return mTokens.get() > mMaxTokens / 2;
+    }
+
+    public float getTokens() {
+        return mTokens.get() / (float) TOKEN;
+    }
+
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.util.Map;
+
+public interface RetryPolicy {
+
+    /**
+     * Decides whether a failed attempt should be retried.
+     *
+     * @param attempt    number of attempts made so far, starting from 1
+     * @param statusCode HTTP status of the failed attempt, or 0 if no response was received
+     * @param headers    response headers of the failed attempt, or null if no response was received
+     * @return milliseconds to wait before the next attempt, or a negative value to give up
+     */
+    public long getRetryDelay(HttpRequest request, int attempt, int statusCode,
+                              Map<String, String> headers, Throwable cause);
+
+}
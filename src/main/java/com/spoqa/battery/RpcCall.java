@@ -0,0 +1,462 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.exceptions.CircuitBreakerOpenException;
+import com.spoqa.battery.exceptions.ConcurrencyLimitExceededException;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.ResponseValidationException;
+import com.spoqa.battery.exceptions.RpcException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of a single invocation, which may span several exchanges with the transport when it
+ * is retried or hedged. All state is kept on the thread of the context's Scheduler.
+ */
+final class RpcCall<T, C> {
+    private static final String TAG = "RpcCall";
+
+    private final RpcContext<C> mContext;
+    private final T mRpcObject;
+    private final RpcObject mRpcObjectDecl;
+    private final HttpRequest mRequest;
+    private final OnResponse<T> mOnResponse;
+    private final C mFrontendContext;
+    private final Transport mTransport;
+    private final Scheduler mScheduler;
+    private final List<Attempt> mInFlight;
+    private final HedgePolicy mHedgePolicy;
+    private final ConcurrencyLimiter mLimiter;
+    private final String mLimiterKey;
+    private final CircuitBreaker mCircuitBreaker;
+    private final CallTrace mTrace;
+    private final RpcMetrics mMetrics;
+    /* set by the first successful response, the only one which gets bound */
+    private final AtomicBoolean mResponded;
+    private long mStartTime;
+    private long mCallStartTime;
+    private int mAttempts;
+    private int mFailedAttempts;
+    private boolean mCompleted;
+    private Runnable mPendingHedge;
+
+    private class Attempt implements Transport.Callback, Runnable {
+        private final int mNumber;
+        private final long mEnqueueTime;
+        private Transport.Exchange mExchange;
+        private long mStartTime;
+        /* when the transport reported success, so that binding is not counted as latency */
+        private long mResponseTime;
+        private boolean mStarted;
+        private boolean mCancelled;
+        private boolean mBound;
+        private Throwable mBindError;
+
+        Attempt() {
+            mNumber = ++mAttempts;
+            mEnqueueTime = mTrace != null ? System.nanoTime() : 0;
+        }
+
+        /* called once the concurrency limiter grants a slot */
+        @Override
+        public void run() {
+            mStarted = true;
+            if (mCancelled) {
+                mLimiter.releaseIgnored(mLimiterKey);
+                return;
+            }
+            mStartTime = now();
+            if (mTrace != null)
+                mTrace.requestEnqueued(mNumber);
+            if (mMetrics != null)
+                recordBytesSent();
+            mExchange = mTransport.execute(mRequest, this);
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if (mExchange != null)
+                mExchange.cancel();
+            if (mStarted && mLimiter != null)
+                mLimiter.releaseIgnored(mLimiterKey);
+        }
+
+        /* streaming bodies of unknown length are not counted */
+        void recordBytesSent() {
+            StreamingRequestBody stream = mRequest.getStreamingRequestBody();
+            if (stream != null) {
+                if (stream.contentLength() >= 0)
+                    mMetrics.recordBytesSent(mRpcObject.getClass(), stream.contentLength());
+            } else if (mRequest.getRequestBody() != null) {
+                mMetrics.recordBytesSent(mRpcObject.getClass(), mRequest.getRequestBody().length);
+            }
+        }
+
+        void release(boolean dropped) {
+            if (mLimiter != null)
+                mLimiter.release(mLimiterKey, (mResponseTime != 0 ? mResponseTime : now()) - mStartTime,
+                        dropped);
+        }
+
+        void recordMetrics(TransportResponse response) {
+            if (mMetrics == null || response == null)
+                return;
+
+            Class<?> endpoint = mRpcObject.getClass();
+            long networkStart = response.networkStartTime();
+            long networkEnd = response.networkEndTime();
+            /* served from a cache if the request never reached the network */
+            if (networkStart != 0) {
+                mMetrics.recordPhase(endpoint, RpcMetrics.Phase.QUEUE_WAIT, networkStart - mEnqueueTime);
+                if (networkEnd != 0)
+                    mMetrics.recordPhase(endpoint, RpcMetrics.Phase.NETWORK, networkEnd - networkStart);
+            }
+            mMetrics.recordBytesReceived(endpoint, response.length());
+        }
+
+        /*
+         * deserializes, binds and validates the response on whichever thread this is called;
+         * errors are kept to be reported on the delivery thread
+         */
+        void bind(TransportResponse s) {
+            mBound = true;
+            try {
+                /* force content type if declared by RpcObject */
+                String contentType = mRpcObjectDecl.expectedContentType();
+                if (contentType == null || contentType.length() == 0) {
+                    contentType = s.contentType();
+                }
+                if (mRequest.isStreamingResponse()) {
+                    if (!(mRpcObject instanceof ElementStream)) {
+                        throw new DeserializationException(new RpcException(String.format(
+                                "%1$s is streaming but does not implement ElementStream",
+                                mRpcObject.getClass().getName())));
+                    }
+                    ObjectBuilder.buildElements(mContext.getCodecRegistry(), s.stream(),
+                            (ElementStream<?>) mRpcObject, mRequest.getFieldNameTranslator(),
+                            mContext.getTypeAdapters(), mTrace);
+                } else if (mRpcObjectDecl.merge()) {
+                    Set<String> changes = ObjectBuilder.merge(mContext.getCodecRegistry(), contentType,
+                            s.stream(), s.charset(), mRpcObject, mRequest.getFieldNameTranslator(),
+                            mContext.getTypeAdapters(), mTrace);
+                    if (mRpcObject instanceof MergeTarget)
+                        ((MergeTarget) mRpcObject).onMerged(changes);
+                } else {
+                    ObjectBuilder.build(mContext.getCodecRegistry(), contentType, s.stream(), s.charset(),
+                            mRpcObject, mRequest.getFieldNameTranslator(), mContext.getTypeAdapters(), mTrace);
+                }
+
+                if (mContext.getResponseValidator() != null) {
+                    long validationStart = mTrace != null ? System.nanoTime() : 0;
+                    Object responseObject = CodecUtils.getResponseObject(ReflectionCache.getShared(), mRpcObject, false);
+                    if (responseObject == null) {
+                        responseObject = mRpcObject;
+                    }
+                    mContext.getResponseValidator().validate(responseObject);
+                    if (mTrace != null)
+                        mTrace.validated(validationStart);
+                }
+            } catch (ResponseValidationException e) {
+                mBindError = e;
+            } catch (RpcException e) {
+                mBindError = e;
+            } catch (DeserializationException e) {
+                mBindError = e;
+            } catch (IOException e) {
+                mBindError = new DeserializationException(e);
+            } finally {
+                if (s.isStreaming())
+                    s.close();
+            }
+        }
+
+        @Override
+        public void onResponse(TransportResponse response) {
+            mResponseTime = now();
+            /* a hedged twin (or an earlier delivery of the same exchange) got there first */
+            if (!mResponded.compareAndSet(false, true)) {
+                if (response.isStreaming())
+                    response.close();
+                return;
+            }
+
+            /* merges touch objects the delivery thread may be reading; live bodies are read here */
+            if (mRpcObjectDecl.merge() && !response.isStreaming()) {
+                deliver(() -> onAttemptSucceeded(this, response));
+                return;
+            }
+
+            Executor executor = mContext.getBindingExecutor();
+            if (executor != null) {
+                try {
+                    executor.execute(() -> {
+                        bind(response);
+                        deliver(() -> onAttemptSucceeded(this, response));
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    Logger.warn(TAG, "Binding executor rejected %1$s", mRequest.getUri());
+                }
+            }
+
+            if (!mScheduler.isCurrentThread() || response.isStreaming())
+                bind(response);
+            deliver(() -> onAttemptSucceeded(this, response));
+        }
+
+        @Override
+        public void onFailure(TransportError error) {
+            deliver(() -> onAttemptFailed(this, error));
+        }
+    }
+
+    RpcCall(RpcContext<C> context, T rpcObject, RpcObject rpcObjectDecl, HttpRequest request,
+            OnResponse<T> onResponse, C frontendContext) {
+        mContext = context;
+        mRpcObject = rpcObject;
+        mRpcObjectDecl = rpcObjectDecl;
+        mRequest = request;
+        mOnResponse = onResponse;
+        mFrontendContext = frontendContext;
+        mTransport = context.getTransport();
+        mScheduler = context.getScheduler();
+        mInFlight = new ArrayList<Attempt>(2);
+
+        if (rpcObjectDecl.hedged() && request.getMethod() == HttpRequest.Methods.GET &&
+                !request.isStreamingResponse())
+            mHedgePolicy = context.getHedgePolicy();
+        else
+            mHedgePolicy = null;
+
+        mLimiter = context.getConcurrencyLimiter();
+        mLimiterKey = mLimiter != null ? mLimiter.getKey(request.getUri()) : null;
+        mCircuitBreaker = context.getCircuitBreaker();
+        mTrace = request.getCallTrace();
+        mMetrics = mTrace != null ? mTrace.getMetrics() : null;
+        mResponded = new AtomicBoolean();
+    }
+
+    void start() {
+        if (!mScheduler.isCurrentThread()) {
+            mScheduler.execute(this::start);
+            return;
+        }
+
+        mCallStartTime = mTrace != null ? System.nanoTime() : 0;
+
+        if (mCircuitBreaker != null && !mCircuitBreaker.tryAcquire(mRpcObject.getClass())) {
+            mCompleted = true;
+            onFailure(new CircuitBreakerOpenException(mRpcObject.getClass().getName()));
+            return;
+        }
+
+        mStartTime = now();
+        startAttempt();
+
+        if (mHedgePolicy != null) {
+            long delay = mHedgePolicy.onCall(mRpcObject.getClass());
+            if (delay >= 0) {
+                mPendingHedge = () -> {
+                    mPendingHedge = null;
+                    if (!mCompleted && mInFlight.size() == 1 && mHedgePolicy.tryHedge()) {
+                        if (Config.DEBUG_DUMP_REQUEST)
+                            Logger.debug(TAG, "Hedging %1$s", mRequest.getUri());
+                        startAttempt();
+                    }
+                };
+                mScheduler.schedule(mPendingHedge, delay);
+            }
+        }
+    }
+
+    private void deliver(Runnable task) {
+        if (mScheduler.isCurrentThread())
+            task.run();
+        else
+            mScheduler.execute(task);
+    }
+
+    private void startAttempt() {
+        Attempt attempt = new Attempt();
+        mInFlight.add(attempt);
+
+        if (mLimiter == null) {
+            attempt.run();
+        } else if (!mLimiter.execute(mLimiterKey, attempt)) {
+            mInFlight.remove(attempt);
+            if (mInFlight.isEmpty()) {
+                complete();
+                if (mCircuitBreaker != null)
+                    mCircuitBreaker.onIgnored(mRpcObject.getClass());
+                onFailure(new ConcurrencyLimitExceededException(mLimiterKey));
+            }
+        }
+    }
+
+    private void complete() {
+        mCompleted = true;
+
+        if (mPendingHedge != null) {
+            mScheduler.cancel(mPendingHedge);
+            mPendingHedge = null;
+        }
+
+        /* losers of a hedged call are dropped before they are delivered (and parsed) */
+        for (Attempt attempt : mInFlight)
+            attempt.cancel();
+        mInFlight.clear();
+    }
+
+    private void onAttemptSucceeded(Attempt attempt, TransportResponse s) {
+        if (mCompleted)
+            return;
+
+        mInFlight.remove(attempt);
+        attempt.release(false);
+        complete();
+        attempt.recordMetrics(s);
+        mContext.getRetryBudget().onSuccess();
+        if (mCircuitBreaker != null)
+            mCircuitBreaker.onSuccess(mRpcObject.getClass(), attempt.mResponseTime - mStartTime);
+
+        if (mHedgePolicy != null)
+            mHedgePolicy.recordLatency(mRpcObject.getClass(), attempt.mResponseTime - attempt.mStartTime);
+
+        /* transports delivering on the Scheduler without a binding executor, and merges */
+        if (!attempt.mBound)
+            attempt.bind(s);
+
+        Throwable error = attempt.mBindError;
+        recordCall(error);
+        if (error == null)
+            mOnResponse.onResponse(mRpcObject);
+        else if (!mContext.dispatchErrorHandler(mFrontendContext, error))
+            mOnResponse.onFailure(error);
+    }
+
+    private void onAttemptFailed(Attempt attempt, TransportError error) {
+        if (mCompleted)
+            return;
+
+        mInFlight.remove(attempt);
+        attempt.release(isOverloaded(error));
+        attempt.recordMetrics(error.response());
+
+        /* a hedged twin is still on its way */
+        if (!mInFlight.isEmpty())
+            return;
+
+        long delay = getRetryDelay(++mFailedAttempts, error);
+        if (delay >= 0) {
+            if (Config.DEBUG_DUMP_REQUEST) {
+                Logger.debug(TAG, "Retrying %1$s in %2$d ms (attempt %3$d)",
+                        mRequest.getUri(), delay, mFailedAttempts + 1);
+            }
+            mScheduler.schedule(() -> {
+                if (!mCompleted)
+                    startAttempt();
+            }, delay);
+            return;
+        }
+
+        complete();
+        if (mCircuitBreaker != null) {
+            /* the endpoint is up if it could tell us what was wrong with the request */
+            long latency = now() - mStartTime;
+            if (error.statusCode() == 0 || error.statusCode() >= 500)
+                mCircuitBreaker.onFailure(mRpcObject.getClass(), latency);
+            else
+                mCircuitBreaker.onSuccess(mRpcObject.getClass(), latency);
+        }
+        onFailure(error);
+    }
+
+    private static boolean isOverloaded(TransportError error) {
+        return error.isTimeout() || error.statusCode() == 429 || error.statusCode() == 503;
+    }
+
+    private long getRetryDelay(int attempt, TransportError error) {
+        RetryPolicy policy = mRequest.getRetryPolicy();
+        if (policy == null || !mContext.getRetryBudget().canRetry())
+            return -1;
+
+        /* the body was drained by the failed attempt */
+        StreamingRequestBody stream = mRequest.getStreamingRequestBody();
+        if (stream != null && !stream.isRepeatable())
+            return -1;
+
+        Throwable cause = error.cause();
+        if (cause == null && error.isTimeout())
+            cause = new SocketTimeoutException();
+
+        TransportResponse response = error.response();
+        long delay;
+        if (response != null)
+            delay = policy.getRetryDelay(mRequest, attempt, response.statusCode(), response.headers(), cause);
+        else
+            delay = policy.getRetryDelay(mRequest, attempt, 0, null, cause);
+
+        /* only retries draw on the budget; a 4xx says nothing about the backend's health */
+        if (delay >= 0)
+            mContext.getRetryBudget().onFailure();
+        return delay;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private void recordCall(Throwable error) {
+        if (mTrace == null)
+            return;
+
+        if (error == null)
+            mTrace.delivered(mCallStartTime);
+        else
+            mTrace.failed(mCallStartTime, error);
+    }
+
+    private void onFailure(RpcException e) {
+        recordCall(e);
+        Logger.error(TAG, "Error while RPC call: %1$s", e.getMessage());
+        if (!mContext.dispatchErrorHandler(mFrontendContext, e))
+            mOnResponse.onFailure(e);
+    }
+
+    private void onFailure(TransportError error) {
+        Throwable why = error.error();
+        recordCall(why);
+        Logger.error(TAG, "Error while RPC call: %1$s", why.getMessage());
+        if (Config.DEBUG_DUMP_RESPONSE && error.response() != null) {
+            try {
+                Logger.error(TAG, "Error response: " + error.response().data());
+            } catch (Exception e) {
+                Logger.error(TAG, e.toString());
+            }
+        }
+
+        /* handlers of the underlying error get their turn if those of the error itself decline */
+        Throwable e = error.cause();
+        if (e == null && !(why instanceof RpcException)) {
+            if (error.statusCode() != 0) {
+                e = new RpcException("Server Error");
+            } else {
+                e = new RpcException(why.toString());
+            }
+        }
+        if (!mContext.dispatchErrorHandler(mFrontendContext, why) &&
+                (e == null || !mContext.dispatchErrorHandler(mFrontendContext, e)))
+            mOnResponse.onFailure(why);
+    }
+}
@@ -4,13 +4,27 @@
 
 package com.spoqa.battery;
 
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.exceptions.ContextException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 public class RpcContext<C> {
 
     static final private String TAG = "ExecutionContext";
 
+    static final public int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 1024;
+
     private String mDefaultUriPrefix;
     private RequestPreprocessor mRequestPreprocessor;
     private ResponseValidator mResponseValidator;
@@ -18,12 +32,33 @@ public class RpcContext<C> {
     private FieldNameTransformer mLocalFieldName;
     private FieldNameTransformer mRemoteFieldName;
     private Map<Class<? extends Throwable>, ExceptionHandler<C>> mExceptionHandlers;
+    private Map<Class<?>, List<Class<?>>> mHandlerResolutionCache;
     private TypeAdapterCollection mTypeAdapters;
+    private int mRequestCompressionThreshold;
+    private RetryPolicy mRetryPolicy;
+    private RetryBudget mRetryBudget;
+    private HedgePolicy mHedgePolicy;
+    private ConcurrencyLimiter mConcurrencyLimiter;
+    private CircuitBreaker mCircuitBreaker;
+    private RpcMetrics mMetrics;
+    private EventListener mEventListener;
+    private Transport mTransport;
+    private Scheduler mScheduler;
+    private Executor mBindingExecutor;
+    private String mFieldProjectionParameter;
+    private Map<Class<?>, String> mFieldProjectionCache;
+    private CodecRegistry mCodecRegistry;
 
     public RpcContext() {
         mExceptionHandlers = new HashMap<Class<? extends Throwable>,
                 ExceptionHandler<C>>();
+        mHandlerResolutionCache = new ConcurrentHashMap<Class<?>, List<Class<?>>>();
         mTypeAdapters = new TypeAdapterCollection();
+        mRequestCompressionThreshold = DEFAULT_REQUEST_COMPRESSION_THRESHOLD;
+        mRetryBudget = new RetryBudget();
+        mHedgePolicy = new HedgePolicy();
+        mFieldProjectionCache = new ConcurrentHashMap<Class<?>, String>();
+        mCodecRegistry = ObjectBuilder.getDefaultRegistry().copy();
     }
 
     public String getDefaultUriPrefix() {
@@ -50,6 +85,58 @@ public class RpcContext<C> {
         return mRemoteFieldName;
     }
 
+    public int getRequestCompressionThreshold() {
+        return mRequestCompressionThreshold;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return mRetryBudget;
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return mHedgePolicy;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return mConcurrencyLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    public RpcMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public EventListener getEventListener() {
+        return mEventListener;
+    }
+
+    public Transport getTransport() {
+        return mTransport;
+    }
+
+    public Scheduler getScheduler() {
+        return mScheduler;
+    }
+
+    public Executor getBindingExecutor() {
+        return mBindingExecutor;
+    }
+
+    public CodecRegistry getCodecRegistry() {
+        return mCodecRegistry;
+    }
+
+    public String getFieldProjectionParameter() {
+        return mFieldProjectionParameter;
+    }
+
     public void setDefaultUriPrefix(String prefix) {
         if (prefix.startsWith("http://") || prefix.startsWith("https://"))
             mDefaultUriPrefix = prefix;
@@ -71,44 +158,323 @@ public class RpcContext<C> {
         mRequestSerializer = serializer;
     }
 
+    /**
+     * Request bodies of RpcObjects declaring compressRequest are gzipped once they reach
+     * this size in bytes.
+     */
+    public void setRequestCompressionThreshold(int bytes) {
+        mRequestCompressionThreshold = bytes;
+    }
+
+    /**
+     * Retry policy of RpcObjects which do not declare their own. Without one, failed calls are
+     * not retried by the context.
+     */
+    public void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+    }
+
+    public void setRetryBudget(RetryBudget budget) {
+        mRetryBudget = budget;
+    }
+
+    /**
+     * Policy applied to GET RpcObjects declaring hedged. Setting null disables hedging.
+     */
+    public void setHedgePolicy(HedgePolicy policy) {
+        mHedgePolicy = policy;
+    }
+
+    /**
+     * Limiter every request goes through before it reaches the transport. Null (the default)
+     * leaves concurrency to the transport alone.
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        mConcurrencyLimiter = limiter;
+    }
+
+    /**
+     * Circuit breaker consulted before each call. Calls rejected by it fail with a
+     * CircuitBreakerOpenException. Null (the default) disables circuit breaking.
+     */
+    public void setCircuitBreaker(CircuitBreaker breaker) {
+        mCircuitBreaker = breaker;
+    }
+
+    /**
+     * Receiver of per-call phase timings, payload sizes and errors. Null (the default) records
+     * nothing.
+     */
+    public void setMetrics(RpcMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Listener receiving the lifecycle events of every call. Null (the default) disables
+     * call tracing.
+     */
+    public void setEventListener(EventListener listener) {
+        mEventListener = listener;
+    }
+
+    /**
+     * Transport sending the requests of this context. Platform contexts install their own;
+     * a plain RpcContext needs one set (e.g. an OkHttpTransport) along with a Scheduler.
+     */
+    public void setTransport(Transport transport) {
+        mTransport = transport;
+    }
+
+    /**
+     * Thread on which results are delivered to OnResponse and the exception handlers.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Executor on which responses are deserialized, bound and validated before the finished
+     * object is delivered on the Scheduler. Without one, responses are bound on the thread the
+     * transport reports them on, which is the Scheduler itself for some transports. Objects
+     * declared with {@code @RpcObject(merge = true)} are always bound on the Scheduler, as
+     * their existing fields may be read there meanwhile.
+     */
+    public void setBindingExecutor(Executor executor) {
+        mBindingExecutor = executor;
+    }
+
+    /**
+     * Adds a response codec to this context; responses of its MIME type are decoded with it.
+     * Codecs can only be registered until the first call is made.
+     */
+    public void registerDeserializer(ResponseDeserializer deserializer) {
+        mCodecRegistry.register(deserializer);
+    }
+
+    /**
+     * Adds a response codec and advertises its MIME type with the given q-value in the Accept
+     * header of every request. Requests carry no Accept header until a codec is advertised,
+     * and then list only the advertised ones; e.g. to prefer MessagePack over JSON, register
+     * a MessagePackCodec with 1.0 and a JsonCodec with 0.5.
+     */
+    public void registerDeserializer(ResponseDeserializer deserializer, float quality) {
+        mCodecRegistry.register(deserializer, quality);
+    }
+
+    /**
+     * Name of the query parameter (e.g. "fields") listing the response fields each request
+     * binds, for APIs supporting sparse fieldsets. Null (the default) sends no projection.
+     */
+    public void setFieldProjectionParameter(String parameter) {
+        mFieldProjectionParameter = parameter;
+    }
+
     public void setFieldNameTransformer(FieldNameTransformer local, FieldNameTransformer remote) {
         mLocalFieldName = local;
         mRemoteFieldName = remote;
+        mFieldProjectionCache.clear();
+    }
+
+    /* fields listed in the projection of the given RpcObject class, computed once per class */
+    String getFieldProjection(Class<?> rpcObjectClass, FieldNameTranslator translator) {
+        String projection = mFieldProjectionCache.get(rpcObjectClass);
+        if (projection == null) {
+            projection = FieldProjection.compute(ReflectionCache.getShared(), rpcObjectClass,
+                    translator, mTypeAdapters);
+            mFieldProjectionCache.put(rpcObjectClass, projection);
+        }
+        return projection;
+    }
+
+    /**
+     * Looks up, on the calling thread, everything the first call of each given RpcObject class
+     * would otherwise compute lazily: the reflection data of its request and response bindings,
+     * the transformers and serializer it declares and its field projection. Only worth it
+     * once the context is configured, as the projection depends on its field name transformers.
+     *
+     * @return number of RpcObject classes prewarmed
+     */
+    public int prewarm(Class<?>... rpcObjectClasses) {
+        return prewarm(Arrays.asList(rpcObjectClasses), System.nanoTime());
+    }
+
+    /**
+     * Prewarms every RpcObject class found in the given package and its subpackages.
+     */
+    public int prewarm(String packageName) {
+        return prewarm(findRpcObjectClasses(packageName), System.nanoTime());
+    }
+
+    /**
+     * Prewarms the given RpcObject classes on a background thread.
+     *
+     * @param listener notified when done; may be null
+     */
+    public void prewarmAsync(final PrewarmListener listener, final Class<?>... rpcObjectClasses) {
+        startPrewarmThread(listener, () -> Arrays.asList(rpcObjectClasses));
+    }
+
+    public void prewarmAsync(final PrewarmListener listener, final String packageName) {
+        startPrewarmThread(listener, () -> findRpcObjectClasses(packageName));
+    }
+
+    private interface ClassSource {
+        List<Class<?>> get();
+    }
+
+    private void startPrewarmThread(final PrewarmListener listener, final ClassSource source) {
+        Thread thread = new Thread(() -> {
+            final long startTime = System.nanoTime();
+            final int count = prewarm(source.get(), startTime);
+            if (listener == null)
+                return;
+
+            final long elapsed = (System.nanoTime() - startTime) / 1000000;
+            if (mScheduler != null)
+                mScheduler.execute(() -> listener.onPrewarmed(count, elapsed));
+            else
+                listener.onPrewarmed(count, elapsed);
+        }, "RpcPrewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private int prewarm(List<Class<?>> rpcObjectClasses, long startTime) {
+        long missCount = ReflectionCache.getShared().getMissCount();
+        int count = 0;
+        for (Class<?> clazz : rpcObjectClasses) {
+            if (Prewarmer.prewarm(this, clazz))
+                ++count;
+        }
+
+        Logger.info(TAG, "Prewarmed %1$d RpcObjects in %2$d ms (%3$d reflective lookups)", count,
+                (System.nanoTime() - startTime) / 1000000,
+                ReflectionCache.getShared().getMissCount() - missCount);
+        return count;
+    }
+
+    private List<Class<?>> findRpcObjectClasses(String packageName) {
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        List<String> names;
+        try {
+            names = findClassNames(packageName);
+        } catch (IOException e) {
+            Logger.warn(TAG, "Could not list classes of %1$s: %2$s", packageName, e);
+            return classes;
+        }
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        for (String name : names) {
+            try {
+                /* not initialized; only RpcObjects are touched any further */
+                Class<?> clazz = Class.forName(name, false, classLoader);
+                if (clazz.isAnnotationPresent(RpcObject.class))
+                    classes.add(clazz);
+            } catch (ClassNotFoundException e) {
+                Logger.warn(TAG, "Could not load %1$s", name);
+            } catch (LinkageError e) {
+                Logger.warn(TAG, "Could not load %1$s: %2$s", name, e);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Names of the classes in a package and its subpackages, for prewarm(String). Looks into
+     * the directories and JAR files of the context's class loader; platforms which package
+     * classes differently override this.
+     */
+    protected List<String> findClassNames(String packageName) throws IOException {
+        return Prewarmer.findClassNames(getClass().getClassLoader(), packageName);
+    }
+
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse, final C frontendContext) {
+        mCodecRegistry.freeze();
+
+        HttpRequest request = null;
+        try {
+            request = RequestFactory.createRequest(this, rpcObject);
+        } catch (SerializationException e) {
+            onResponse.onFailure(e);
+            return;
+        } catch (ContextException e) {
+            onResponse.onFailure(e.why());
+            return;
+        }
+
+        if (request == null) {
+            Logger.error(TAG, "Could not make call due to error(s) while creating request object.");
+            return;
+        }
+
+        final RpcObject rpcObjectDecl = rpcObject.getClass().getAnnotation(RpcObject.class);
+        if (rpcObjectDecl.context() != RpcObject.NULL.class) {
+            Class<?> contextSpec = rpcObjectDecl.context();
+            if (!CodecUtils.isSubclassOf(contextSpec, RpcContext.class)) {
+                Logger.error(TAG, "Context attribute of RpcObject %1$s is not a " +
+                        "subclass of ExecutionContext", rpcObject.getClass().getName());
+                return;
+            }
+            if (getClass() != contextSpec) {
+                Logger.error(TAG, "RpcObject context mismatch. context: %1$s, " +
+                        "expected: %2$s", getClass().getName(), contextSpec.getName());
+                return;
+            }
+        }
+
+        if (mTransport == null || mScheduler == null) {
+            Logger.error(TAG, "No transport or scheduler set.");
+            onResponse.onFailure(new RpcException("No transport or scheduler set"));
+            return;
+        }
+
+        new RpcCall<T, C>(this, rpcObject, rpcObjectDecl, request, onResponse, frontendContext).start();
     }
 
     public <T extends Throwable> void registerExceptionHandler(Class<T> clazz, ExceptionHandler<C> handler) {
         mExceptionHandlers.put(clazz, handler);
+        mHandlerResolutionCache.clear();
     }
 
     public <T extends Throwable> boolean dispatchErrorHandler(C frontendContext, T ex) {
-        Class<T> clazz = (Class<T>) ex.getClass();
+        Class<?> clazz = ex.getClass();
 
         if (Config.DEBUG_DUMP_RESPONSE) {
-            Logger.debug(TAG, "got exception: " + clazz.getName());
+            Logger.debug(TAG, "got exception: %1$s", clazz.getName());
         }
 
-        while (clazz != null) {
-            if (mExceptionHandlers.containsKey(clazz)) {
-                if (Config.DEBUG_DUMP_RESPONSE) {
-                    Logger.debug(TAG, "   handling: " + clazz.getName());
-                }
+        for (Class<?> handled : resolveExceptionHandlers(clazz)) {
+            if (Config.DEBUG_DUMP_RESPONSE) {
+                Logger.debug(TAG, "   handling: %1$s", handled.getName());
+            }
 
-                ExceptionHandler<C> callback = (ExceptionHandler<C>) mExceptionHandlers.get(clazz);
-                boolean ret = callback.onException(frontendContext, ex);
+            ExceptionHandler<C> callback = mExceptionHandlers.get(handled);
+            if (callback != null && callback.onException(frontendContext, ex))
+                return true;
+        }
 
-                if (ret)
-                    return true;
-            }
+        return false;
+    }
 
-            /* find for superclass */
-            Class<?> super_ = clazz.getSuperclass();
-            if (!Throwable.class.isAssignableFrom(super_))
-                break;
+    /* classes in the superclass chain of the given exception which have a handler, most specific first */
+    private List<Class<?>> resolveExceptionHandlers(Class<?> exceptionClass) {
+        List<Class<?>> resolved = mHandlerResolutionCache.get(exceptionClass);
+        if (resolved != null)
+            return resolved;
 
-            clazz = (Class<T>) super_;
+        resolved = new ArrayList<Class<?>>(1);
+        Class<?> clazz = exceptionClass;
+        while (clazz != null && Throwable.class.isAssignableFrom(clazz)) {
+            if (mExceptionHandlers.containsKey(clazz))
+                resolved.add(clazz);
+            clazz = clazz.getSuperclass();
         }
 
-        return false;
+        if (resolved.isEmpty())
+            resolved = Collections.emptyList();
+        mHandlerResolutionCache.put(exceptionClass, resolved);
+        return resolved;
     }
 
     public TypeAdapterCollection getTypeAdapters() {
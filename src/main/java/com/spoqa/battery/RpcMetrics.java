@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Receives timings and payload sizes of calls, keyed by the RpcObject class of the call.
+ * Implementations are called from the caller's, the network and the delivery threads and
+ * should not block.
+ */
+public interface RpcMetrics {
+
+    public static enum Phase {
+        /* RequestFactory.createRequest as a whole */
+        REQUEST_BUILDING,
+        /* encoding (and compressing) the request body */
+        SERIALIZATION,
+        /* from the call being started until the transport picks the request up */
+        QUEUE_WAIT,
+        /* from the transport picking the request up until the response has been read */
+        NETWORK,
+        /* decompressing and parsing the response body */
+        DECODING,
+        /* binding the parsed response onto the RpcObject */
+        BINDING,
+        /* the ResponseValidator */
+        VALIDATION,
+        /* the whole call, including retries */
+        CALL
+    }
+
+    public void recordPhase(Class<?> endpoint, Phase phase, long nanos);
+
+    public void recordBytesSent(Class<?> endpoint, long bytes);
+
+    public void recordBytesReceived(Class<?> endpoint, long bytes);
+
+    public void recordError(Class<?> endpoint, Throwable error);
+
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Thread on which an RpcContext keeps the state of its calls and delivers their results.
+ */
+public interface Scheduler {
+
+    public boolean isCurrentThread();
+
+    public void execute(Runnable task);
+
+    public void schedule(Runnable task, long delayMillis);
+
+    public void cancel(Runnable task);
+
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request body written straight to the connection instead of being held in memory as a whole.
+ */
+public interface StreamingRequestBody {
+
+    /**
+     * @return length of the body in bytes, or -1 if it is not known in advance, in which case
+     *         the body is sent with chunked transfer encoding
+     */
+    public long contentLength();
+
+    /**
+     * Called on the transport's thread, once per attempt of the call.
+     */
+    public void writeTo(OutputStream output) throws IOException;
+
+    /**
+     * @return false if the body can only be written once (e.g. it drains an Iterator); such
+     *         calls are never retried
+     */
+    public boolean isRepeatable();
+
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.SerializationException;
+
+/**
+ * Serializer which can also write request bodies while they are sent, for RpcObjects declared
+ * with {@code @RpcObject(streamingRequest = true)}. Iterator and Iterable members are then
+ * only read as the body is written.
+ */
+public interface StreamingRequestSerializer extends RequestSerializer {
+
+    public StreamingRequestBody serializeStream(Object o, FieldNameTranslator translator,
+                                                TypeAdapterCollection typeAdapters)
+            throws SerializationException;
+
+}
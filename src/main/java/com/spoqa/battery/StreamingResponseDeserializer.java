@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+
+import java.io.InputStream;
+
+/**
+ * A deserializer which reads the (already decoded) response body directly from a stream
+ * instead of requiring it to be converted into a String first.
+ */
+public interface StreamingResponseDeserializer extends ResponseDeserializer {
+
+    public Object parseInput(InputStream input, String charset) throws DeserializationException;
+
+}
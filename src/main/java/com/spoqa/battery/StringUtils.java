@@ -4,6 +4,10 @@
 
 package com.spoqa.battery;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,6 +37,22 @@ public final class StringUtils {
         return join(array, delimiter, null);
     }
 
+    public static String read(InputStream input, String charset) throws IOException {
+        Reader reader = new InputStreamReader(input, charset != null ? charset : "utf-8");
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+
+        try {
+            while ((read = reader.read(buffer)) > 0)
+                sb.append(buffer, 0, read);
+        } finally {
+            reader.close();
+        }
+
+        return sb.toString();
+    }
+
     public static String uppercaseFirst(String input) {
         return input.substring(0, 1).toUpperCase() + input.substring(1).toLowerCase();
     }
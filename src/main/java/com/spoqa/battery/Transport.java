@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Sends HttpRequests on behalf of an RpcContext. Callbacks may be invoked on any thread, at
+ * most once per exchange.
+ */
+public interface Transport {
+
+    public static interface Callback {
+        public void onResponse(TransportResponse response);
+        public void onFailure(TransportError error);
+    }
+
+    public static interface Exchange {
+        /* the callback of a cancelled exchange should not be invoked any more */
+        public void cancel();
+    }
+
+    public Exchange execute(HttpRequest request, Callback callback);
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+/**
+ * Failure of a single exchange: either no response could be obtained, or the server answered
+ * with an error status.
+ */
+public class TransportError {
+    private final Throwable mError;
+    private final Throwable mCause;
+    private final TransportResponse mResponse;
+    private final boolean mTimeout;
+
+    /**
+     * @param error what is handed to the error handlers and OnResponse.onFailure
+     * @param cause underlying I/O error, if any
+     * @param response error response, or null if there was none
+     * @param timeout whether the exchange timed out
+     */
+    public TransportError(Throwable error, Throwable cause, TransportResponse response, boolean timeout) {
+        mError = error;
+        mCause = cause;
+        mResponse = response;
+        mTimeout = timeout;
+    }
+
+    public Throwable error() {
+        return mError;
+    }
+
+    public Throwable cause() {
+        return mCause;
+    }
+
+    public TransportResponse response() {
+        return mResponse;
+    }
+
+    public boolean isTimeout() {
+        return mTimeout;
+    }
+
+    /* 0 if there was no response */
+    public int statusCode() {
+        return mResponse != null ? mResponse.statusCode() : 0;
+    }
+}
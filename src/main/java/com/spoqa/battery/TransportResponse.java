@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+public class TransportResponse {
+    /* charset assumed by HTTP/1.1 when the content type does not name one */
+    public static final String DEFAULT_CHARSET = "ISO-8859-1";
+
+    private final int mStatusCode;
+    private final Map<String, String> mHeaders;
+    private final byte[] mBody;
+    private final InputStream mBodyStream;
+    private final String mCharset;
+    private final String mContentType;
+    private final String mContentEncoding;
+    private long mNetworkStartTime;
+    private long mNetworkEndTime;
+
+    public TransportResponse(int statusCode, Map<String, String> headers, byte[] body, String charset,
+                             String contentType, String contentEncoding) {
+        mStatusCode = statusCode;
+        mHeaders = headers != null ? headers : Collections.<String, String>emptyMap();
+        mBody = body;
+        mBodyStream = null;
+        mCharset = charset;
+        mContentType = contentType;
+        mContentEncoding = contentEncoding;
+    }
+
+    /**
+     * Response whose body is read from the connection as it arrives, for requests which want a
+     * streaming response. The stream can only be read once and has to be closed.
+     */
+    public TransportResponse(int statusCode, Map<String, String> headers, InputStream body,
+                             String charset, String contentType, String contentEncoding) {
+        mStatusCode = statusCode;
+        mHeaders = headers != null ? headers : Collections.<String, String>emptyMap();
+        mBody = null;
+        mBodyStream = body;
+        mCharset = charset;
+        mContentType = contentType;
+        mContentEncoding = contentEncoding;
+    }
+
+    /**
+     * Records when the transport picked the request up and when it finished reading the
+     * response, in System.nanoTime() units. Both are 0 if the response did not come from the
+     * network.
+     */
+    public void setNetworkTimes(long startTime, long endTime) {
+        mNetworkStartTime = startTime;
+        mNetworkEndTime = endTime;
+    }
+
+    public int statusCode() {
+        return mStatusCode;
+    }
+
+    public Map<String, String> headers() {
+        return mHeaders;
+    }
+
+    public String data() throws IOException {
+        return StringUtils.read(stream(), mCharset);
+    }
+
+    /* body as sent over the wire is kept; it is only decompressed while being read */
+    public InputStream stream() throws IOException {
+        if (mBodyStream != null)
+            return ContentEncoding.decode(mBodyStream, mContentEncoding);
+        return ContentEncoding.decode(new ByteArrayInputStream(mBody != null ? mBody : new byte[0]),
+                mContentEncoding);
+    }
+
+    public boolean isStreaming() {
+        return mBodyStream != null;
+    }
+
+    /* releases the connection of a streaming response */
+    public void close() {
+        if (mBodyStream == null)
+            return;
+
+        try {
+            mBodyStream.close();
+        } catch (IOException e) {
+            /* nothing left to read anyway */
+        }
+    }
+
+    /* size of the body as received; 0 for streaming responses */
+    public int length() {
+        return mBody != null ? mBody.length : 0;
+    }
+
+    public String charset() {
+        return mCharset;
+    }
+
+    public String contentType() {
+        return mContentType;
+    }
+
+    public String contentEncoding() {
+        return mContentEncoding;
+    }
+
+    public long networkStartTime() {
+        return mNetworkStartTime;
+    }
+
+    public long networkEndTime() {
+        return mNetworkEndTime;
+    }
+
+    public static String parseCharset(String contentType) {
+        if (contentType == null)
+            return DEFAULT_CHARSET;
+
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset"))
+                return pair[1].trim().replace("\"", "");
+        }
+
+        return DEFAULT_CHARSET;
+    }
+}
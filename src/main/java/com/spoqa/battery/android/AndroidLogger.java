@@ -8,7 +8,26 @@ import android.util.Log;
 
 import com.spoqa.battery.Logger;
 
-public class AndroidLogger implements Logger.LoggerImpl {
+public class AndroidLogger implements Logger.LevelAwareLoggerImpl {
+    private int mMinimumLevel;
+
+    public AndroidLogger() {
+        this(Logger.VERBOSE);
+    }
+
+    public AndroidLogger(int minimumLevel) {
+        mMinimumLevel = minimumLevel;
+    }
+
+    public void setMinimumLevel(int minimumLevel) {
+        mMinimumLevel = minimumLevel;
+    }
+
+    @Override
+    public boolean isLoggable(String tag, int level) {
+        return level >= mMinimumLevel;
+    }
+
     @Override
     public void debug(String tag, String msg) {
         Log.d(tag, msg);
@@ -5,30 +5,23 @@
 package com.spoqa.battery.android;
 
 import android.content.Context;
+import android.os.Looper;
 
 import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.ServerError;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.DiskBasedCache;
 
-import com.spoqa.battery.CodecUtils;
-import com.spoqa.battery.Config;
 import com.spoqa.battery.PlatformUtils;
 import com.spoqa.battery.RpcContext;
-import com.spoqa.battery.FieldNameTranslator;
-import com.spoqa.battery.HttpRequest;
 import com.spoqa.battery.Logger;
-import com.spoqa.battery.ObjectBuilder;
 import com.spoqa.battery.OnResponse;
-import com.spoqa.battery.RequestFactory;
-import com.spoqa.battery.annotations.RpcObject;
-import com.spoqa.battery.exceptions.ContextException;
-import com.spoqa.battery.exceptions.DeserializationException;
-import com.spoqa.battery.exceptions.ResponseValidationException;
-import com.spoqa.battery.exceptions.RpcException;
-import com.spoqa.battery.exceptions.SerializationException;
 
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import dalvik.system.DexFile;
 
 public class AndroidRpcContext extends RpcContext<Context> {
 
@@ -40,117 +33,74 @@ public class AndroidRpcContext extends RpcContext<Context> {
 
     private static final String TAG = "AndroidExecutionContext";
 
-    private final RequestQueue mRequestQueue;
+    private static final String CACHE_DIRECTORY = "volley";
+    public static final int DEFAULT_MEMORY_CACHE_SIZE = 1024 * 1024;
+    public static final int DEFAULT_DISK_CACHE_SIZE = 5 * 1024 * 1024;
+    /* Volley's default of 4 would serialize calls which HTTP/2 can multiplex */
+    private static final int NETWORK_THREAD_POOL_SIZE = 8;
+
+    /* queue of the contexts created with default cache sizes */
+    private static RequestQueue sSharedRequestQueue;
+
     private final Context mAndroidContext;
 
     public AndroidRpcContext(Context androidApplicationContext, RequestQueue requestQueue) {
         super();
         mAndroidContext = androidApplicationContext;
-        mRequestQueue = requestQueue;
+        setTransport(new VolleyTransport(requestQueue));
+        setScheduler(new HandlerScheduler(Looper.getMainLooper()));
     }
 
+    /**
+     * Context sending its calls through the request queue (and connections) shared by every
+     * context created this way.
+     */
     public AndroidRpcContext(Context androidApplicationContext) {
-        this(androidApplicationContext,
-                Volley.newRequestQueue(androidApplicationContext, new OkHttpStack()));
+        this(androidApplicationContext, getSharedRequestQueue(androidApplicationContext));
     }
 
-    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse) {
-        invokeAsync(rpcObject, onResponse, mAndroidContext);
+    public AndroidRpcContext(Context androidApplicationContext, int memoryCacheSize, int diskCacheSize) {
+        this(androidApplicationContext,
+                newRequestQueue(androidApplicationContext, memoryCacheSize, diskCacheSize));
     }
 
-    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse, final Context currentContext) {
-        HttpRequest request = null;
-        try {
-            request = RequestFactory.createRequest(this, rpcObject);
-        } catch (SerializationException e) {
-            onResponse.onFailure(e);
-            return;
-        } catch (ContextException e) {
-            onResponse.onFailure(e.why());
-            return;
+    private static synchronized RequestQueue getSharedRequestQueue(Context context) {
+        if (sSharedRequestQueue == null) {
+            sSharedRequestQueue = newRequestQueue(context.getApplicationContext(),
+                    DEFAULT_MEMORY_CACHE_SIZE, DEFAULT_DISK_CACHE_SIZE);
         }
+        return sSharedRequestQueue;
+    }
 
-        if (request == null) {
-            Logger.error(TAG, "Could not make call due to error(s) while creating request object.");
-            return;
-        }
+    private static RequestQueue newRequestQueue(Context context, int memoryCacheSize, int diskCacheSize) {
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        TieredCache cache = new TieredCache(memoryCacheSize, new DiskBasedCache(cacheDir, diskCacheSize));
+        RequestQueue queue = new RequestQueue(cache, new VolleyNetwork(new OkHttpStack()),
+                NETWORK_THREAD_POOL_SIZE);
+        queue.start();
+        return queue;
+    }
 
-        final RpcObject rpcObjectDecl = rpcObject.getClass().getAnnotation(RpcObject.class);
-        if (rpcObjectDecl.context() != RpcObject.NULL.class) {
-            Class<?> contextSpec = rpcObjectDecl.context();
-            if (!CodecUtils.isSubclassOf(contextSpec, RpcContext.class)) {
-                Logger.error(TAG, String.format("Context attribute of RpcObject %1$s is not a " +
-                        "subclass of ExecutionContext", rpcObject.getClass().getName()));
-                return;
-            }
-            if (getClass() != contextSpec) {
-                Logger.error(TAG, String.format("RpcObject context mismatch. context: %1$s, " +
-                        "expected: %2$s", getClass().getName(), contextSpec.getName()));
-                return;
+    /* classes of an APK are in its dex files, not in directories a class loader can list */
+    @Override
+    protected List<String> findClassNames(String packageName) throws IOException {
+        List<String> names = new ArrayList<String>();
+        DexFile dexFile = new DexFile(mAndroidContext.getPackageCodePath());
+        try {
+            Enumeration<String> entries = dexFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement();
+                if (name.startsWith(packageName + "."))
+                    names.add(name);
             }
+        } finally {
+            dexFile.close();
         }
+        return names;
+    }
 
-        final FieldNameTranslator nameTranslator = request.getFieldNameTranslator();
-        Response.Listener<ResponseDelegate> onVolleyResponse = s -> {
-            try {
-                /* force content type if declared by RpcObject */
-                String contentType = rpcObjectDecl.expectedContentType();
-                if (contentType == null || contentType.length() == 0) {
-                    contentType = s.contentType();
-                }
-                ObjectBuilder.build(contentType, s.data(),
-                        rpcObject, nameTranslator, getTypeAdapters());
-
-                if (getResponseValidator() != null) {
-                    Object responseObject = CodecUtils.getResponseObject(null, rpcObject, false);
-                    if (responseObject == null) {
-                        responseObject = rpcObject;
-                    }
-                    getResponseValidator().validate(responseObject);
-                }
-                onResponse.onResponse(rpcObject);
-            } catch (ResponseValidationException e) {
-                if (!dispatchErrorHandler(currentContext, e)) {
-                    onResponse.onFailure(e);
-                }
-            } catch (RpcException e) {
-                if (!dispatchErrorHandler(currentContext, e)) {
-                    onResponse.onFailure(e);
-                }
-            } catch (DeserializationException e) {
-                if (!dispatchErrorHandler(currentContext, e))
-                    onResponse.onFailure(e);
-            }
-        };
-
-        Response.ErrorListener onVolleyErrorResponse = volleyError -> {
-            Logger.error(TAG, "Error while RPC call: " + volleyError.getMessage());
-            if (Config.DEBUG_DUMP_RESPONSE) {
-                try {
-                    if (volleyError.networkResponse != null)
-                        Logger.error(TAG, "Error response: " +
-                                new String(volleyError.networkResponse.data, StandardCharsets.UTF_8));
-                } catch (Exception e) {
-                    Logger.error(TAG, e.toString());
-                }
-            }
-
-            Throwable e = volleyError.getCause();
-            if (e == null) {
-                if (volleyError instanceof ServerError) {
-                    e = new RpcException("Server Error");
-                } else {
-                    e = new RpcException(volleyError.toString());
-                }
-            }
-            if (!dispatchErrorHandler(currentContext, volleyError) &&
-                    !dispatchErrorHandler(currentContext, e))
-                onResponse.onFailure(volleyError);
-        };
-
-        VolleyRequest req = new VolleyRequest(request, onVolleyResponse, onVolleyErrorResponse);
-        mRequestQueue.getCache().clear();
-        mRequestQueue.add(req);
+    public <T> void invokeAsync(final T rpcObject, final OnResponse<T> onResponse) {
+        invokeAsync(rpcObject, onResponse, mAndroidContext);
     }
 
 }
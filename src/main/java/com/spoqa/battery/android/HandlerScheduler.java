@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.spoqa.battery.Scheduler;
+
+final class HandlerScheduler implements Scheduler {
+    private final Handler mHandler;
+
+    HandlerScheduler(Looper looper) {
+        mHandler = new Handler(looper);
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        mHandler.post(task);
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        mHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+}
@@ -5,20 +5,55 @@
 package com.spoqa.battery.android;
 
 import com.android.volley.toolbox.HurlStack;
+import com.spoqa.battery.CallTrace;
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.StreamingRequestBody;
+import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.Response;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 
 public class OkHttpStack extends HurlStack {
+    /*
+     * pooled connections are only reused by clients with the same socket factory, so every
+     * stack shares one; stacks created with the default constructor share the client as well
+     */
+    private static SSLSocketFactory sSslSocketFactory;
+    private static OkHttpClient sSharedClient;
+
     private final OkUrlFactory mFactory;
 
+    /*
+     * reports connection and response headers of traced calls, which Volley does not expose.
+     * OkUrlFactory only runs network interceptors, so this sees every exchange of a request:
+     * redirects and authentication follow-ups report another connection and headers. Requests
+     * are only known while they are performed by a VolleyNetwork.
+     */
+    private static class TraceInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            VolleyRequest request = VolleyNetwork.getCurrentRequest();
+            CallTrace trace = request != null ? request.getCallTrace() : null;
+            if (trace == null)
+                return chain.proceed(chain.request());
+
+            trace.connectionAcquired();
+            Response response = chain.proceed(chain.request());
+            trace.headersReceived(response.code());
+            return response;
+        }
+    }
+
     public OkHttpStack() {
-        this(new OkHttpClient());
+        mFactory = new OkUrlFactory(getSharedClient());
     }
 
     public OkHttpStack(OkHttpClient client) {
@@ -26,19 +61,74 @@ public class OkHttpStack extends HurlStack {
             throw new NullPointerException("Client must not be null.");
         }
 
-        try {
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, null, null);
-            client.setSslSocketFactory(sslContext.getSocketFactory());
-        } catch (Exception e) {
-            throw new AssertionError(); // The system has no TLS. Just give up.
+        configure(client);
+        mFactory = new OkUrlFactory(client);
+    }
+
+    /* OkHttp negotiates HTTP/2 (or SPDY) over TLS, so one client multiplexes calls to an origin */
+    private static synchronized OkHttpClient getSharedClient() {
+        if (sSharedClient == null) {
+            OkHttpClient client = new OkHttpClient();
+            configure(client);
+            sSharedClient = client;
         }
+        return sSharedClient;
+    }
 
-        mFactory = new OkUrlFactory(client);
+    /* stacks may share the caller's client, which needs the interceptor only once */
+    private static synchronized void configure(OkHttpClient client) {
+        client.setSslSocketFactory(getSslSocketFactory());
+        for (Interceptor interceptor : client.networkInterceptors()) {
+            if (interceptor instanceof TraceInterceptor)
+                return;
+        }
+        client.networkInterceptors().add(new TraceInterceptor());
+    }
+
+    private static synchronized SSLSocketFactory getSslSocketFactory() {
+        if (sSslSocketFactory == null) {
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, null, null);
+                sSslSocketFactory = sslContext.getSocketFactory();
+            } catch (Exception e) {
+                throw new AssertionError(); // The system has no TLS. Just give up.
+            }
+        }
+        return sSslSocketFactory;
     }
 
     @Override
     protected HttpURLConnection createConnection(URL url) throws IOException {
-        return mFactory.open(url);
+        HttpURLConnection connection = mFactory.open(url);
+        VolleyRequest request = VolleyNetwork.getCurrentRequest();
+        if (request != null && request.getStreamingRequestBody() != null)
+            request.setStreamingConnection(connection);
+        return connection;
+    }
+
+    /*
+     * HurlStack only writes bodies it has been given as a whole array, so the body of a streaming
+     * request is written here instead, straight to the connection, when HurlStack asks for it
+     */
+    static void writeStreamingBody(HttpURLConnection connection, StreamingRequestBody body,
+                                   String contentType) throws IOException {
+        long length = body.contentLength();
+        /* the long overload needs API level 19 */
+        if (length < 0 || length > Integer.MAX_VALUE)
+            connection.setChunkedStreamingMode(0);
+        else
+            connection.setFixedLengthStreamingMode((int) length);
+
+        connection.setDoOutput(true);
+        if (connection.getRequestProperty(HttpRequest.HEADER_CONTENT_TYPE) == null)
+            connection.setRequestProperty(HttpRequest.HEADER_CONTENT_TYPE, contentType);
+
+        OutputStream output = connection.getOutputStream();
+        try {
+            body.writeTo(output);
+        } finally {
+            output.close();
+        }
     }
 }
\ No newline at end of file
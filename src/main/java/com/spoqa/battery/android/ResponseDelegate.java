@@ -4,20 +4,14 @@
 
 package com.spoqa.battery.android;
 
-public class ResponseDelegate {
-    private String mData;
-    private String mContentType;
+import com.spoqa.battery.TransportResponse;
 
-    public ResponseDelegate(String data, String contentType) {
-        mData = data;
-        mContentType = contentType;
-    }
+import java.util.Map;
 
-    public String data() {
-        return mData;
-    }
+public class ResponseDelegate extends TransportResponse {
 
-    public String contentType() {
-        return mContentType;
+    public ResponseDelegate(int statusCode, Map<String, String> headers, byte[] body, String charset,
+                            String contentType, String contentEncoding) {
+        super(statusCode, headers, body, charset, contentType, contentEncoding);
     }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import com.android.volley.Cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Volley cache keeping recently used entries in a size-bounded LRU memory tier in front of
+ * another (usually disk based) cache. Freshness and revalidation are left to Volley, which
+ * derives them from Cache-Control, Expires, ETag and Last-Modified response headers.
+ */
+public class TieredCache implements Cache {
+    private final Cache mSecondTier;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private final int mMaxMemoryBytes;
+    private int mMemoryBytes;
+
+    public TieredCache(int maxMemoryBytes, Cache secondTier) {
+        mSecondTier = secondTier;
+        mMaxMemoryBytes = maxMemoryBytes;
+        mEntries = new LinkedHashMap<String, Entry>(16, .75f, true);
+        mMemoryBytes = 0;
+    }
+
+    @Override
+    public synchronized Entry get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry != null)
+            return entry;
+
+        entry = mSecondTier.get(key);
+        if (entry != null)
+            putInMemory(key, entry);
+
+        return entry;
+    }
+
+    @Override
+    public synchronized void put(String key, Entry entry) {
+        putInMemory(key, entry);
+        mSecondTier.put(key, entry);
+    }
+
+    @Override
+    public synchronized void initialize() {
+        mSecondTier.initialize();
+    }
+
+    @Override
+    public synchronized void invalidate(String key, boolean fullExpire) {
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            entry.softTtl = 0;
+            if (fullExpire)
+                entry.ttl = 0;
+        }
+        mSecondTier.invalidate(key, fullExpire);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        removeFromMemory(key);
+        mSecondTier.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        mEntries.clear();
+        mMemoryBytes = 0;
+        mSecondTier.clear();
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        removeFromMemory(key);
+
+        int size = sizeOf(entry);
+        /* entries which would flush most of the tier are only kept on the second tier */
+        if (size > mMaxMemoryBytes / 2)
+            return;
+
+        mEntries.put(key, entry);
+        mMemoryBytes += size;
+
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mMemoryBytes > mMaxMemoryBytes && it.hasNext()) {
+            mMemoryBytes -= sizeOf(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    private void removeFromMemory(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null)
+            mMemoryBytes -= sizeOf(entry);
+    }
+
+    private static int sizeOf(Entry entry) {
+        return entry.data == null ? 0 : entry.data.length;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
+
+/**
+ * Network making the traced or streaming request it performs known to OkHttpStack, for as long
+ * as the network dispatcher thread performs it, however the call ends.
+ */
+class VolleyNetwork extends BasicNetwork {
+    /* request being performed by the current network dispatcher thread */
+    private static final ThreadLocal<VolleyRequest> sCurrentRequest = new ThreadLocal<VolleyRequest>();
+
+    VolleyNetwork(OkHttpStack stack) {
+        super(stack);
+    }
+
+    /**
+     * @return traced or streaming request being performed by the calling network thread, or null
+     */
+    static VolleyRequest getCurrentRequest() {
+        return sCurrentRequest.get();
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        if (!(request instanceof VolleyRequest) ||
+                (((VolleyRequest) request).getCallTrace() == null &&
+                        ((VolleyRequest) request).getStreamingRequestBody() == null))
+            return super.performRequest(request);
+
+        sCurrentRequest.set((VolleyRequest) request);
+        try {
+            return super.performRequest(request);
+        } finally {
+            sCurrentRequest.remove();
+        }
+    }
+}
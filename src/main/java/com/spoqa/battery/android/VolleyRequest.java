@@ -9,12 +9,16 @@ import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.Response;
 import com.android.volley.RetryPolicy;
-import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
+import com.spoqa.battery.CallTrace;
 import com.spoqa.battery.HttpRequest;
 import com.spoqa.battery.Logger;
+import com.spoqa.battery.StreamingRequestBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 public class VolleyRequest extends Request<ResponseDelegate> {
@@ -23,7 +27,14 @@ public class VolleyRequest extends Request<ResponseDelegate> {
     private Response.Listener<ResponseDelegate> mListener;
     private Map<String, String> mHeaders;
     private byte[] mRequestBody;
+    private StreamingRequestBody mStreamingRequestBody;
+    /* connection of the current attempt, if an OkHttpStack is sending it */
+    private HttpURLConnection mStreamingConnection;
     private String mContentType;
+    private Priority mPriority;
+    private volatile long mNetworkStartTime;
+    private volatile long mNetworkEndTime;
+    private final CallTrace mCallTrace;
 
     public VolleyRequest(HttpRequest request, Response.Listener<ResponseDelegate> listener,
                          Response.ErrorListener errorListener) {
@@ -31,16 +42,26 @@ public class VolleyRequest extends Request<ResponseDelegate> {
         mListener = listener;
         mHeaders = request.getHeaders();
         mRequestBody = request.getRequestBody();
+        mStreamingRequestBody = request.getStreamingRequestBody();
         mContentType = request.getContentType();
+        mPriority = translateVolleyPriority(request.getPriority());
+        mCallTrace = request.getCallTrace();
 
-        // forbid retry if not GET
-        if (request.getMethod() != HttpRequest.Methods.GET) {
+        if (request.getRetryPolicy() != null) {
+            // retries are scheduled by the RpcContext according to the policy
+            setRetryPolicy(new DefaultRetryPolicy(
+                    request.getMethod() == HttpRequest.Methods.GET ?
+                            DefaultRetryPolicy.DEFAULT_TIMEOUT_MS : 10000,
+                    0,
+                    DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+        } else if (request.getMethod() != HttpRequest.Methods.GET) {
+            // forbid retry if not GET
             setRetryPolicy(new DefaultRetryPolicy(
                     10000,
                     0,
                     DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
         }
-        setShouldCache(false);
+        setShouldCache(request.isCacheable());
     }
 
     static private int translateVolleyHttpMethod(int method) {
@@ -54,33 +75,89 @@ public class VolleyRequest extends Request<ResponseDelegate> {
             case HttpRequest.Methods.PUT:
                 return Request.Method.PUT;
             default:
-                Logger.warn(TAG, String.format("Invalid HTTP method %1$d. Defaulting to GET..."));
+                Logger.warn(TAG, "Invalid HTTP method %1$d. Defaulting to GET...", method);
                 return Request.Method.GET;
         }
     }
 
+    static private Priority translateVolleyPriority(int priority) {
+        switch (priority) {
+            case HttpRequest.Priorities.LOW:
+                return Priority.LOW;
+            case HttpRequest.Priorities.HIGH:
+                return Priority.HIGH;
+            case HttpRequest.Priorities.IMMEDIATE:
+                return Priority.IMMEDIATE;
+            default:
+                return Priority.NORMAL;
+        }
+    }
+
+    /* markers are added by Volley's dispatchers; these two delimit the network phase */
+    @Override
+    public void addMarker(String tag) {
+        super.addMarker(tag);
+        if ("network-queue-take".equals(tag))
+            mNetworkStartTime = System.nanoTime();
+        else if ("network-http-complete".equals(tag))
+            mNetworkEndTime = System.nanoTime();
+    }
+
+    CallTrace getCallTrace() {
+        return mCallTrace;
+    }
+
+    StreamingRequestBody getStreamingRequestBody() {
+        return mStreamingRequestBody;
+    }
+
+    /* called by OkHttpStack on the network dispatcher thread, which asks for the body next */
+    void setStreamingConnection(HttpURLConnection connection) {
+        mStreamingConnection = connection;
+    }
+
+    long getNetworkStartTime() {
+        return mNetworkStartTime;
+    }
+
+    long getNetworkEndTime() {
+        return mNetworkEndTime;
+    }
+
+    /* orders the queue of Volley's network dispatchers */
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
     @Override
     public Map<String, String> getHeaders() {
         return mHeaders;
     }
 
+    /*
+     * runs on Volley's network (or cache) dispatcher thread, so the listener is called here
+     * and the response can be bound before anything is posted to the delivery thread
+     */
     @Override
     protected Response<ResponseDelegate> parseNetworkResponse(NetworkResponse networkResponse) {
-        try {
-            return Response.success(
-                    new ResponseDelegate(
-                            new String(networkResponse.data, HttpHeaderParser.parseCharset(networkResponse.headers)),
-                            networkResponse.headers.get(HttpRequest.HEADER_CONTENT_TYPE)),
-                    HttpHeaderParser.parseCacheHeaders(networkResponse));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-            return null;
-        }
+        if (mCallTrace != null)
+            mCallTrace.bodyReceived(networkResponse.data != null ? networkResponse.data.length : 0);
+        ResponseDelegate response = new ResponseDelegate(
+                networkResponse.statusCode,
+                networkResponse.headers,
+                networkResponse.data,
+                HttpHeaderParser.parseCharset(networkResponse.headers),
+                networkResponse.headers.get(HttpRequest.HEADER_CONTENT_TYPE),
+                networkResponse.headers.get(HttpRequest.HEADER_CONTENT_ENCODING));
+        if (!isCanceled())
+            mListener.onResponse(response);
+        return Response.success(response, HttpHeaderParser.parseCacheHeaders(networkResponse));
     }
 
+    /* the listener has already been called by parseNetworkResponse() */
     @Override
     protected void deliverResponse(ResponseDelegate response) {
-        mListener.onResponse(response);
     }
 
     @Override
@@ -88,9 +165,36 @@ public class VolleyRequest extends Request<ResponseDelegate> {
         return mContentType;
     }
 
+    /*
+     * OkHttpStack writes streaming bodies straight to its connection, leaving HurlStack no array
+     * to send; other stacks only send whole arrays, so the body is buffered for them
+     */
     @Override
     public byte[] getBody() {
-        return mRequestBody;
+        if (mStreamingRequestBody == null)
+            return mRequestBody;
+
+        HttpURLConnection connection = mStreamingConnection;
+        if (connection != null) {
+            mStreamingConnection = null;
+            try {
+                OkHttpStack.writeStreamingBody(connection, mStreamingRequestBody, mContentType);
+            } catch (IOException e) {
+                /* reported by the network dispatcher as a VolleyError caused by this */
+                throw new RuntimeException("Could not write request body", e);
+            }
+            return null;
+        }
+
+        long length = mStreamingRequestBody.contentLength();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length > 0 ? (int) length : 8192);
+        try {
+            mStreamingRequestBody.writeTo(output);
+        } catch (IOException e) {
+            /* reported by the network dispatcher as a VolleyError caused by this */
+            throw new RuntimeException("Could not write request body", e);
+        }
+        return output.toByteArray();
     }
 
 }
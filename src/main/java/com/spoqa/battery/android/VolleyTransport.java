@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.Transport;
+import com.spoqa.battery.TransportError;
+import com.spoqa.battery.TransportResponse;
+
+/**
+ * Transport sending requests through a Volley RequestQueue. Responses are reported on the
+ * queue's network or cache dispatcher thread as soon as they are parsed, so that they are
+ * bound there; errors are reported on its delivery thread (the main thread by default) as the
+ * VolleyErrors Volley reports.
+ */
+public class VolleyTransport implements Transport {
+    private final RequestQueue mRequestQueue;
+
+    private static class VolleyExchange implements Exchange, Response.Listener<ResponseDelegate>,
+            Response.ErrorListener {
+        private final Callback mCallback;
+        private final VolleyRequest mVolleyRequest;
+
+        VolleyExchange(HttpRequest request, Callback callback) {
+            mCallback = callback;
+            mVolleyRequest = new VolleyRequest(request, this, this);
+        }
+
+        @Override
+        public void cancel() {
+            mVolleyRequest.cancel();
+        }
+
+        @Override
+        public void onResponse(ResponseDelegate response) {
+            response.setNetworkTimes(mVolleyRequest.getNetworkStartTime(), mVolleyRequest.getNetworkEndTime());
+            mCallback.onResponse(response);
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError volleyError) {
+            NetworkResponse networkResponse = volleyError.networkResponse;
+            TransportResponse response = null;
+            if (networkResponse != null) {
+                response = new ResponseDelegate(networkResponse.statusCode, networkResponse.headers,
+                        networkResponse.data, HttpHeaderParser.parseCharset(networkResponse.headers),
+                        networkResponse.headers.get(HttpRequest.HEADER_CONTENT_TYPE),
+                        networkResponse.headers.get(HttpRequest.HEADER_CONTENT_ENCODING));
+                response.setNetworkTimes(mVolleyRequest.getNetworkStartTime(), mVolleyRequest.getNetworkEndTime());
+            }
+            mCallback.onFailure(new TransportError(volleyError, volleyError.getCause(), response,
+                    volleyError instanceof TimeoutError));
+        }
+    }
+
+    public VolleyTransport(RequestQueue requestQueue) {
+        mRequestQueue = requestQueue;
+    }
+
+    public RequestQueue getRequestQueue() {
+        return mRequestQueue;
+    }
+
+    @Override
+    public Exchange execute(HttpRequest request, Callback callback) {
+        VolleyExchange exchange = new VolleyExchange(request, callback);
+        mRequestQueue.add(exchange.mVolleyRequest);
+        return exchange;
+    }
+}
@@ -15,5 +15,11 @@ public @interface Response {
 
     boolean required() default false;
     String value() default "";
+    /* bind elements of a List field on first access instead of all at once; elements which
+     * fail to bind then throw a LazyBindingException when read */
+    boolean lazy() default false;
+    /* bind large lists on several threads (see ObjectBuilder.setParallelBinding); type
+     * adapters and setters of the elements must then be thread-safe */
+    boolean parallel() default false;
 
 }
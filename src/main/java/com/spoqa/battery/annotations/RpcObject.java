@@ -26,5 +26,18 @@ public @interface RpcObject {
     Class remoteName() default NULL.class;
     Class context() default NULL.class;
     String expectedContentType() default "";
+    boolean cacheable() default false;
+    boolean compressRequest() default false;
+    Class retryPolicy() default NULL.class;
+    boolean idempotent() default false;
+    boolean hedged() default false;
+    /* response is newline-delimited JSON, bound line by line; see ElementStream */
+    boolean streaming() default false;
+    /* responses are bound into the objects left by the previous one; see MergeTarget */
+    boolean merge() default false;
+    /* request body is written while it is sent; see StreamingRequestSerializer */
+    boolean streamingRequest() default false;
+    /* one of HttpRequest.Priorities; higher priority requests are sent first */
+    int priority() default HttpRequest.Priorities.NORMAL;
 
 }
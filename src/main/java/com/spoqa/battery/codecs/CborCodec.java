@@ -0,0 +1,689 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.CodecUtils;
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.Logger;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.RequestSerializer;
+import com.spoqa.battery.StreamingResponseDeserializer;
+import com.spoqa.battery.TypeAdapter;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR (RFC 8949) codec.
+ *
+ * Maps are decoded into {@link Map}s keyed by String, arrays into {@link List}s, integers into
+ * Integer (or Long if they do not fit), byte strings into byte[] and values tagged as
+ * date/time (tags 0 and 1) into {@link Date}. Other tags are dropped and their content is
+ * decoded as if it were untagged.
+ */
+public class CborCodec implements RequestSerializer, StreamingResponseDeserializer {
+    private static final String TAG = "CborCodec";
+
+    public static final String MIME_TYPE = "application/cbor";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int TAG_DATE_TIME_STRING = 0;
+    private static final int TAG_EPOCH_DATE_TIME = 1;
+
+    private static final int INDEFINITE = 31;
+
+    /* returned by the unpacker for the "break" stop code of indefinite-length items */
+    private static final Object BREAK = new Object();
+
+    public CborCodec() {
+
+    }
+
+    /* serializer */
+
+    @Override
+    public byte[] serializeObject(Object o, FieldNameTranslator translator,
+                                  TypeAdapterCollection typeAdapters)
+            throws SerializationException {
+        ReflectionCache cache = ReflectionCache.getShared();
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestObject.class, o.getClass());
+        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestObject.class, o.getClass());
+        int count = fields.size() + getters.size();
+        boolean filterAnnotated = true;
+
+        if (count > 1) {
+            Logger.error(TAG, "Object %1$s has more than one @RequestObject fields.", o.getClass().getName());
+        } else if (count == 1) {
+            try {
+                if (fields.size() == 1)
+                    o = fields.get(0).get(o);
+                else if (getters.size() == 1)
+                    o = getters.get(0).invoke(o);
+                filterAnnotated = false;
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+            } catch (InvocationTargetException e) {
+                Logger.error(TAG, e.toString());
+            }
+        }
+
+        Packer packer = new Packer();
+        if (o == null)
+            packer.packNull();
+        else
+            visitObject(packer, o, translator, typeAdapters, filterAnnotated);
+
+        return packer.toByteArray();
+    }
+
+    @Override
+    public String serializationContentType() {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public boolean supportsCompositeType() {
+        return true;
+    }
+
+    private void visitObject(Packer packer, Object o, FieldNameTranslator translator,
+                             TypeAdapterCollection typeAdapters, boolean filterAnnotated)
+            throws SerializationException {
+        List<Field> fields;
+        List<Method> getters;
+        ReflectionCache cache = ReflectionCache.getShared();
+        if (filterAnnotated) {
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, o.getClass());
+        } else {
+            fields = CodecUtils.getAllFields(cache, o.getClass());
+            getters = CodecUtils.getAllGetterMethods(cache, o.getClass());
+        }
+
+        /* the map header carries the entry count, so members which fail to be read are
+         * written as null instead of being skipped */
+        int count = fields.size() + getters.size();
+        for (Field f : fields) {
+            if (f.getName().equals("serialVersionUID"))
+                --count;
+        }
+        packer.packHeader(MAJOR_MAP, count);
+
+        for (Field f : fields) {
+            String localName = f.getName();
+            if (localName.equals("serialVersionUID"))
+                continue;
+
+            packer.packString(foreignName(f.getAnnotation(RequestBody.class), localName, translator));
+
+            Object element;
+            try {
+                element = f.get(o);
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            }
+
+            visitValue(packer, element, translator, typeAdapters);
+        }
+
+        for (Method m : getters) {
+            String localName = CodecUtils.normalizeGetterName(m.getName());
+
+            packer.packString(foreignName(m.getAnnotation(RequestBody.class), localName, translator));
+
+            Object element;
+            try {
+                element = m.invoke(o);
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            } catch (InvocationTargetException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            }
+
+            visitValue(packer, element, translator, typeAdapters);
+        }
+    }
+
+    private String foreignName(RequestBody annotation, String localName, FieldNameTranslator translator) {
+        if (annotation != null && annotation.value().length() > 0)
+            return annotation.value();
+        else if (translator != null)
+            return translator.localToRemote(localName);
+        else
+            return localName;
+    }
+
+    private void visitValue(Packer packer, Object element, FieldNameTranslator translator,
+                            TypeAdapterCollection typeAdapters) throws SerializationException {
+        if (element == null) {
+            packer.packNull();
+            return;
+        }
+
+        Class<?> type = element.getClass();
+
+        if (CodecUtils.isString(type))
+            packer.packString((String) element);
+        else if (CodecUtils.isInteger(type) || CodecUtils.isLong(type) ||
+                type == Short.class || type == Byte.class)
+            packer.packLong(((Number) element).longValue());
+        else if (CodecUtils.isFloat(type))
+            packer.packFloat((Float) element);
+        else if (CodecUtils.isDouble(type))
+            packer.packDouble((Double) element);
+        else if (CodecUtils.isBoolean(type))
+            packer.packBoolean((Boolean) element);
+        else if (type == byte[].class)
+            packer.packBytes((byte[]) element);
+        else if (element instanceof Date)
+            packer.packDate((Date) element);
+        else if (element instanceof List)
+            visitArray(packer, (List<?>) element, translator, typeAdapters);
+        else if (element instanceof Map)
+            visitMap(packer, (Map<?, ?>) element, translator, typeAdapters);
+        else if (type.isEnum())
+            packer.packString(element.toString());
+        else if (typeAdapters.contains(type))
+            packer.packString(encode(typeAdapters, type, element));
+        else
+            visitObject(packer, element, translator, typeAdapters, false);
+    }
+
+    private void visitArray(Packer packer, List<?> a, FieldNameTranslator translator,
+                            TypeAdapterCollection typeAdapters) throws SerializationException {
+        packer.packHeader(MAJOR_ARRAY, a.size());
+        for (Object element : a)
+            visitValue(packer, element, translator, typeAdapters);
+    }
+
+    private void visitMap(Packer packer, Map<?, ?> m, FieldNameTranslator translator,
+                          TypeAdapterCollection typeAdapters) throws SerializationException {
+        packer.packHeader(MAJOR_MAP, m.size());
+        for (Map.Entry<?, ?> entry : m.entrySet()) {
+            packer.packString(String.valueOf(entry.getKey()));
+            visitValue(packer, entry.getValue(), translator, typeAdapters);
+        }
+    }
+
+    /* adapters are looked up by the class of the value they encode */
+    @SuppressWarnings("unchecked")
+    private static String encode(TypeAdapterCollection typeAdapters, Class<?> type, Object value)
+            throws SerializationException {
+        TypeAdapter<Object> adapter = (TypeAdapter<Object>) typeAdapters.query(type);
+        return adapter.encode(value);
+    }
+
+    /* deserializer */
+
+    @Override
+    public Object parseInput(String input) throws DeserializationException {
+        /* CBOR is not text; bodies read as strings went through the default charset
+         * (ISO-8859-1), which maps every byte to exactly one char */
+        try {
+            return parseInput(new ByteArrayInputStream(input.getBytes("ISO-8859-1")), null);
+        } catch (UnsupportedEncodingException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public Object parseInput(InputStream input, String charset) throws DeserializationException {
+        try {
+            Object o = new Unpacker(input).unpack();
+            if (o == BREAK)
+                throw new IOException("Unexpected CBOR break");
+            return o;
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public boolean containsChild(Object internalObject, String key) {
+        if (!(internalObject instanceof Map))
+            return false;
+
+        return ((Map) internalObject).containsKey(key);
+    }
+
+    @Override
+    public Object queryObjectChild(Object internalObject, String key) {
+        if (!(internalObject instanceof Map))
+            return null;
+
+        return ((Map) internalObject).get(key);
+    }
+
+    @Override
+    public Iterable<Object> queryArrayChildren(Object internalArray) {
+        assert internalArray instanceof List;
+
+        return Collections.unmodifiableList((List<?>) internalArray);
+    }
+
+    @Override
+    public boolean isObject(Class<?> internalClass) {
+        return Map.class.isAssignableFrom(internalClass);
+    }
+
+    @Override
+    public boolean isArray(Class<?> internalClass) {
+        return List.class.isAssignableFrom(internalClass);
+    }
+
+    @Override
+    public String deserializationContentType() {
+        return MIME_TYPE;
+    }
+
+    private static final class Packer {
+        private byte[] mBuffer = new byte[256];
+        private int mLength = 0;
+
+        public void packNull() {
+            writeByte((MAJOR_SIMPLE << 5) | 22);
+        }
+
+        public void packBoolean(boolean value) {
+            writeByte((MAJOR_SIMPLE << 5) | (value ? 21 : 20));
+        }
+
+        public void packLong(long value) {
+            if (value >= 0)
+                packHeader(MAJOR_UNSIGNED, value);
+            else
+                packHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+
+        public void packFloat(float value) {
+            writeByte((MAJOR_SIMPLE << 5) | 26);
+            writeBigEndian(Float.floatToIntBits(value), 4);
+        }
+
+        public void packDouble(double value) {
+            writeByte((MAJOR_SIMPLE << 5) | 27);
+            writeBigEndian(Double.doubleToLongBits(value), 8);
+        }
+
+        public void packString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            packHeader(MAJOR_TEXT, bytes.length);
+            writeBytes(bytes);
+        }
+
+        public void packBytes(byte[] value) {
+            packHeader(MAJOR_BYTES, value.length);
+            writeBytes(value);
+        }
+
+        public void packDate(Date value) {
+            long time = value.getTime();
+            packHeader(MAJOR_TAG, TAG_EPOCH_DATE_TIME);
+            if (time % 1000 == 0)
+                packLong(time / 1000);
+            else
+                packDouble(time / 1000.0);
+        }
+
+        public void packHeader(int major, long argument) {
+            int type = major << 5;
+
+            if (argument < 24) {
+                writeByte(type | (int) argument);
+            } else if (argument < 0x100) {
+                writeByte(type | 24);
+                writeBigEndian(argument, 1);
+            } else if (argument < 0x10000) {
+                writeByte(type | 25);
+                writeBigEndian(argument, 2);
+            } else if (argument < 0x100000000L) {
+                writeByte(type | 26);
+                writeBigEndian(argument, 4);
+            } else {
+                writeByte(type | 27);
+                writeBigEndian(argument, 8);
+            }
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mLength);
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            mBuffer[mLength++] = (byte) b;
+        }
+
+        private void writeBigEndian(long value, int size) {
+            ensure(size);
+            for (int shift = (size - 1) * 8; shift >= 0; shift -= 8)
+                mBuffer[mLength++] = (byte) (value >>> shift);
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, mBuffer, mLength, bytes.length);
+            mLength += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (mLength + extra > mBuffer.length)
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + extra));
+        }
+    }
+
+    private static final class Unpacker {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final InputStream mInput;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mPosition = 0;
+        private int mLimit = 0;
+
+        public Unpacker(InputStream input) {
+            mInput = input;
+        }
+
+        public Object unpack() throws IOException {
+            int initial = readByte();
+            int major = initial >>> 5;
+            int info = initial & 0x1f;
+
+            if (info == INDEFINITE) {
+                switch (major) {
+                    case MAJOR_BYTES: return readChunks(MAJOR_BYTES);
+                    case MAJOR_TEXT: return new String(readChunks(MAJOR_TEXT), UTF_8);
+                    case MAJOR_ARRAY: return unpackArray(-1);
+                    case MAJOR_MAP: return unpackMap(-1);
+                    case MAJOR_SIMPLE: return BREAK;
+                    default:
+                        throw new IOException(String.format("Invalid CBOR initial byte 0x%1$02x", initial));
+                }
+            }
+
+            if (major == MAJOR_SIMPLE)
+                return unpackSimple(info);
+
+            long argument = readArgument(info);
+
+            switch (major) {
+                case MAJOR_UNSIGNED:
+                    return integerOrLong(integer(argument));
+                case MAJOR_NEGATIVE:
+                    return integerOrLong(-1 - integer(argument));
+                case MAJOR_BYTES:
+                    return readBytes(length(argument));
+                case MAJOR_TEXT:
+                    return readString(length(argument));
+                case MAJOR_ARRAY:
+                    return unpackArray(length(argument));
+                case MAJOR_MAP:
+                    return unpackMap(length(argument));
+                default:
+                    return unpackTagged(argument);
+            }
+        }
+
+        private Object unpackSimple(int info) throws IOException {
+            switch (info) {
+                case 20: return Boolean.FALSE;
+                case 21: return Boolean.TRUE;
+                case 22: return null;
+                case 23: return null; /* undefined */
+                case 24: readByte(); return null; /* unassigned simple value */
+                case 25: return halfToFloat(readShort());
+                case 26: return Float.intBitsToFloat(readInt());
+                case 27: return Double.longBitsToDouble(readLong());
+                default:
+                    if (info < 20)
+                        return null;
+                    throw new IOException(String.format("Invalid CBOR simple value %1$d", info));
+            }
+        }
+
+        private Object unpackTagged(long tag) throws IOException {
+            Object content = unpack();
+
+            if (tag == TAG_EPOCH_DATE_TIME && content instanceof Number) {
+                Number epoch = (Number) content;
+                if (content instanceof Double || content instanceof Float)
+                    return new Date(Math.round(epoch.doubleValue() * 1000));
+                return new Date(epoch.longValue() * 1000);
+            } else if (tag == TAG_DATE_TIME_STRING && content instanceof String) {
+                return parseDateTime((String) content);
+            }
+
+            return content;
+        }
+
+        private Map<String, Object> unpackMap(int size) throws IOException {
+            Map<String, Object> map = new HashMap<String, Object>(size >= 0 ? size * 4 / 3 + 1 : 16);
+            for (int i = 0; size < 0 || i < size; ++i) {
+                Object key = unpack();
+                if (key == BREAK) {
+                    if (size < 0)
+                        break;
+                    throw new IOException("Unexpected CBOR break");
+                }
+                Object value = unpack();
+                if (value == BREAK)
+                    throw new IOException("Unexpected CBOR break");
+                map.put(key instanceof String ? (String) key : String.valueOf(key), value);
+            }
+            return map;
+        }
+
+        private List<Object> unpackArray(int size) throws IOException {
+            List<Object> list = new ArrayList<Object>(size >= 0 ? size : 16);
+            for (int i = 0; size < 0 || i < size; ++i) {
+                Object element = unpack();
+                if (element == BREAK) {
+                    if (size < 0)
+                        break;
+                    throw new IOException("Unexpected CBOR break");
+                }
+                list.add(element);
+            }
+            return list;
+        }
+
+        /* concatenates the definite-length chunks of an indefinite-length string */
+        private byte[] readChunks(int major) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            while (true) {
+                int initial = readByte();
+                if (initial == 0xff)
+                    return output.toByteArray();
+                if (initial >>> 5 != major || (initial & 0x1f) == INDEFINITE)
+                    throw new IOException("Invalid chunk in indefinite-length CBOR string");
+                byte[] chunk = readBytes(length(readArgument(initial & 0x1f)));
+                output.write(chunk, 0, chunk.length);
+            }
+        }
+
+        private long readArgument(int info) throws IOException {
+            if (info < 24)
+                return info;
+
+            switch (info) {
+                case 24: return readByte();
+                case 25: return readShort();
+                case 26: return readInt() & 0xffffffffL;
+                case 27: return readLong();
+                default:
+                    throw new IOException(String.format("Invalid CBOR additional info %1$d", info));
+            }
+        }
+
+        private String readString(int length) throws IOException {
+            if (length <= mLimit - mPosition) {
+                /* decode straight out of the read buffer */
+                String s = new String(mBuffer, mPosition, length, UTF_8);
+                mPosition += length;
+                return s;
+            }
+
+            return new String(readBytes(length), UTF_8);
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = Math.min(length, mLimit - mPosition);
+            System.arraycopy(mBuffer, mPosition, bytes, 0, offset);
+            mPosition += offset;
+
+            while (offset < length) {
+                int read = mInput.read(bytes, offset, length - offset);
+                if (read < 0)
+                    throw new EOFException();
+                offset += read;
+            }
+            return bytes;
+        }
+
+        private int readByte() throws IOException {
+            if (mPosition == mLimit) {
+                mLimit = mInput.read(mBuffer, 0, mBuffer.length);
+                mPosition = 0;
+                if (mLimit <= 0) {
+                    mLimit = 0;
+                    throw new EOFException();
+                }
+            }
+            return mBuffer[mPosition++] & 0xff;
+        }
+
+        private int readShort() throws IOException {
+            return (readByte() << 8) | readByte();
+        }
+
+        private int readInt() throws IOException {
+            return (readShort() << 16) | readShort();
+        }
+
+        private long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+        }
+
+        private static int length(long argument) throws IOException {
+            if (argument < 0 || argument > Integer.MAX_VALUE)
+                throw new IOException("CBOR item too large");
+            return (int) argument;
+        }
+
+        /* fields bind to long at most, so larger values are rejected rather than wrapped */
+        private static long integer(long argument) throws IOException {
+            if (argument < 0)
+                throw new IOException("CBOR integer does not fit in a long");
+            return argument;
+        }
+
+        private static Object integerOrLong(long value) {
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+                return (int) value;
+            return value;
+        }
+
+        private static float halfToFloat(int bits) {
+            int exponent = (bits >>> 10) & 0x1f;
+            int mantissa = bits & 0x3ff;
+            float value;
+
+            if (exponent == 0)
+                value = mantissa * (float) Math.pow(2, -24);
+            else if (exponent == 0x1f)
+                value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+            else
+                value = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+
+            return (bits & 0x8000) != 0 ? -value : value;
+        }
+
+        /* RFC 3339 date-time: yyyy-MM-ddTHH:mm:ss[.fraction](Z|+hh:mm|-hh:mm) */
+        private static Date parseDateTime(String s) throws IOException {
+            try {
+                int year = Integer.parseInt(s.substring(0, 4));
+                int month = Integer.parseInt(s.substring(5, 7));
+                int day = Integer.parseInt(s.substring(8, 10));
+                int hour = Integer.parseInt(s.substring(11, 13));
+                int minute = Integer.parseInt(s.substring(14, 16));
+                int second = Integer.parseInt(s.substring(17, 19));
+
+                int i = 19;
+                int millis = 0;
+                if (i < s.length() && s.charAt(i) == '.') {
+                    int scale = 100;
+                    for (++i; i < s.length() && Character.isDigit(s.charAt(i)); ++i) {
+                        millis += (s.charAt(i) - '0') * scale;
+                        scale /= 10;
+                    }
+                }
+
+                int offsetMinutes = 0;
+                char zone = Character.toUpperCase(s.charAt(i));
+                if (zone == '+' || zone == '-') {
+                    offsetMinutes = Integer.parseInt(s.substring(i + 1, i + 3)) * 60 +
+                            Integer.parseInt(s.substring(i + 4, i + 6));
+                    if (zone == '-')
+                        offsetMinutes = -offsetMinutes;
+                } else if (zone != 'Z') {
+                    throw new IOException(String.format("Invalid date/time '%1$s'", s));
+                }
+
+                long seconds = daysFromCivil(year, month, day) * 86400L +
+                        hour * 3600 + minute * 60 + second - offsetMinutes * 60;
+                return new Date(seconds * 1000 + millis);
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("Invalid date/time '%1$s'", s));
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException(String.format("Invalid date/time '%1$s'", s));
+            }
+        }
+
+        /* days since 1970-01-01 in the proleptic Gregorian calendar */
+        private static long daysFromCivil(int year, int month, int day) {
+            year -= month <= 2 ? 1 : 0;
+            long era = (year >= 0 ? year : year - 399) / 400;
+            long yearOfEra = year - era * 400;
+            long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+            long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097 + dayOfEra - 719468;
+        }
+    }
+
+}
@@ -7,8 +7,11 @@ package com.spoqa.battery.codecs;
 import com.spoqa.battery.CodecUtils;
 import com.spoqa.battery.FieldNameTranslator;
 import com.spoqa.battery.Logger;
-import com.spoqa.battery.RequestSerializer;
-import com.spoqa.battery.ResponseDeserializer;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.StreamingRequestBody;
+import com.spoqa.battery.StreamingRequestSerializer;
+import com.spoqa.battery.StreamingResponseDeserializer;
+import com.spoqa.battery.StringUtils;
 import com.spoqa.battery.TypeAdapterCollection;
 import com.spoqa.battery.annotations.RequestBody;
 import com.spoqa.battery.annotations.RequestObject;
@@ -19,17 +22,26 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class JsonCodec implements RequestSerializer, ResponseDeserializer {
+public class JsonCodec implements StreamingRequestSerializer, StreamingResponseDeserializer {
     private static final String TAG = "JsonCodec";
 
     public static final String MIME_TYPE = "application/json";
+    public static final String MIME_TYPE_NDJSON = "application/x-ndjson";
 
     public JsonCodec() {
 
@@ -41,38 +53,198 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
     public byte[] serializeObject(Object o, FieldNameTranslator translator,
                                   TypeAdapterCollection typeAdapters)
             throws SerializationException {
-        List<Field> fields = CodecUtils.getAnnotatedFields(null, RequestObject.class, o.getClass());
-        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(null, RequestObject.class, o.getClass());
+        Object requestObject = getRequestObject(o);
+        JSONObject body = visitObject(requestObject, translator, typeAdapters, requestObject == o);
+
+        if (body != null) {
+            try {
+                return body.toString().getBytes("utf-8");
+            } catch (UnsupportedEncodingException e) {
+                Logger.error(TAG, e.toString());
+            }
+        }
+
+        return "null".getBytes();
+    }
+
+    @Override
+    public StreamingRequestBody serializeStream(Object o, final FieldNameTranslator translator,
+                                                final TypeAdapterCollection typeAdapters)
+            throws SerializationException {
+        Object requestObject = getRequestObject(o);
+        final List<String> names = new ArrayList<String>();
+        final List<Object> values = new ArrayList<Object>();
+        boolean repeatable = true;
+
+        /* members are read now, like serializeObject() does; their contents while being written */
+        ReflectionCache cache = ReflectionCache.getShared();
+        Iterable<Field> fields;
+        Iterable<Method> getters;
+        if (requestObject == o) {
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, o.getClass());
+        } else {
+            fields = CodecUtils.getAllFields(cache, requestObject.getClass());
+            getters = CodecUtils.getAllGetterMethods(cache, requestObject.getClass());
+        }
+
+        try {
+            for (Field f : fields) {
+                if (f.getName().equals("serialVersionUID"))
+                    continue;
+                names.add(foreignName(f.getAnnotation(RequestBody.class), f.getName(), translator));
+                values.add(f.get(requestObject));
+            }
+            for (Method m : getters) {
+                names.add(foreignName(m.getAnnotation(RequestBody.class),
+                        CodecUtils.normalizeGetterName(m.getName()), translator));
+                values.add(m.invoke(requestObject));
+            }
+        } catch (IllegalAccessException e) {
+            throw new SerializationException(e);
+        } catch (InvocationTargetException e) {
+            throw new SerializationException(e);
+        }
+
+        for (Object value : values) {
+            if (value instanceof Iterator)
+                repeatable = false;
+        }
+
+        final boolean isRepeatable = repeatable;
+        final AtomicBoolean written = new AtomicBoolean();
+        return new StreamingRequestBody() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                if (!isRepeatable && written.getAndSet(true))
+                    throw new IOException("Request body can only be written once");
+
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, "utf-8"));
+                writer.write('{');
+                for (int i = 0; i < names.size(); ++i) {
+                    if (i > 0)
+                        writer.write(',');
+                    writer.write(JSONObject.quote(names.get(i)));
+                    writer.write(':');
+                    writeMember(writer, values.get(i), translator, typeAdapters);
+                }
+                writer.write('}');
+                writer.flush();
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return isRepeatable;
+            }
+        };
+    }
+
+    /* @RequestObject member of o if it declares one, or o itself */
+    private Object getRequestObject(Object o) {
+        ReflectionCache cache = ReflectionCache.getShared();
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestObject.class, o.getClass());
+        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestObject.class, o.getClass());
         int count = fields.size() + getters.size();
-        boolean filterAnnotated = true;
 
         if (count > 1) {
-            Logger.error(TAG, String.format("Object %1$s has more than one @RequestObject fields.", o.getClass().getName()));
+            Logger.error(TAG, "Object %1$s has more than one @RequestObject fields.", o.getClass().getName());
         } else if (count == 1) {
             try {
                 if (fields.size() == 1)
-                    o = fields.get(0).get(o);
-                else if (getters.size() == 1)
-                    o = getters.get(0).invoke(o);
-                filterAnnotated = false;
+                    return fields.get(0).get(o);
+                else
+                    return getters.get(0).invoke(o);
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
             } catch (InvocationTargetException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
             }
         }
 
-        JSONObject body = visitObject(o, translator, typeAdapters, filterAnnotated);
+        return o;
+    }
 
-        if (body != null) {
-            try {
-                return body.toString().getBytes("utf-8");
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
+    private static String foreignName(RequestBody annotation, String localName, FieldNameTranslator translator) {
+        if (annotation != null && annotation.value().length() > 0)
+            return annotation.value();
+        else if (translator != null)
+            return translator.localToRemote(localName);
+        else
+            return localName;
+    }
+
+    /* Iterators and Iterables are written one element at a time */
+    private void writeMember(Writer writer, Object value, FieldNameTranslator translator,
+                             TypeAdapterCollection typeAdapters) throws IOException {
+        Iterator<?> iterator = null;
+        if (value instanceof Iterator)
+            iterator = (Iterator<?>) value;
+        else if (value instanceof Iterable)
+            iterator = ((Iterable<?>) value).iterator();
+
+        try {
+            if (iterator == null) {
+                writeValue(writer, toJsonValue(value, translator, typeAdapters));
+                return;
             }
+
+            writer.write('[');
+            for (boolean first = true; iterator.hasNext(); first = false) {
+                if (!first)
+                    writer.write(',');
+                writeValue(writer, toJsonValue(iterator.next(), translator, typeAdapters));
+            }
+            writer.write(']');
+        } catch (SerializationException e) {
+            throw new IOException(e);
+        } catch (JSONException e) {
+            throw new IOException(e);
         }
+    }
 
-        return "null".getBytes();
+    private static void writeValue(Writer writer, Object value) throws IOException, JSONException {
+        if (value instanceof String)
+            writer.write(JSONObject.quote((String) value));
+        else if (value instanceof Number)
+            writer.write(JSONObject.numberToString((Number) value));
+        else
+            writer.write(String.valueOf(value));
+    }
+
+    /* value of a single element as org.json represents it */
+    private Object toJsonValue(Object element, FieldNameTranslator translator,
+                               TypeAdapterCollection typeAdapters) throws SerializationException {
+        if (element == null)
+            return JSONObject.NULL;
+
+        Class type = element.getClass();
+        if (CodecUtils.isString(type) || element instanceof Number || element instanceof Boolean)
+            return element;
+        else if (element instanceof Iterable)
+            return visitArray((Iterable<Object>) element, translator, typeAdapters);
+        else if (element instanceof Iterator)
+            return visitArray(toIterable((Iterator<Object>) element), translator, typeAdapters);
+        else if (element instanceof Enum)
+            return element.toString();
+        else if (typeAdapters.contains(type))
+            return typeAdapters.query(type).encode(element);
+
+        JSONObject object = visitObject(element, translator, typeAdapters, false);
+        return object != null ? object : new JSONObject();
+    }
+
+    private static Iterable<Object> toIterable(final Iterator<Object> iterator) {
+        return new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return iterator;
+            }
+        };
     }
 
     @Override
@@ -89,12 +261,13 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
                                    TypeAdapterCollection typeAdapters, boolean filterAnnotated) throws SerializationException {
         Iterable<Field> fields;
         Iterable<Method> getters;
+        ReflectionCache cache = ReflectionCache.getShared();
         if (filterAnnotated) {
-            fields = CodecUtils.getAnnotatedFields(null, RequestBody.class, o.getClass());
-            getters = CodecUtils.getAnnotatedGetterMethods(null, RequestBody.class, o.getClass());
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, o.getClass());
         } else {
-            fields = CodecUtils.getAllFields(null, o.getClass());
-            getters = CodecUtils.getAllGetterMethods(null, o.getClass());
+            fields = CodecUtils.getAllFields(cache, o.getClass());
+            getters = CodecUtils.getAllGetterMethods(cache, o.getClass());
         }
 
         JSONObject body = new JSONObject();
@@ -137,6 +310,8 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
                     body.put(foreignName, (Long) element);
                 else if (CodecUtils.isList(type))
                     body.put(foreignName, visitArray((List<Object>) element, translator, typeAdapters));
+                else if (element instanceof Iterable || element instanceof Iterator)
+                    body.put(foreignName, toJsonValue(element, translator, typeAdapters));
                 else if (type.isEnum())
                     body.put(foreignName, element.toString());
                 else if (typeAdapters.contains(element.getClass()))
@@ -144,10 +319,10 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
                 else
                     body.put(foreignName, visitObject(element, translator, typeAdapters, false));
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             } catch (JSONException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             }
         }
@@ -186,6 +361,8 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
                     body.put(foreignName, (Long) element);
                 else if (CodecUtils.isList(type))
                     body.put(foreignName, visitArray((List<Object>) element, translator, typeAdapters));
+                else if (element instanceof Iterable || element instanceof Iterator)
+                    body.put(foreignName, toJsonValue(element, translator, typeAdapters));
                 else if (type.isEnum())
                     body.put(foreignName, element.toString());
                 else if (typeAdapters.contains(element.getClass()))
@@ -193,13 +370,13 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
                 else
                     body.put(foreignName, visitObject(element, translator, typeAdapters, false));
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             } catch (JSONException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             } catch (InvocationTargetException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             }
         }
@@ -253,6 +430,18 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
         }
     }
 
+    @Override
+    public Object parseInput(InputStream input, String charset) throws DeserializationException {
+        /* org.json only tokenizes strings; decode straight into one without an intermediate byte array */
+        try {
+            return new JSONObject(StringUtils.read(input, charset));
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        } catch (JSONException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
     @Override
     public boolean containsChild(Object internalObject, String key) {
         assert internalObject instanceof JSONObject;
@@ -281,11 +470,11 @@ public class JsonCodec implements RequestSerializer, ResponseDeserializer {
         final JSONArray jsonArray = (JSONArray) internalArray;
 
         return new Iterable<Object>() {
-            private int index = 0;
-
             @Override
             public Iterator<Object> iterator() {
                 return new Iterator<Object>() {
+                    private int index = 0;
+
                     @Override
                     public boolean hasNext() {
                         return index < jsonArray.length();
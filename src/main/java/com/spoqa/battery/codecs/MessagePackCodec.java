@@ -0,0 +1,601 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.CodecUtils;
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.Logger;
+import com.spoqa.battery.ReflectionCache;
+import com.spoqa.battery.RequestSerializer;
+import com.spoqa.battery.StreamingResponseDeserializer;
+import com.spoqa.battery.TypeAdapter;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MessagePack (https://github.com/msgpack/msgpack/blob/master/spec.md) codec.
+ *
+ * Maps are decoded into {@link Map}s keyed by String, arrays into {@link List}s, integers into
+ * Integer (or Long if they do not fit), bin into byte[] and the timestamp extension into
+ * {@link Date}. Other extension types are handed over as their raw payload.
+ */
+public class MessagePackCodec implements RequestSerializer, StreamingResponseDeserializer {
+    private static final String TAG = "MessagePackCodec";
+
+    public static final String MIME_TYPE = "application/msgpack";
+    public static final String MIME_TYPE_LEGACY = "application/x-msgpack";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int EXT_TIMESTAMP = -1;
+
+    private final String mMimeType;
+
+    public MessagePackCodec() {
+        this(MIME_TYPE);
+    }
+
+    public MessagePackCodec(String mimeType) {
+        mMimeType = mimeType;
+    }
+
+    /* serializer */
+
+    @Override
+    public byte[] serializeObject(Object o, FieldNameTranslator translator,
+                                  TypeAdapterCollection typeAdapters)
+            throws SerializationException {
+        ReflectionCache cache = ReflectionCache.getShared();
+        List<Field> fields = CodecUtils.getAnnotatedFields(cache, RequestObject.class, o.getClass());
+        List<Method> getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestObject.class, o.getClass());
+        int count = fields.size() + getters.size();
+        boolean filterAnnotated = true;
+
+        if (count > 1) {
+            Logger.error(TAG, "Object %1$s has more than one @RequestObject fields.", o.getClass().getName());
+        } else if (count == 1) {
+            try {
+                if (fields.size() == 1)
+                    o = fields.get(0).get(o);
+                else if (getters.size() == 1)
+                    o = getters.get(0).invoke(o);
+                filterAnnotated = false;
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+            } catch (InvocationTargetException e) {
+                Logger.error(TAG, e.toString());
+            }
+        }
+
+        Packer packer = new Packer();
+        if (o == null)
+            packer.packNil();
+        else
+            visitObject(packer, o, translator, typeAdapters, filterAnnotated);
+
+        return packer.toByteArray();
+    }
+
+    @Override
+    public String serializationContentType() {
+        return mMimeType;
+    }
+
+    @Override
+    public boolean supportsCompositeType() {
+        return true;
+    }
+
+    private void visitObject(Packer packer, Object o, FieldNameTranslator translator,
+                             TypeAdapterCollection typeAdapters, boolean filterAnnotated)
+            throws SerializationException {
+        List<Field> fields;
+        List<Method> getters;
+        ReflectionCache cache = ReflectionCache.getShared();
+        if (filterAnnotated) {
+            fields = CodecUtils.getAnnotatedFields(cache, RequestBody.class, o.getClass());
+            getters = CodecUtils.getAnnotatedGetterMethods(cache, RequestBody.class, o.getClass());
+        } else {
+            fields = CodecUtils.getAllFields(cache, o.getClass());
+            getters = CodecUtils.getAllGetterMethods(cache, o.getClass());
+        }
+
+        /* the map header carries the entry count, so members which fail to be read are
+         * written as nil instead of being skipped */
+        int count = fields.size() + getters.size();
+        for (Field f : fields) {
+            if (f.getName().equals("serialVersionUID"))
+                --count;
+        }
+        packer.packMapHeader(count);
+
+        for (Field f : fields) {
+            String localName = f.getName();
+            if (localName.equals("serialVersionUID"))
+                continue;
+
+            packer.packString(foreignName(f.getAnnotation(RequestBody.class), localName, translator));
+
+            Object element;
+            try {
+                element = f.get(o);
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            }
+
+            visitValue(packer, element, translator, typeAdapters);
+        }
+
+        for (Method m : getters) {
+            String localName = CodecUtils.normalizeGetterName(m.getName());
+
+            packer.packString(foreignName(m.getAnnotation(RequestBody.class), localName, translator));
+
+            Object element;
+            try {
+                element = m.invoke(o);
+            } catch (IllegalAccessException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            } catch (InvocationTargetException e) {
+                Logger.error(TAG, e.toString());
+                element = null;
+            }
+
+            visitValue(packer, element, translator, typeAdapters);
+        }
+    }
+
+    private String foreignName(RequestBody annotation, String localName, FieldNameTranslator translator) {
+        if (annotation != null && annotation.value().length() > 0)
+            return annotation.value();
+        else if (translator != null)
+            return translator.localToRemote(localName);
+        else
+            return localName;
+    }
+
+    private void visitValue(Packer packer, Object element, FieldNameTranslator translator,
+                            TypeAdapterCollection typeAdapters) throws SerializationException {
+        if (element == null) {
+            packer.packNil();
+            return;
+        }
+
+        Class<?> type = element.getClass();
+
+        if (CodecUtils.isString(type))
+            packer.packString((String) element);
+        else if (CodecUtils.isInteger(type) || type == Short.class || type == Byte.class)
+            packer.packLong(((Number) element).longValue());
+        else if (CodecUtils.isLong(type))
+            packer.packLong((Long) element);
+        else if (CodecUtils.isFloat(type))
+            packer.packFloat((Float) element);
+        else if (CodecUtils.isDouble(type))
+            packer.packDouble((Double) element);
+        else if (CodecUtils.isBoolean(type))
+            packer.packBoolean((Boolean) element);
+        else if (type == byte[].class)
+            packer.packBinary((byte[]) element);
+        else if (element instanceof List)
+            visitArray(packer, (List<?>) element, translator, typeAdapters);
+        else if (element instanceof Map)
+            visitMap(packer, (Map<?, ?>) element, translator, typeAdapters);
+        else if (type.isEnum())
+            packer.packString(element.toString());
+        else if (typeAdapters.contains(type))
+            packer.packString(encode(typeAdapters, type, element));
+        else
+            visitObject(packer, element, translator, typeAdapters, false);
+    }
+
+    private void visitArray(Packer packer, List<?> a, FieldNameTranslator translator,
+                            TypeAdapterCollection typeAdapters) throws SerializationException {
+        packer.packArrayHeader(a.size());
+        for (Object element : a)
+            visitValue(packer, element, translator, typeAdapters);
+    }
+
+    private void visitMap(Packer packer, Map<?, ?> m, FieldNameTranslator translator,
+                          TypeAdapterCollection typeAdapters) throws SerializationException {
+        packer.packMapHeader(m.size());
+        for (Map.Entry<?, ?> entry : m.entrySet()) {
+            packer.packString(String.valueOf(entry.getKey()));
+            visitValue(packer, entry.getValue(), translator, typeAdapters);
+        }
+    }
+
+    /* adapters are looked up by the class of the value they encode */
+    @SuppressWarnings("unchecked")
+    private static String encode(TypeAdapterCollection typeAdapters, Class<?> type, Object value)
+            throws SerializationException {
+        TypeAdapter<Object> adapter = (TypeAdapter<Object>) typeAdapters.query(type);
+        return adapter.encode(value);
+    }
+
+    /* deserializer */
+
+    @Override
+    public Object parseInput(String input) throws DeserializationException {
+        /* MessagePack is not text; bodies read as strings went through the default charset
+         * (ISO-8859-1), which maps every byte to exactly one char */
+        try {
+            return parseInput(new ByteArrayInputStream(input.getBytes("ISO-8859-1")), null);
+        } catch (UnsupportedEncodingException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public Object parseInput(InputStream input, String charset) throws DeserializationException {
+        try {
+            return new Unpacker(input).unpack();
+        } catch (IOException e) {
+            throw new DeserializationException(e);
+        }
+    }
+
+    @Override
+    public boolean containsChild(Object internalObject, String key) {
+        if (!(internalObject instanceof Map))
+            return false;
+
+        return ((Map) internalObject).containsKey(key);
+    }
+
+    @Override
+    public Object queryObjectChild(Object internalObject, String key) {
+        if (!(internalObject instanceof Map))
+            return null;
+
+        return ((Map) internalObject).get(key);
+    }
+
+    @Override
+    public Iterable<Object> queryArrayChildren(Object internalArray) {
+        assert internalArray instanceof List;
+
+        return Collections.unmodifiableList((List<?>) internalArray);
+    }
+
+    @Override
+    public boolean isObject(Class<?> internalClass) {
+        return Map.class.isAssignableFrom(internalClass);
+    }
+
+    @Override
+    public boolean isArray(Class<?> internalClass) {
+        return List.class.isAssignableFrom(internalClass);
+    }
+
+    @Override
+    public String deserializationContentType() {
+        return mMimeType;
+    }
+
+    private static final class Packer {
+        private byte[] mBuffer = new byte[256];
+        private int mLength = 0;
+
+        public void packNil() {
+            ensure(1);
+            mBuffer[mLength++] = (byte) 0xc0;
+        }
+
+        public void packBoolean(boolean value) {
+            ensure(1);
+            mBuffer[mLength++] = (byte) (value ? 0xc3 : 0xc2);
+        }
+
+        public void packLong(long value) {
+            if (value >= 0) {
+                if (value < 0x80) {
+                    ensure(1);
+                    mBuffer[mLength++] = (byte) value;
+                } else if (value < 0x100) {
+                    writeHeader(0xcc, value, 1);
+                } else if (value < 0x10000) {
+                    writeHeader(0xcd, value, 2);
+                } else if (value < 0x100000000L) {
+                    writeHeader(0xce, value, 4);
+                } else {
+                    writeHeader(0xcf, value, 8);
+                }
+            } else {
+                if (value >= -32) {
+                    ensure(1);
+                    mBuffer[mLength++] = (byte) value;
+                } else if (value >= Byte.MIN_VALUE) {
+                    writeHeader(0xd0, value, 1);
+                } else if (value >= Short.MIN_VALUE) {
+                    writeHeader(0xd1, value, 2);
+                } else if (value >= Integer.MIN_VALUE) {
+                    writeHeader(0xd2, value, 4);
+                } else {
+                    writeHeader(0xd3, value, 8);
+                }
+            }
+        }
+
+        public void packFloat(float value) {
+            writeHeader(0xca, Float.floatToIntBits(value), 4);
+        }
+
+        public void packDouble(double value) {
+            writeHeader(0xcb, Double.doubleToLongBits(value), 8);
+        }
+
+        public void packString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            int length = bytes.length;
+
+            if (length < 32) {
+                ensure(1);
+                mBuffer[mLength++] = (byte) (0xa0 | length);
+            } else if (length < 0x100) {
+                writeHeader(0xd9, length, 1);
+            } else if (length < 0x10000) {
+                writeHeader(0xda, length, 2);
+            } else {
+                writeHeader(0xdb, length, 4);
+            }
+            writeBytes(bytes);
+        }
+
+        public void packBinary(byte[] value) {
+            int length = value.length;
+
+            if (length < 0x100)
+                writeHeader(0xc4, length, 1);
+            else if (length < 0x10000)
+                writeHeader(0xc5, length, 2);
+            else
+                writeHeader(0xc6, length, 4);
+            writeBytes(value);
+        }
+
+        public void packArrayHeader(int size) {
+            if (size < 16) {
+                ensure(1);
+                mBuffer[mLength++] = (byte) (0x90 | size);
+            } else if (size < 0x10000) {
+                writeHeader(0xdc, size, 2);
+            } else {
+                writeHeader(0xdd, size, 4);
+            }
+        }
+
+        public void packMapHeader(int size) {
+            if (size < 16) {
+                ensure(1);
+                mBuffer[mLength++] = (byte) (0x80 | size);
+            } else if (size < 0x10000) {
+                writeHeader(0xde, size, 2);
+            } else {
+                writeHeader(0xdf, size, 4);
+            }
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mLength);
+        }
+
+        /* writes a marker byte followed by the lowest `size` bytes of value, big-endian */
+        private void writeHeader(int marker, long value, int size) {
+            ensure(1 + size);
+            mBuffer[mLength++] = (byte) marker;
+            for (int shift = (size - 1) * 8; shift >= 0; shift -= 8)
+                mBuffer[mLength++] = (byte) (value >>> shift);
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, mBuffer, mLength, bytes.length);
+            mLength += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (mLength + extra > mBuffer.length)
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + extra));
+        }
+    }
+
+    private static final class Unpacker {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final InputStream mInput;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mPosition = 0;
+        private int mLimit = 0;
+
+        public Unpacker(InputStream input) {
+            mInput = input;
+        }
+
+        public Object unpack() throws IOException {
+            int b = readByte();
+
+            if (b <= 0x7f)
+                return b;
+            else if (b >= 0xe0)
+                return (int) (byte) b;
+            else if ((b & 0xf0) == 0x80)
+                return unpackMap(b & 0x0f);
+            else if ((b & 0xf0) == 0x90)
+                return unpackArray(b & 0x0f);
+            else if ((b & 0xe0) == 0xa0)
+                return readString(b & 0x1f);
+
+            switch (b) {
+                case 0xc0: return null;
+                case 0xc2: return Boolean.FALSE;
+                case 0xc3: return Boolean.TRUE;
+                case 0xc4: return readBytes(readByte());
+                case 0xc5: return readBytes(readShort());
+                case 0xc6: return readBytes(readLength());
+                case 0xc7: return readExtension(readByte());
+                case 0xc8: return readExtension(readShort());
+                case 0xc9: return readExtension(readLength());
+                case 0xca: return Float.intBitsToFloat(readInt());
+                case 0xcb: return Double.longBitsToDouble(readLong());
+                case 0xcc: return readByte();
+                case 0xcd: return readShort();
+                case 0xce: return integerOrLong(readInt() & 0xffffffffL);
+                case 0xcf: return integerOrLong(readUnsignedLong());
+                case 0xd0: return (int) (byte) readByte();
+                case 0xd1: return (int) (short) readShort();
+                case 0xd2: return readInt();
+                case 0xd3: return integerOrLong(readLong());
+                case 0xd4: return readExtension(1);
+                case 0xd5: return readExtension(2);
+                case 0xd6: return readExtension(4);
+                case 0xd7: return readExtension(8);
+                case 0xd8: return readExtension(16);
+                case 0xd9: return readString(readByte());
+                case 0xda: return readString(readShort());
+                case 0xdb: return readString(readLength());
+                case 0xdc: return unpackArray(readShort());
+                case 0xdd: return unpackArray(readLength());
+                case 0xde: return unpackMap(readShort());
+                case 0xdf: return unpackMap(readLength());
+                default:
+                    throw new IOException(String.format("Invalid MessagePack marker 0x%1$02x", b));
+            }
+        }
+
+        private Map<String, Object> unpackMap(int size) throws IOException {
+            Map<String, Object> map = new HashMap<String, Object>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; ++i) {
+                Object key = unpack();
+                map.put(key instanceof String ? (String) key : String.valueOf(key), unpack());
+            }
+            return map;
+        }
+
+        private List<Object> unpackArray(int size) throws IOException {
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; ++i)
+                list.add(unpack());
+            return list;
+        }
+
+        private Object readExtension(int length) throws IOException {
+            int type = (byte) readByte();
+            if (type != EXT_TIMESTAMP)
+                return readBytes(length);
+
+            long seconds;
+            long nanoseconds;
+            if (length == 4) {
+                seconds = readInt() & 0xffffffffL;
+                nanoseconds = 0;
+            } else if (length == 8) {
+                long value = readLong();
+                seconds = value & 0x3ffffffffL;
+                nanoseconds = value >>> 34;
+            } else if (length == 12) {
+                nanoseconds = readInt() & 0xffffffffL;
+                seconds = readLong();
+            } else {
+                throw new IOException(String.format("Invalid timestamp length %1$d", length));
+            }
+            return new Date(seconds * 1000 + nanoseconds / 1000000);
+        }
+
+        private String readString(int length) throws IOException {
+            if (length <= mLimit - mPosition) {
+                /* decode straight out of the read buffer */
+                String s = new String(mBuffer, mPosition, length, UTF_8);
+                mPosition += length;
+                return s;
+            }
+
+            return new String(readBytes(length), UTF_8);
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = Math.min(length, mLimit - mPosition);
+            System.arraycopy(mBuffer, mPosition, bytes, 0, offset);
+            mPosition += offset;
+
+            while (offset < length) {
+                int read = mInput.read(bytes, offset, length - offset);
+                if (read < 0)
+                    throw new EOFException();
+                offset += read;
+            }
+            return bytes;
+        }
+
+        private int readByte() throws IOException {
+            if (mPosition == mLimit) {
+                mLimit = mInput.read(mBuffer, 0, mBuffer.length);
+                mPosition = 0;
+                if (mLimit <= 0) {
+                    mLimit = 0;
+                    throw new EOFException();
+                }
+            }
+            return mBuffer[mPosition++] & 0xff;
+        }
+
+        private int readShort() throws IOException {
+            return (readByte() << 8) | readByte();
+        }
+
+        private int readInt() throws IOException {
+            return (readShort() << 16) | readShort();
+        }
+
+        private long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+        }
+
+        /* fields bind to long at most, so larger values are rejected rather than wrapped */
+        private long readUnsignedLong() throws IOException {
+            long value = readLong();
+            if (value < 0)
+                throw new IOException("MessagePack uint64 does not fit in a long");
+            return value;
+        }
+
+        private int readLength() throws IOException {
+            int length = readInt();
+            if (length < 0)
+                throw new IOException("MessagePack container too large");
+            return length;
+        }
+
+        private static Object integerOrLong(long value) {
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+                return (int) value;
+            return value;
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import com.spoqa.battery.CodecUtils;
 import com.spoqa.battery.FieldNameTranslator;
 import com.spoqa.battery.Logger;
 import com.spoqa.battery.PlatformUtils;
+import com.spoqa.battery.ReflectionCache;
 import com.spoqa.battery.RequestSerializer;
 import com.spoqa.battery.TypeAdapterCollection;
 import com.spoqa.battery.annotations.RequestBody;
@@ -41,7 +42,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
                                   TypeAdapterCollection typeAdapters) throws SerializationException {
         mOutputStream = new ByteArrayOutputStream();
 
-        List<Field> fields = CodecUtils.getAnnotatedFields(null, RequestBody.class, o.getClass());
+        List<Field> fields = CodecUtils.getAnnotatedFields(ReflectionCache.getShared(), RequestBody.class, o.getClass());
         for (Field f : fields) {
             RequestBody annotation = f.getAnnotation(RequestBody.class);
             Class type = f.getType();
@@ -82,7 +83,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
                             try {
                                 addPart(nameWithIndex, new FileInputStream(file), file.getAbsolutePath());
                             } catch (FileNotFoundException e) {
-                                Logger.warn(TAG, String.format("Could not find file %1$s", file.getAbsolutePath()));
+                                Logger.warn(TAG, "Could not find file %1$s", file.getAbsolutePath());
                             }
                         } else if (innerElement instanceof InputStream) {
                             addPart(nameWithIndex, (InputStream) innerElement, null);
@@ -97,16 +98,15 @@ public class MultipartFormDataEncoder implements RequestSerializer {
                         File file = (File) element;
                         addPart(foreignName, new FileInputStream(file), file.getName());
                     } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                        Logger.warn(TAG, String.format("Field %1$s is not serializable: %2$s", type.getName(), e.toString()));
+                        Logger.warn(TAG, "Field %1$s is not serializable: %2$s", type.getName(), e.toString());
                     }
                 } else if (typeAdapters.contains(type)) {
                     addPart(foreignName, typeAdapters.query(type).encode(element));
                 } else {
-                    Logger.warn(TAG, String.format("Field %1$s is not serializable", type.getName()));
+                    Logger.warn(TAG, "Field %1$s is not serializable", type.getName());
                 }
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             }
         }
@@ -115,7 +115,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
             String end = String.format("--%1$s--\r\n", mBoundary);
             mOutputStream.write(end.getBytes("utf-8"));
         } catch (IOException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
         }
 
         return mOutputStream.toByteArray();
@@ -129,7 +129,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
             mOutputStream.write(formData.getBytes("utf-8"));
             mOutputStream.write("\r\n".getBytes("utf-8"));
         } catch (IOException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
         }
     }
 
@@ -162,7 +162,7 @@ public class MultipartFormDataEncoder implements RequestSerializer {
                 mOutputStream.write(buffer, 0, read);
             mOutputStream.write("\r\n".getBytes("utf-8"));
         } catch (IOException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
         }
     }
 
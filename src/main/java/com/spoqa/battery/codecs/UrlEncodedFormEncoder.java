@@ -7,6 +7,7 @@ package com.spoqa.battery.codecs;
 import com.spoqa.battery.CodecUtils;
 import com.spoqa.battery.FieldNameTranslator;
 import com.spoqa.battery.Logger;
+import com.spoqa.battery.ReflectionCache;
 import com.spoqa.battery.RequestSerializer;
 import com.spoqa.battery.TypeAdapterCollection;
 import com.spoqa.battery.annotations.RequestBody;
@@ -33,7 +34,7 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
                                   TypeAdapterCollection typeAdapters) throws SerializationException {
         StringBuilder sb = new StringBuilder();
 
-        List<Field> fields = CodecUtils.getAnnotatedFields(null, RequestBody.class, o.getClass());
+        List<Field> fields = CodecUtils.getAnnotatedFields(ReflectionCache.getShared(), RequestBody.class, o.getClass());
         for (Field f : fields) {
             RequestBody annotation = f.getAnnotation(RequestBody.class);
             Class type = f.getType();
@@ -72,10 +73,10 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
                 } else if (typeAdapters.contains(type)) {
                     append(sb, foreignName, typeAdapters.query(type).encode(element));
                 } else {
-                    Logger.warn(TAG, String.format("Field %1$s is not serializable", type.getName()));
+                    Logger.warn(TAG, "Field %1$s is not serializable", type.getName());
                 }
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                Logger.error(TAG, e.toString());
                 continue;
             }
         }
@@ -83,7 +84,7 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
         try {
             return sb.toString().getBytes("utf-8");
         } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
             return new byte[0];
         }
     }
@@ -97,7 +98,7 @@ public class UrlEncodedFormEncoder implements RequestSerializer {
             sb.append('=');
             sb.append(URLEncoder.encode(value, "utf-8"));
         } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            Logger.error(TAG, e.toString());
         }
     }
 
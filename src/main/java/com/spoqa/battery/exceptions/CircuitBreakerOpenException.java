@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.exceptions;
+
+public class CircuitBreakerOpenException extends RpcException {
+
+    private static final long serialVersionUID = 1L;
+
+    private String mEndpoint;
+
+    public CircuitBreakerOpenException(String endpoint) {
+        super(String.format("Circuit breaker of %1$s is open", endpoint));
+        mEndpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+}
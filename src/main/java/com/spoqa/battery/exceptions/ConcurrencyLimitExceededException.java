@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.exceptions;
+
+public class ConcurrencyLimitExceededException extends RpcException {
+
+    private static final long serialVersionUID = 1L;
+
+    private String mKey;
+
+    public ConcurrencyLimitExceededException(String key) {
+        super(String.format("Concurrency limit of %1$s exceeded", key));
+        mKey = key;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+}
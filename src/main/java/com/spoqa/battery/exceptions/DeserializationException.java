@@ -4,7 +4,7 @@
 
 package com.spoqa.battery.exceptions;
 
-public class DeserializationException extends Throwable {
+public class DeserializationException extends StacklessThrowable {
 
     private Throwable mForWhat;
 
@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.exceptions;
+
+public class HttpStatusException extends RpcException {
+
+    private static final long serialVersionUID = 1L;
+
+    private int mStatusCode;
+
+    public HttpStatusException(int statusCode) {
+        super(String.format("Server responded with status %1$d", statusCode));
+        mStatusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+}
@@ -4,7 +4,7 @@
 
 package com.spoqa.battery.exceptions;
 
-public class IncompatibleTypeException extends Throwable {
+public class IncompatibleTypeException extends StacklessThrowable {
     private String mFieldName;
     private String mExpectedType;
     private String mValue;
@@ -20,4 +20,5 @@ public class IncompatibleTypeException extends Throwable {
         return String.format("field %1$s: %2$s expected, value is %3$s.", mFieldName, mExpectedType,
                 mValue);
     }
+
 }
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.exceptions;
+
+/**
+ * Thrown by lists bound with {@code @Response(lazy = true)} when an element fails to bind on
+ * its first access, which happens outside of any call that could report it.
+ */
+public class LazyBindingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int mIndex;
+
+    public LazyBindingException(int index, DeserializationException cause) {
+        super(String.format("Could not bind element %1$d", index), cause);
+        mIndex = index;
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    @Override
+    public DeserializationException getCause() {
+        return (DeserializationException) super.getCause();
+    }
+
+}
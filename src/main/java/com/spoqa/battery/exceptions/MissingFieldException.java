@@ -4,7 +4,7 @@
 
 package com.spoqa.battery.exceptions;
 
-public class MissingFieldException extends Throwable {
+public class MissingFieldException extends StacklessThrowable {
 
     private String mFieldName;
 
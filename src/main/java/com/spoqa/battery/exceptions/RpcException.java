@@ -4,7 +4,7 @@
 
 package com.spoqa.battery.exceptions;
 
-public class RpcException extends Throwable {
+public class RpcException extends StacklessThrowable {
 
     private String mMessage;
 
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.exceptions;
+
+import com.spoqa.battery.Config;
+
+/**
+ * Base of the exceptions thrown on the request and binding paths. While
+ * {@link Config#STACKLESS_EXCEPTIONS} is set they skip capturing a stack trace, which is most of
+ * the cost of constructing one.
+ */
+public abstract class StacklessThrowable extends Throwable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        if (Config.STACKLESS_EXCEPTIONS)
+            return this;
+        return super.fillInStackTrace();
+    }
+
+}
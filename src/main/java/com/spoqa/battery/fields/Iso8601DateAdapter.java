@@ -14,14 +14,25 @@ import java.util.Locale;
 
 public class Iso8601DateAdapter implements TypeAdapter<Date> {
 
-    private SimpleDateFormat mDateTimeFormatWithMsec;
-    private SimpleDateFormat mDateTimeFormat;
-    private SimpleDateFormat mDateFormat;
+    /* SimpleDateFormat is not thread-safe; responses may be bound on several threads */
+    private ThreadLocal<SimpleDateFormat> mDateTimeFormatWithMsec;
+    private ThreadLocal<SimpleDateFormat> mDateTimeFormat;
+    private ThreadLocal<SimpleDateFormat> mDateFormat;
 
     public Iso8601DateAdapter() {
-        mDateTimeFormatWithMsec = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSSZ", Locale.getDefault());
-        mDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.getDefault());
-        mDateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Locale locale = Locale.getDefault();
+        mDateTimeFormatWithMsec = newFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSSZ", locale);
+        mDateTimeFormat = newFormat("yyyy-MM-dd'T'HH:mm:ssZ", locale);
+        mDateFormat = newFormat("yyyy-MM-dd", locale);
+    }
+
+    private static ThreadLocal<SimpleDateFormat> newFormat(final String pattern, final Locale locale) {
+        return new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(pattern, locale);
+            }
+        };
     }
 
     @Override
@@ -34,13 +45,13 @@ public class Iso8601DateAdapter implements TypeAdapter<Date> {
         s = s.replaceAll(":(\\d\\d)$", "$1");
 
         try {
-            return mDateTimeFormatWithMsec.parse(s);
+            return mDateTimeFormatWithMsec.get().parse(s);
         } catch (ParseException e) {
             try {
-                return mDateTimeFormat.parse(s);
+                return mDateTimeFormat.get().parse(s);
             } catch (ParseException e1) {
                 try {
-                    return mDateFormat.parse(s);
+                    return mDateFormat.get().parse(s);
                 } catch (ParseException e2) {
                     throw new DeserializationException(e);
                 }
@@ -51,8 +62,8 @@ public class Iso8601DateAdapter implements TypeAdapter<Date> {
     @Override
     public String encode(Date object) {
         if (object.getHours() == 0 && object.getMinutes() == 0 && object.getSeconds() == 0)
-            return mDateFormat.format(object);
+            return mDateFormat.get().format(object);
         else
-            return mDateTimeFormatWithMsec.format(object);
+            return mDateTimeFormatWithMsec.get().format(object);
     }
 }
@@ -15,18 +15,29 @@ import java.util.TimeZone;
 
 public class Rfc1123DateAdapter implements TypeAdapter<Date> {
 
-    private SimpleDateFormat mDateFormat;
-    private SimpleDateFormat mDateWithMicrosecFormat;
+    /* SimpleDateFormat is not thread-safe; responses may be bound on several threads */
+    private ThreadLocal<SimpleDateFormat> mDateFormat;
+    private ThreadLocal<SimpleDateFormat> mDateWithMicrosecFormat;
 
     public Rfc1123DateAdapter() {
-        mDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
-        mDateWithMicrosecFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss.SSS z", Locale.US);
+        this(null);
     }
 
     public Rfc1123DateAdapter(TimeZone timezone) {
-        this();
-        mDateFormat.setTimeZone(timezone);
-        mDateWithMicrosecFormat.setTimeZone(timezone);
+        mDateFormat = newFormat("EEE, dd MMM yyyy HH:mm:ss z", timezone);
+        mDateWithMicrosecFormat = newFormat("EEE, dd MMM yyyy HH:mm:ss.SSS z", timezone);
+    }
+
+    private static ThreadLocal<SimpleDateFormat> newFormat(final String pattern, final TimeZone timezone) {
+        return new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+                if (timezone != null)
+                    format.setTimeZone(timezone);
+                return format;
+            }
+        };
     }
 
     @Override
@@ -37,10 +48,10 @@ public class Rfc1123DateAdapter implements TypeAdapter<Date> {
     @Override
     public Date decode(String s) throws DeserializationException {
         try {
-            return mDateFormat.parse(s);
+            return mDateFormat.get().parse(s);
         } catch (ParseException e) {
             try {
-                return mDateWithMicrosecFormat.parse(s);
+                return mDateWithMicrosecFormat.get().parse(s);
             } catch (ParseException e2) {
                 //return new Date();
                 throw new DeserializationException(e2);
@@ -50,6 +61,6 @@ public class Rfc1123DateAdapter implements TypeAdapter<Date> {
 
     @Override
     public String encode(Date object) {
-        return mDateFormat.format(object);
+        return mDateFormat.get().format(object);
     }
 }
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.transports;
+
+import com.spoqa.battery.CallTrace;
+import com.spoqa.battery.HttpRequest;
+import com.spoqa.battery.StreamingRequestBody;
+import com.spoqa.battery.Transport;
+import com.spoqa.battery.TransportError;
+import com.spoqa.battery.TransportResponse;
+import com.spoqa.battery.exceptions.HttpStatusException;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport calling OkHttp directly, without any platform dependency; e.g. to run an
+ * RpcContext headless on a plain JVM. Callbacks are invoked on OkHttp's dispatcher threads.
+ */
+public class OkHttpTransport implements Transport {
+    public static final int DEFAULT_TIMEOUT_MS = 10000;
+
+    /* calls multiplexed onto one HTTP/2 connection need not wait for each other */
+    private static final int SHARED_MAX_REQUESTS = 64;
+    private static final int SHARED_MAX_REQUESTS_PER_HOST = 32;
+
+    private static OkHttpTransport sShared;
+
+    private final OkHttpClient mClient;
+
+    private static class OkHttpExchange implements Exchange, com.squareup.okhttp.Callback {
+        private final HttpRequest mRequest;
+        private final Callback mCallback;
+        private Call mCall;
+        private volatile long mNetworkStartTime;
+
+        OkHttpExchange(HttpRequest request, Callback callback) {
+            mRequest = request;
+            mCallback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            mCall.cancel();
+        }
+
+        @Override
+        public void onFailure(Request request, IOException e) {
+            if (mCall.isCanceled())
+                return;
+            mCallback.onFailure(new TransportError(e, e, null, e instanceof SocketTimeoutException));
+        }
+
+        @Override
+        public void onResponse(Response response) {
+            Map<String, String> headers = new HashMap<String, String>();
+            Headers responseHeaders = response.headers();
+            for (int i = 0; i < responseHeaders.size(); ++i)
+                headers.put(responseHeaders.name(i), responseHeaders.value(i));
+
+            String contentType = response.header(HttpRequest.HEADER_CONTENT_TYPE);
+            String charset = TransportResponse.parseCharset(contentType);
+            String contentEncoding = response.header(HttpRequest.HEADER_CONTENT_ENCODING);
+            TransportResponse transportResponse;
+
+            if (mRequest.isStreamingResponse() && response.isSuccessful()) {
+                /* handed over unread; the callback consumes it on this dispatcher thread */
+                transportResponse = new TransportResponse(response.code(), headers,
+                        response.body().byteStream(), charset, contentType, contentEncoding);
+            } else {
+                byte[] body;
+                try {
+                    body = response.body().bytes();
+                } catch (IOException e) {
+                    onFailure(response.request(), e);
+                    return;
+                }
+                transportResponse = new TransportResponse(response.code(), headers, body,
+                        charset, contentType, contentEncoding);
+            }
+            transportResponse.setNetworkTimes(mNetworkStartTime, System.nanoTime());
+
+            if (mCall.isCanceled()) {
+                transportResponse.close();
+                return;
+            }
+
+            if (response.isSuccessful()) {
+                mCallback.onResponse(transportResponse);
+            } else {
+                mCallback.onFailure(new TransportError(new HttpStatusException(response.code()), null,
+                        transportResponse, false));
+            }
+        }
+    }
+
+    /* marks when a dispatcher thread picks the call up */
+    private static class StartInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Object tag = chain.request().tag();
+            if (tag instanceof OkHttpExchange)
+                ((OkHttpExchange) tag).mNetworkStartTime = System.nanoTime();
+            return chain.proceed(chain.request());
+        }
+    }
+
+    /* reports connection and response headers of traced calls */
+    private static class TraceInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Object tag = chain.request().tag();
+            CallTrace trace = tag instanceof OkHttpExchange ? ((OkHttpExchange) tag).mRequest.getCallTrace() : null;
+            if (trace == null)
+                return chain.proceed(chain.request());
+
+            trace.connectionAcquired();
+            Response response = chain.proceed(chain.request());
+            trace.headersReceived(response.code());
+            return response;
+        }
+    }
+
+    public OkHttpTransport() {
+        this(newDefaultClient());
+    }
+
+    /**
+     * @param client client to send requests with; it is copied, not modified
+     */
+    public OkHttpTransport(OkHttpClient client) {
+        mClient = copyOf(client);
+        mClient.interceptors().add(new StartInterceptor());
+        mClient.networkInterceptors().add(new TraceInterceptor());
+    }
+
+    /*
+     * OkHttpClient.clone() shares the interceptor lists with the original, so interceptors added
+     * to a clone end up in the caller's client as well; copy its settings into a new one instead
+     */
+    private static OkHttpClient copyOf(OkHttpClient client) {
+        OkHttpClient copy = new OkHttpClient();
+        copy.setConnectTimeout(client.getConnectTimeout(), TimeUnit.MILLISECONDS);
+        copy.setReadTimeout(client.getReadTimeout(), TimeUnit.MILLISECONDS);
+        copy.setWriteTimeout(client.getWriteTimeout(), TimeUnit.MILLISECONDS);
+        copy.setProxy(client.getProxy());
+        copy.setProxySelector(client.getProxySelector());
+        copy.setCookieHandler(client.getCookieHandler());
+        copy.setCache(client.getCache());
+        copy.setSocketFactory(client.getSocketFactory());
+        copy.setSslSocketFactory(client.getSslSocketFactory());
+        copy.setHostnameVerifier(client.getHostnameVerifier());
+        copy.setCertificatePinner(client.getCertificatePinner());
+        copy.setAuthenticator(client.getAuthenticator());
+        copy.setConnectionPool(client.getConnectionPool());
+        copy.setFollowSslRedirects(client.getFollowSslRedirects());
+        copy.setFollowRedirects(client.getFollowRedirects());
+        copy.setRetryOnConnectionFailure(client.getRetryOnConnectionFailure());
+        copy.setDispatcher(client.getDispatcher());
+        /* left unset, they take OkHttp's defaults */
+        if (client.getProtocols() != null)
+            copy.setProtocols(client.getProtocols());
+        if (client.getConnectionSpecs() != null)
+            copy.setConnectionSpecs(client.getConnectionSpecs());
+        copy.interceptors().addAll(client.interceptors());
+        copy.networkInterceptors().addAll(client.networkInterceptors());
+        return copy;
+    }
+
+    /**
+     * Transport to be shared by every context of the process. Calls to the same origin are
+     * multiplexed onto a single HTTP/2 (or SPDY) connection where the server negotiates it over
+     * TLS, which OkHttp offers by default, and use the pooled HTTP/1.1 connections otherwise.
+     */
+    public static synchronized OkHttpTransport getShared() {
+        if (sShared == null) {
+            OkHttpClient client = newDefaultClient();
+            client.setConnectionPool(ConnectionPool.getDefault());
+            client.getDispatcher().setMaxRequests(SHARED_MAX_REQUESTS);
+            client.getDispatcher().setMaxRequestsPerHost(SHARED_MAX_REQUESTS_PER_HOST);
+            sShared = new OkHttpTransport(client);
+        }
+        return sShared;
+    }
+
+    private static OkHttpClient newDefaultClient() {
+        OkHttpClient client = new OkHttpClient();
+        client.setConnectTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        client.setReadTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        client.setDispatcher(new Dispatcher(newDispatcherExecutor()));
+        return client;
+    }
+
+    /*
+     * OkHttp's own executor queues tasks in front of a pool without core threads, which then
+     * never grows past one thread; hand tasks over directly instead
+     */
+    private static ExecutorService newDispatcherExecutor() {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), runnable -> new Thread(runnable, "OkHttp Dispatcher"));
+    }
+
+    public OkHttpClient getClient() {
+        return mClient;
+    }
+
+    @Override
+    public Exchange execute(HttpRequest request, Callback callback) {
+        OkHttpExchange exchange = new OkHttpExchange(request, callback);
+
+        Request.Builder builder = new Request.Builder()
+                .url(request.getUri())
+                .tag(exchange);
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet())
+            builder.header(header.getKey(), header.getValue());
+
+        switch (request.getMethod()) {
+            case HttpRequest.Methods.POST:
+                builder.post(newRequestBody(request));
+                break;
+            case HttpRequest.Methods.PUT:
+                builder.put(newRequestBody(request));
+                break;
+            case HttpRequest.Methods.DELETE:
+                builder.delete();
+                break;
+            default:
+                builder.get();
+                break;
+        }
+
+        exchange.mCall = mClient.newCall(builder.build());
+        exchange.mCall.enqueue(exchange);
+        return exchange;
+    }
+
+    private static RequestBody newRequestBody(HttpRequest request) {
+        String contentType = request.getContentType();
+        if (contentType == null)
+            contentType = request.getHeaders().get(HttpRequest.HEADER_CONTENT_TYPE);
+
+        final MediaType mediaType = contentType != null ? MediaType.parse(contentType) : null;
+        final StreamingRequestBody stream = request.getStreamingRequestBody();
+        if (stream != null) {
+            /* OkHttp sends bodies of unknown length chunked */
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return mediaType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return stream.contentLength();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    stream.writeTo(sink.outputStream());
+                }
+            };
+        }
+
+        byte[] body = request.getRequestBody();
+        return RequestBody.create(mediaType, body != null ? body : new byte[0]);
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.RequestObject;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.annotations.UriPath;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Bytes allocated per call by the hot paths, read from the JVM's per-thread allocation counter.
+ * Budgets are about twice what the paths allocate today; a failure means a change made them
+ * noticeably more expensive, not that the numbers have to be exact. Steady-state calls must
+ * not miss the shared ReflectionCache at all.
+ */
+public class AllocationBudgetTest {
+
+    private static final int ENTRIES = 100;
+    private static final int WARMUP_CALLS = 500;
+    private static final int MEASURED_CALLS = 200;
+
+    /* per call, for ENTRIES entries */
+    private static final long BUILD_BUDGET = 1280 * 1024;
+    private static final long SERIALIZE_BUDGET = 640 * 1024;
+    /* per call, for a request with two path segments and five query parameters */
+    private static final long CREATE_REQUEST_BUDGET = 10 * 1024;
+    private static final long GET_URI_BUDGET = 16 * 1024;
+
+    private static final String DATE = "2015-03-14T15:09:26.000535+0900";
+
+    public static class Entry {
+        @Response public long id;
+        @Response public String title;
+        @Response public double score;
+        @Response public boolean pinned;
+        @Response public Date publishedAt;
+        @Response public List<String> tags;
+    }
+
+    public static class Feed {
+        @Response public String cursor;
+        @Response public int totalCount;
+        @Response public List<Entry> entries;
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/feeds", requestSerializer = JsonCodec.class)
+    public static class PostFeed {
+        @RequestObject public Feed feed;
+    }
+
+    @RpcObject(uri = "/users/%1$s/feeds/%2$d/entries")
+    public static class GetEntries {
+        @UriPath(1) public String userName = "battery user";
+        @UriPath(2) public int feedId = 42;
+        @QueryString public Integer pageSize = 50;
+        @QueryString public String sortOrder = "published_at desc";
+        @QueryString public Boolean includePinned = true;
+        @QueryString public Date since = new Date(1426313366535L);
+        @QueryString("tag") public List<String> tags = Arrays.asList("java", "android", "http");
+
+        @Response public Feed feed;
+    }
+
+    private interface Operation {
+        void run() throws Throwable;
+    }
+
+    private static com.sun.management.ThreadMXBean sThreadMXBean;
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @BeforeClass
+    public static void setUpClass() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        sThreadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(sThreadMXBean.isThreadAllocatedMemorySupported());
+        sThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Before
+    public void setUp() {
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+        mTypeAdapters.register(new Iso8601DateAdapter());
+    }
+
+    @Test
+    public void buildStaysWithinBudget() throws Throwable {
+        final String json = feedJson();
+        assertWithinBudget("ObjectBuilder.build", BUILD_BUDGET, new Operation() {
+            @Override
+            public void run() throws Throwable {
+                ObjectBuilder.build(JsonCodec.MIME_TYPE, json, new Feed(), mTranslator, mTypeAdapters);
+            }
+        });
+    }
+
+    @Test
+    public void serializeObjectStaysWithinBudget() throws Throwable {
+        final JsonCodec codec = new JsonCodec();
+        final PostFeed request = new PostFeed();
+        request.feed = feed();
+        assertWithinBudget("JsonCodec.serializeObject", SERIALIZE_BUDGET, new Operation() {
+            @Override
+            public void run() throws Throwable {
+                codec.serializeObject(request, mTranslator, mTypeAdapters);
+            }
+        });
+    }
+
+    @Test
+    public void createRequestStaysWithinBudget() throws Throwable {
+        final RpcContext<Void> context = newContext();
+        final GetEntries rpcObject = new GetEntries();
+        assertWithinBudget("RequestFactory.createRequest", CREATE_REQUEST_BUDGET, new Operation() {
+            @Override
+            public void run() throws Throwable {
+                RequestFactory.createRequest(context, rpcObject);
+            }
+        });
+    }
+
+    @Test
+    public void getUriStaysWithinBudget() throws Throwable {
+        final HttpRequest request = RequestFactory.createRequest(newContext(), new GetEntries());
+        assertWithinBudget("HttpRequest.getUri", GET_URI_BUDGET, new Operation() {
+            @Override
+            public void run() throws Throwable {
+                request.getUri();
+            }
+        });
+    }
+
+    private void assertWithinBudget(String name, long budget, Operation operation) throws Throwable {
+        for (int i = 0; i < WARMUP_CALLS; ++i)
+            operation.run();
+
+        ReflectionCache cache = ReflectionCache.getShared();
+        long threadId = Thread.currentThread().getId();
+        long misses = cache.getMissCount();
+        long before = sThreadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; ++i)
+            operation.run();
+        long perCall = (sThreadMXBean.getThreadAllocatedBytes(threadId) - before) / MEASURED_CALLS;
+
+        assertEquals(name + " made reflective lookups in a steady state", misses, cache.getMissCount());
+        assertTrue(String.format("%1$s allocated %2$d bytes per call, budget is %3$d", name, perCall, budget),
+                perCall <= budget);
+    }
+
+    private RpcContext<Void> newContext() {
+        RpcContext<Void> context = new RpcContext<Void>();
+        context.setDefaultUriPrefix("https://api.example.com/v1");
+        context.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        context.getTypeAdapters().register(new Iso8601DateAdapter());
+        return context;
+    }
+
+    private static String feedJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"cursor\":\"c2VjcmV0IGN1cnNvcg==\",\"total_count\":").append(ENTRIES)
+                .append(",\"entries\":[");
+        for (int i = 0; i < ENTRIES; ++i) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(1000000L + i)
+                    .append(",\"title\":\"Entry number ").append(i)
+                    .append("\",\"score\":").append(i * 0.25)
+                    .append(",\"pinned\":").append(i % 7 == 0)
+                    .append(",\"published_at\":\"").append(DATE)
+                    .append("\",\"tags\":[\"a\",\"b\"]}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static Feed feed() {
+        Feed feed = new Feed();
+        feed.cursor = "c2VjcmV0IGN1cnNvcg==";
+        feed.totalCount = ENTRIES;
+        feed.entries = new ArrayList<Entry>(ENTRIES);
+        for (int i = 0; i < ENTRIES; ++i) {
+            Entry entry = new Entry();
+            entry.id = 1000000L + i;
+            entry.title = "Entry number " + i;
+            entry.score = i * 0.25;
+            entry.pinned = i % 7 == 0;
+            entry.publishedAt = new Date(1426313366535L);
+            entry.tags = Arrays.asList("a", "b");
+            feed.entries.add(entry);
+        }
+        return feed;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackoffRetryPolicyTest {
+
+    private BackoffRetryPolicy mPolicy;
+    private HttpRequest mGet;
+    private HttpRequest mPost;
+
+    @Before
+    public void setUp() {
+        mPolicy = new BackoffRetryPolicy(3, 100, 1000);
+        mGet = new HttpRequest(HttpRequest.Methods.GET, "https://api.example.com/items");
+        mGet.setIdempotent(true);
+        mPost = new HttpRequest(HttpRequest.Methods.POST, "https://api.example.com/items");
+        mPost.setIdempotent(false);
+    }
+
+    @Test
+    public void delaysAreJitteredBelowAnExponentialCeiling() {
+        for (int i = 0; i < 100; ++i) {
+            assertInRange(mPolicy.getRetryDelay(mGet, 1, 503, null, null), 0, 100);
+            assertInRange(mPolicy.getRetryDelay(mGet, 2, 503, null, null), 0, 200);
+            assertInRange(mPolicy.getRetryDelay(mGet, 3, 503, null, null), 0, 400);
+        }
+    }
+
+    @Test
+    public void givesUpAfterMaxRetries() {
+        assertEquals(-1, mPolicy.getRetryDelay(mGet, 4, 503, null, null));
+    }
+
+    @Test
+    public void onlyTransientStatusesAreRetried() {
+        for (int status : new int[] { 408, 429, 502, 503, 504 })
+            assertTrue(mPolicy.getRetryDelay(mGet, 1, status, null, null) >= 0);
+        for (int status : new int[] { 400, 401, 404, 500 })
+            assertEquals(-1, mPolicy.getRetryDelay(mGet, 1, status, null, null));
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreOnlyRetriedIfNeverSent() {
+        assertEquals(-1, mPolicy.getRetryDelay(mPost, 1, 503, null, null));
+        assertEquals(-1, mPolicy.getRetryDelay(mPost, 1, 0, null, new SocketTimeoutException()));
+        assertTrue(mPolicy.getRetryDelay(mPost, 1, 0, null, new ConnectException()) >= 0);
+        assertTrue(mPolicy.getRetryDelay(mGet, 1, 0, null, new SocketTimeoutException()) >= 0);
+    }
+
+    @Test
+    public void onlyIOExceptionsAreRetried() {
+        assertTrue(mPolicy.getRetryDelay(mGet, 1, 0, null, new IOException()) >= 0);
+        assertEquals(-1, mPolicy.getRetryDelay(mGet, 1, 0, null, new IllegalStateException()));
+    }
+
+    @Test
+    public void retryAfterIsHonored() {
+        Map<String, String> headers = Collections.singletonMap("Retry-After", "1");
+        assertEquals(1000, mPolicy.getRetryDelay(mGet, 1, 429, headers, null));
+
+        /* waiting longer than the policy allows is giving up */
+        headers = Collections.singletonMap("Retry-After", "2");
+        assertEquals(-1, mPolicy.getRetryDelay(mGet, 1, 429, headers, null));
+
+        headers = Collections.singletonMap("Retry-After", "Thu, 01 Jan 1970 00:00:00 GMT");
+        assertInRange(mPolicy.getRetryDelay(mGet, 1, 503, headers, null), 0, 100);
+    }
+
+    private static void assertInRange(long value, long from, long to) {
+        assertTrue(String.format("%1$d not in [%2$d, %3$d)", value, from, to), value >= from && value < to);
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CallTraceTest {
+
+    private static class GetItems {
+    }
+
+    /* records the name, call id, object and timestamp of every event */
+    private static class RecordingListener extends EventListener {
+        final List<String> events = new ArrayList<String>();
+        final List<Long> callIds = new ArrayList<Long>();
+        final List<Object> rpcObjects = new ArrayList<Object>();
+        final List<Long> times = new ArrayList<Long>();
+        Throwable error;
+        long bytes;
+
+        private void record(String event, long callId, Object rpcObject, long nanoTime) {
+            events.add(event);
+            callIds.add(callId);
+            rpcObjects.add(rpcObject);
+            times.add(nanoTime);
+        }
+
+        @Override
+        public void requestCreated(long callId, Object rpcObject, long nanoTime) {
+            record("requestCreated", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void requestSerialized(long callId, Object rpcObject, long nanoTime, long bytes) {
+            record("requestSerialized", callId, rpcObject, nanoTime);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void requestEnqueued(long callId, Object rpcObject, long nanoTime, int attempt) {
+            record("requestEnqueued" + attempt, callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void connectionAcquired(long callId, Object rpcObject, long nanoTime) {
+            record("connectionAcquired", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void headersReceived(long callId, Object rpcObject, long nanoTime, int statusCode) {
+            record("headersReceived" + statusCode, callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void bodyReceived(long callId, Object rpcObject, long nanoTime, long bytes) {
+            record("bodyReceived", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void parseStarted(long callId, Object rpcObject, long nanoTime) {
+            record("parseStarted", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void parseFinished(long callId, Object rpcObject, long nanoTime) {
+            record("parseFinished", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void bindFinished(long callId, Object rpcObject, long nanoTime) {
+            record("bindFinished", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void validated(long callId, Object rpcObject, long nanoTime) {
+            record("validated", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void delivered(long callId, Object rpcObject, long nanoTime) {
+            record("delivered", callId, rpcObject, nanoTime);
+        }
+
+        @Override
+        public void failed(long callId, Object rpcObject, long nanoTime, Throwable error) {
+            record("failed", callId, rpcObject, nanoTime);
+            this.error = error;
+        }
+    }
+
+    private RpcContext<Void> mContext;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        mContext = new RpcContext<Void>();
+        mListener = new RecordingListener();
+        mContext.setEventListener(mListener);
+    }
+
+    @Test
+    public void eventsOfOneCallShareItsIdAndObject() {
+        GetItems rpcObject = new GetItems();
+        CallTrace trace = CallTrace.create(mContext, rpcObject);
+        assertNull(trace.getMetrics());
+
+        long startTime = System.nanoTime();
+        trace.requestCreated();
+        trace.requestSerialized(startTime, 42);
+        trace.requestBuilt(startTime);
+        trace.requestEnqueued(1);
+        trace.connectionAcquired();
+        trace.headersReceived(503);
+        trace.bodyReceived(0);
+        trace.requestEnqueued(2);
+        trace.connectionAcquired();
+        trace.headersReceived(200);
+        trace.bodyReceived(128);
+        trace.parseStarted();
+        trace.parseFinished();
+        trace.bindFinished();
+        trace.validated(startTime);
+        trace.delivered(startTime);
+
+        assertEquals(Arrays.asList("requestCreated", "requestSerialized", "requestEnqueued1",
+                "connectionAcquired", "headersReceived503", "bodyReceived", "requestEnqueued2",
+                "connectionAcquired", "headersReceived200", "bodyReceived", "parseStarted",
+                "parseFinished", "bindFinished", "validated", "delivered"), mListener.events);
+        assertEquals(42, mListener.bytes);
+        for (int i = 0; i < mListener.events.size(); ++i) {
+            assertEquals(trace.getCallId(), (long) mListener.callIds.get(i));
+            assertSame(rpcObject, mListener.rpcObjects.get(i));
+            if (i > 0)
+                assertTrue(mListener.times.get(i) >= mListener.times.get(i - 1));
+        }
+    }
+
+    @Test
+    public void failuresCarryTheError() {
+        CallTrace trace = CallTrace.create(mContext, new GetItems());
+        Exception error = new Exception();
+        trace.failed(System.nanoTime(), error);
+
+        assertEquals(Arrays.asList("failed"), mListener.events);
+        assertSame(error, mListener.error);
+    }
+
+    @Test
+    public void callsHaveDistinctIds() {
+        CallTrace first = CallTrace.create(mContext, new GetItems());
+        CallTrace second = CallTrace.create(mContext, new GetItems());
+        assertNotEquals(first.getCallId(), second.getCallId());
+    }
+
+    @Test
+    public void listenerAndMetricsAreBothReported() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        mContext.setMetrics(metrics);
+        CallTrace trace = CallTrace.create(mContext, new GetItems());
+        assertSame(metrics, trace.getMetrics());
+
+        trace.delivered(System.nanoTime());
+        assertEquals(Arrays.asList("delivered"), mListener.events);
+        assertEquals(1, metrics.getEndpoint(GetItems.class).getPhase(RpcMetrics.Phase.CALL).getCount());
+    }
+}
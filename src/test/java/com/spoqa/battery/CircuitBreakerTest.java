@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_DURATION = 50;
+
+    private static class Endpoint {
+    }
+
+    private static class OtherEndpoint {
+    }
+
+    /* window of 4, evaluated from 4 calls, 2 trial calls */
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(0.5f, 0.75f, 1000, 4, 4, OPEN_DURATION, 2);
+    }
+
+    private static void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; ++i)
+            breaker.onFailure(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(Endpoint.class));
+    }
+
+    @Test
+    public void opensAtTheFailureRate() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.onFailure(Endpoint.class, 10);
+        breaker.onSuccess(Endpoint.class, 10);
+        breaker.onSuccess(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(Endpoint.class));
+
+        breaker.onFailure(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(Endpoint.class));
+        assertFalse(breaker.tryAcquire(Endpoint.class));
+    }
+
+    @Test
+    public void opensAtTheSlowCallRate() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.onSuccess(Endpoint.class, 10);
+        for (int i = 0; i < 3; ++i)
+            breaker.onSuccess(Endpoint.class, 1000);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(Endpoint.class));
+    }
+
+    @Test
+    public void onlyTheRecentWindowCounts() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.onFailure(Endpoint.class, 10);
+        for (int i = 0; i < 10; ++i)
+            breaker.onSuccess(Endpoint.class, 10);
+        breaker.onFailure(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(Endpoint.class));
+    }
+
+    @Test
+    public void endpointsHaveCircuitsOfTheirOwn() {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        assertTrue(breaker.tryAcquire(OtherEndpoint.class));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(OtherEndpoint.class));
+    }
+
+    @Test
+    public void halfOpenLetsTrialCallsThroughAndCloses() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(Endpoint.class));
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+        assertFalse(breaker.tryAcquire(Endpoint.class));
+
+        breaker.onSuccess(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(Endpoint.class));
+        breaker.onSuccess(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(Endpoint.class));
+
+        /* the window starts over once closed */
+        breaker.onFailure(Endpoint.class, 10);
+        breaker.onFailure(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(Endpoint.class));
+    }
+
+    @Test
+    public void failedTrialReopens() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+        breaker.onFailure(Endpoint.class, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(Endpoint.class));
+        assertFalse(breaker.tryAcquire(Endpoint.class));
+    }
+
+    @Test
+    public void ignoredTrialsHandTheirPermitBack() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+        assertFalse(breaker.tryAcquire(Endpoint.class));
+        breaker.onIgnored(Endpoint.class);
+        assertTrue(breaker.tryAcquire(Endpoint.class));
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.CborCodec;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.codecs.MessagePackCodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CodecRegistryTest {
+
+    @RpcObject(uri = "/items")
+    public static class GetItems {
+    }
+
+    @Test
+    public void defaultCodecsAreNotAdvertised() {
+        CodecRegistry registry = CodecRegistry.createDefault();
+
+        assertTrue(registry.query("application/json") instanceof JsonCodec);
+        assertTrue(registry.query("application/msgpack") instanceof MessagePackCodec);
+        assertTrue(registry.query("application/x-msgpack") instanceof MessagePackCodec);
+        assertTrue(registry.query("application/cbor") instanceof CborCodec);
+        assertNull(registry.getAcceptHeader());
+    }
+
+    @Test
+    public void contentTypesAreMatchedWithoutParameters() {
+        CodecRegistry registry = CodecRegistry.createDefault();
+
+        assertEquals("application/json", registry.parseMime(" Application/JSON ; charset=utf-8"));
+        assertTrue(registry.query("application/json;charset=utf-8") instanceof JsonCodec);
+        assertNull(registry.query("text/html"));
+        assertNull(registry.query(null));
+    }
+
+    @Test
+    public void advertisedCodecsAreOrderedByQuality() {
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(new JsonCodec(), 0.5f);
+        registry.register(new CborCodec());
+        registry.register(new MessagePackCodec(), 1.0f);
+
+        assertEquals("application/msgpack, application/json;q=0.5", registry.getAcceptHeader());
+    }
+
+    @Test
+    public void frozenRegistriesRejectCodecs() {
+        CodecRegistry registry = CodecRegistry.createDefault();
+        registry.freeze();
+        assertTrue(registry.isFrozen());
+
+        try {
+            registry.register(new JsonCodec());
+            fail();
+        } catch (IllegalStateException e) {
+            /* expected */
+        }
+
+        CodecRegistry copy = registry.copy();
+        assertFalse(copy.isFrozen());
+        assertSame(registry.query("application/json"), copy.query("application/json"));
+        copy.register(new JsonCodec(), 1.0f);
+        assertEquals("application/json", copy.getAcceptHeader());
+        assertNull(registry.getAcceptHeader());
+    }
+
+    @Test
+    public void requestsOnlyAcceptAdvertisedCodecs() throws Throwable {
+        RpcContext<Void> context = new RpcContext<Void>();
+        context.setDefaultUriPrefix("https://api.example.com");
+        assertNull(RequestFactory.createRequest(context, new GetItems()).getHeaders().get(HttpRequest.HEADER_ACCEPT));
+
+        context.registerDeserializer(new MessagePackCodec(), 1.0f);
+        context.registerDeserializer(new JsonCodec(), 0.5f);
+        assertEquals("application/msgpack, application/json;q=0.5",
+                RequestFactory.createRequest(context, new GetItems()).getHeaders().get(HttpRequest.HEADER_ACCEPT));
+
+        /* contexts do not share their codecs */
+        assertNull(new RpcContext<Void>().getCodecRegistry().getAcceptHeader());
+    }
+}
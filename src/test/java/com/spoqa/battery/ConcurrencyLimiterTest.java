@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+
+    private static final String HOST = "https://api.example.com";
+
+    private static class Counter implements Runnable {
+        final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void keysAreHostsUnlessAPrefixMatches() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.addPrefix("https://api.example.com/v1/uploads");
+
+        assertEquals(HOST, limiter.getKey("https://api.example.com/v1/items?page=2"));
+        assertEquals(HOST, limiter.getKey(HOST));
+        assertEquals("https://api.example.com/v1/uploads",
+                limiter.getKey("https://api.example.com/v1/uploads/42"));
+    }
+
+    @Test
+    public void tasksBeyondTheLimitAreQueuedThenRejected() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 1, 0.5);
+        Counter counter = new Counter();
+
+        assertTrue(limiter.execute(HOST, counter));
+        assertTrue(limiter.execute(HOST, counter));
+        assertEquals(2, counter.runs.get());
+
+        assertTrue(limiter.execute(HOST, counter));
+        assertEquals(2, counter.runs.get());
+        assertEquals(1, limiter.getQueueDepth(HOST));
+        assertFalse(limiter.execute(HOST, counter));
+
+        /* a released slot goes to the queued task */
+        limiter.releaseIgnored(HOST);
+        assertEquals(3, counter.runs.get());
+        assertEquals(0, limiter.getQueueDepth(HOST));
+        assertEquals(2, limiter.getInFlight(HOST));
+    }
+
+    @Test
+    public void limitGrowsAdditivelyWhileUsed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 3, 0, 0.5);
+        Counter counter = new Counter();
+
+        /* +1/limit per success while at least half of the limit is in use */
+        for (int i = 0; i < 4; ++i) {
+            limiter.execute(HOST, counter);
+            limiter.release(HOST, 10, false);
+        }
+        assertEquals(2, limiter.getLimit(HOST));
+
+        for (int i = 0; i < 20; ++i) {
+            limiter.execute(HOST, counter);
+            limiter.execute(HOST, counter);
+            limiter.release(HOST, 10, false);
+            limiter.release(HOST, 10, false);
+        }
+        assertEquals(3, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void limitShrinksMultiplicativelyOnDrops() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 2, 64, 0, 0.5);
+        Counter counter = new Counter();
+
+        limiter.execute(HOST, counter);
+        limiter.release(HOST, 10, true);
+        assertEquals(4, limiter.getLimit(HOST));
+
+        limiter.execute(HOST, counter);
+        limiter.release(HOST, 10, true);
+        limiter.execute(HOST, counter);
+        limiter.release(HOST, 10, true);
+        assertEquals(2, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void slowResponsesCountAsDrops() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 64, 0, 0.5);
+        limiter.setLatencyThreshold(100);
+        Counter counter = new Counter();
+
+        limiter.execute(HOST, counter);
+        limiter.release(HOST, 100, false);
+        assertEquals(8, limiter.getLimit(HOST));
+
+        limiter.execute(HOST, counter);
+        limiter.release(HOST, 101, false);
+        assertEquals(4, limiter.getLimit(HOST));
+    }
+
+    @Test
+    public void hostsHaveLimitsOfTheirOwn() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 0, 0.5);
+        Counter counter = new Counter();
+
+        assertTrue(limiter.execute(HOST, counter));
+        assertFalse(limiter.execute(HOST, counter));
+        assertTrue(limiter.execute("https://cdn.example.com", counter));
+        assertEquals(2, counter.runs.get());
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ContentEncodingTest {
+
+    private static final String TEXT =
+            "{\"items\":[\"battery\",\"battery\",\"battery\",\"battery\",\"battery\",\"battery\"]}";
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = input.read(buffer)) >= 0)
+            output.write(buffer, 0, read);
+        return output.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(output);
+        deflater.write(input);
+        deflater.close();
+        return output.toByteArray();
+    }
+
+    @Test
+    public void gzipRoundTrips() throws IOException {
+        byte[] body = TEXT.getBytes("utf-8");
+        byte[] compressed = ContentEncoding.gzip(body);
+
+        assertTrue(compressed.length < body.length);
+        assertArrayEquals(body, read(ContentEncoding.decode(new ByteArrayInputStream(compressed), "gzip")));
+        assertArrayEquals(body, read(ContentEncoding.decode(new ByteArrayInputStream(compressed), " X-GZIP ")));
+    }
+
+    @Test
+    public void deflateIsDecoded() throws IOException {
+        byte[] body = TEXT.getBytes("utf-8");
+        assertArrayEquals(body,
+                read(ContentEncoding.decode(new ByteArrayInputStream(deflate(body)), "deflate")));
+    }
+
+    @Test
+    public void identityAndUnknownEncodingsPassThrough() throws IOException {
+        InputStream input = new ByteArrayInputStream(new byte[0]);
+        assertSame(input, ContentEncoding.decode(input, null));
+        assertSame(input, ContentEncoding.decode(input, "identity"));
+        assertSame(input, ContentEncoding.decode(input, "br"));
+    }
+
+    @Test
+    public void responsesAreDecodedWhileRead() throws IOException {
+        byte[] compressed = ContentEncoding.gzip(TEXT.getBytes("utf-8"));
+        TransportResponse response = new TransportResponse(200, null, compressed, "utf-8",
+                "application/json", "gzip");
+
+        assertEquals(TEXT, response.data());
+        /* the body is kept as received */
+        assertEquals(compressed.length, response.length());
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.HttpStatusException;
+import com.spoqa.battery.exceptions.IncompatibleTypeException;
+import com.spoqa.battery.exceptions.MissingFieldException;
+import com.spoqa.battery.exceptions.RpcException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorPathTest {
+
+    private static class RecordingHandler implements ExceptionHandler<String> {
+        final String name;
+        final boolean handles;
+        final List<String> calls;
+
+        RecordingHandler(String name, boolean handles, List<String> calls) {
+            this.name = name;
+            this.handles = handles;
+            this.calls = calls;
+        }
+
+        @Override
+        public boolean onException(String context, Throwable error) {
+            calls.add(name + ":" + context);
+            return handles;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Config.STACKLESS_EXCEPTIONS = false;
+    }
+
+    @Test
+    public void exceptionsAreStacklessWhenConfigured() {
+        Config.STACKLESS_EXCEPTIONS = true;
+        assertEquals(0, new RpcException("failed").getStackTrace().length);
+        assertEquals(0, new DeserializationException(new RuntimeException()).getStackTrace().length);
+        assertEquals(0, new MissingFieldException("id").getStackTrace().length);
+        assertEquals(0, new IncompatibleTypeException("id", "int", "x").getStackTrace().length);
+
+        Config.STACKLESS_EXCEPTIONS = false;
+        assertTrue(new RpcException("failed").getStackTrace().length > 0);
+    }
+
+    @Test
+    public void mostSpecificHandlerRunsFirst() {
+        List<String> calls = new ArrayList<String>();
+        RpcContext<String> context = new RpcContext<String>();
+        context.registerExceptionHandler(RpcException.class, new RecordingHandler("rpc", true, calls));
+        context.registerExceptionHandler(HttpStatusException.class, new RecordingHandler("status", false, calls));
+
+        assertTrue(context.dispatchErrorHandler("ui", new HttpStatusException(500)));
+        assertEquals(2, calls.size());
+        assertEquals("status:ui", calls.get(0));
+        assertEquals("rpc:ui", calls.get(1));
+
+        assertFalse(context.dispatchErrorHandler("ui", new IllegalStateException()));
+    }
+
+    @Test
+    public void handlersRegisteredLaterAreFound() {
+        List<String> calls = new ArrayList<String>();
+        RpcContext<String> context = new RpcContext<String>();
+
+        /* resolves (and caches) an empty handler chain first */
+        assertFalse(context.dispatchErrorHandler("ui", new HttpStatusException(404)));
+
+        context.registerExceptionHandler(Throwable.class, new RecordingHandler("any", true, calls));
+        assertTrue(context.dispatchErrorHandler("ui", new HttpStatusException(404)));
+        assertEquals(1, calls.size());
+    }
+}
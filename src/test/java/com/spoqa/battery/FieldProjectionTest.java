@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.ResponseObject;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.fields.Iso8601DateAdapter;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FieldProjectionTest {
+
+    public static class Author {
+        public String displayName;
+        public Author mentor;
+    }
+
+    public static class Entry {
+        public long id;
+        public Date publishedAt;
+        public Author author;
+        public Map<String, String> extra;
+    }
+
+    public static class Empty {
+    }
+
+    @RpcObject(uri = "/feed")
+    public static class GetFeed {
+        @QueryString public String query;
+
+        @Response public String feedTitle;
+        @Response("cursor_id") public String cursor;
+        @Response public List<Entry> entries;
+        @Response public Empty nothing;
+
+        @Response
+        public void setTotalCount(int count) {
+        }
+    }
+
+    @RpcObject(uri = "/entry")
+    public static class GetEntry {
+        @ResponseObject public Entry entry;
+    }
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Before
+    public void setUp() {
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+        mTypeAdapters.register(new Iso8601DateAdapter());
+    }
+
+    private String compute(Class<?> rpcObjectClass) {
+        return FieldProjection.compute(ReflectionCache.getShared(), rpcObjectClass, mTranslator, mTypeAdapters);
+    }
+
+    @Test
+    public void nestedObjectsAreExpanded() {
+        assertEquals("feed_title,cursor_id," +
+                "entries.id,entries.published_at,entries.author.display_name,entries.author.mentor," +
+                "entries.extra,nothing,total_count", compute(GetFeed.class));
+    }
+
+    @Test
+    public void responseObjectsAreProjectedAsTheRoot() {
+        assertEquals("id,published_at,author.display_name,author.mentor,extra", compute(GetEntry.class));
+    }
+
+    @Test
+    public void projectionsAreSentAsQueryParameter() throws Throwable {
+        RpcContext<Void> context = new RpcContext<Void>();
+        context.setDefaultUriPrefix("https://api.example.com");
+        context.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        context.setFieldProjectionParameter("fields");
+
+        GetEntry request = new GetEntry();
+        String uri = RequestFactory.createRequest(context, request).getUri();
+        assertTrue(uri, uri.startsWith("https://api.example.com/entry?fields="));
+        assertTrue(uri, uri.contains("author.display_name"));
+
+        context.setFieldProjectionParameter(null);
+        assertEquals("https://api.example.com/entry", RequestFactory.createRequest(context, request).getUri());
+    }
+}
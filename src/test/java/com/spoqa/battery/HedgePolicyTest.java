@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgePolicyTest {
+
+    private static class Endpoint {
+    }
+
+    @Test
+    public void endpointsAreNotHedgedUntilEnoughSamples() {
+        HedgePolicy policy = new HedgePolicy(0.9, 0.5f, 10);
+        for (int i = 1; i < 10; ++i)
+            policy.recordLatency(Endpoint.class, i);
+        assertEquals(-1, policy.onCall(Endpoint.class));
+
+        policy.recordLatency(Endpoint.class, 10);
+        assertEquals(9, policy.onCall(Endpoint.class));
+    }
+
+    @Test
+    public void duplicatesAreCappedToTheExtraLoad() {
+        HedgePolicy policy = new HedgePolicy(0.9, 0.25f, 0);
+
+        /* four hedged calls earn one duplicate */
+        for (int i = 0; i < 3; ++i)
+            policy.onCall(Endpoint.class);
+        assertFalse(policy.tryHedge());
+        policy.onCall(Endpoint.class);
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+    }
+
+    @Test
+    public void burstsOfDuplicatesAreBounded() {
+        HedgePolicy policy = new HedgePolicy(0.9, 1.0f, 0);
+        for (int i = 0; i < 100; ++i)
+            policy.onCall(Endpoint.class);
+
+        int hedges = 0;
+        while (policy.tryHedge())
+            ++hedges;
+        assertEquals(10, hedges);
+    }
+
+    @Test
+    public void trackerReportsPercentilesOfRecentSamples() {
+        LatencyTracker tracker = new LatencyTracker();
+        assertEquals(-1, tracker.getPercentile(0.5));
+
+        for (int i = 1; i <= 100; ++i)
+            tracker.record(i);
+        assertEquals(100, tracker.getSampleCount());
+        assertEquals(50, tracker.getPercentile(0.5));
+        assertEquals(99, tracker.getPercentile(0.99));
+        assertEquals(100, tracker.getPercentile(1.0));
+
+        /* only the last 256 samples are kept */
+        for (int i = 0; i < 256; ++i)
+            tracker.record(1000);
+        assertEquals(256, tracker.getSampleCount());
+        assertEquals(1000, tracker.getPercentile(0.01));
+    }
+
+    @Test
+    public void trackerSurvivesItsWriteIndexWrappingAround() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        Field written = LatencyTracker.class.getDeclaredField("mWritten");
+        written.setAccessible(true);
+        ((AtomicInteger) written.get(tracker)).set(Integer.MAX_VALUE - 100);
+
+        for (int i = 1; i <= 300; ++i)
+            tracker.record(i);
+        assertEquals(256, tracker.getSampleCount());
+        assertEquals(45, tracker.getPercentile(0.0));
+        assertEquals(300, tracker.getPercentile(1.0));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryMetricsTest {
+
+    private static class GetItems {
+    }
+
+    private static class PostItem {
+    }
+
+    @Test
+    public void recordsAreKeptPerEndpoint() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        assertNull(metrics.getEndpoint(GetItems.class));
+
+        metrics.recordPhase(GetItems.class, RpcMetrics.Phase.NETWORK, 1000);
+        metrics.recordPhase(GetItems.class, RpcMetrics.Phase.NETWORK, 3000);
+        metrics.recordBytesReceived(GetItems.class, 512);
+        metrics.recordBytesSent(PostItem.class, 128);
+        metrics.recordError(PostItem.class, new Exception());
+
+        InMemoryMetrics.Endpoint items = metrics.getEndpoint(GetItems.class);
+        assertEquals(2, items.getPhase(RpcMetrics.Phase.NETWORK).getCount());
+        assertEquals(2000, items.getPhase(RpcMetrics.Phase.NETWORK).getMean());
+        assertEquals(0, items.getPhase(RpcMetrics.Phase.BINDING).getCount());
+        assertEquals(512, items.getBytesReceived());
+        assertEquals(0, items.getErrorCount());
+
+        InMemoryMetrics.Endpoint item = metrics.getEndpoint(PostItem.class);
+        assertEquals(128, item.getBytesSent());
+        assertEquals(1, item.getErrorCount());
+
+        assertEquals(2, metrics.getEndpoints().size());
+        assertTrue(metrics.getEndpoints().contains(GetItems.class));
+    }
+
+    @Test
+    public void resetForgetsEndpoints() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.recordBytesSent(GetItems.class, 1);
+        metrics.reset();
+
+        assertNull(metrics.getEndpoint(GetItems.class));
+        assertTrue(metrics.getEndpoints().isEmpty());
+    }
+
+    @Test
+    public void callTracesReportPhasesOfTheEndpoint() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        RpcContext<Void> context = new RpcContext<Void>();
+        assertNull(CallTrace.create(context, new GetItems()));
+
+        context.setMetrics(metrics);
+        CallTrace trace = CallTrace.create(context, new GetItems());
+        long startTime = System.nanoTime();
+        trace.requestBuilt(startTime);
+        trace.parseStarted();
+        trace.parseFinished();
+        trace.bindFinished();
+        trace.failed(startTime, new Exception());
+
+        InMemoryMetrics.Endpoint endpoint = metrics.getEndpoint(GetItems.class);
+        for (RpcMetrics.Phase phase : new RpcMetrics.Phase[] {RpcMetrics.Phase.REQUEST_BUILDING,
+                RpcMetrics.Phase.DECODING, RpcMetrics.Phase.BINDING, RpcMetrics.Phase.CALL})
+            assertEquals(phase.toString(), 1, endpoint.getPhase(phase).getCount());
+        assertEquals(0, endpoint.getPhase(RpcMetrics.Phase.NETWORK).getCount());
+        assertEquals(1, endpoint.getErrorCount());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramHasNoPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(-1, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; ++i)
+            histogram.record(i);
+
+        for (int i = 0; i < 16; ++i)
+            assertEquals(i, histogram.getPercentile((i + 1) / 16.0));
+    }
+
+    @Test
+    public void percentilesAreWithinOneBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; ++i)
+            histogram.record(i);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getTotal());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+        assertWithinBucket(500, histogram.getPercentile(0.5));
+        assertWithinBucket(990, histogram.getPercentile(0.99));
+        assertEquals(1000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void percentilesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        /* 100 falls into the bucket up to 103 */
+        assertEquals(100, histogram.getPercentile(0.5));
+
+        histogram.record(1000);
+        assertEquals(103, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void extremeValuesAreRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentile(1));
+        assertEquals(0, histogram.getMax());
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(1));
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertEquals(0, histogram.getMax());
+        assertEquals(-1, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; ++j)
+                        histogram.record(j);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(9999, histogram.getMax());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(String.format("%1$d is not within 12.5%% of %2$d", actual, expected),
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
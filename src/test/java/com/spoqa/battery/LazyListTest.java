@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.LazyBindingException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LazyListTest {
+
+    public static class Entry {
+        static int sBound;
+
+        @Response public String entryTitle;
+
+        @Response
+        public void setId(long id) {
+            ++sBound;
+        }
+    }
+
+    public static class Feed {
+        @Response(lazy = true) public List<Entry> entries;
+        @Response(lazy = true) public ArrayList<Entry> eagerEntries;
+    }
+
+    private static final String FEED = "{\"entries\":[{\"id\":1,\"entry_title\":\"first\"}," +
+            "{\"id\":2,\"entry_title\":\"second\"},{\"id\":{},\"entry_title\":\"broken\"}]," +
+            "\"eager_entries\":[{\"id\":4}]}";
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+    private Feed mFeed;
+
+    @Before
+    public void setUp() throws Throwable {
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+        Entry.sBound = 0;
+        mFeed = new Feed();
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, FEED, mFeed, mTranslator, mTypeAdapters);
+    }
+
+    @Test
+    public void elementsAreBoundOnFirstAccess() {
+        assertEquals(LazyList.class, mFeed.entries.getClass());
+        assertEquals(3, mFeed.entries.size());
+        /* only the list declared as ArrayList was bound */
+        assertEquals(ArrayList.class, mFeed.eagerEntries.getClass());
+        assertEquals(1, Entry.sBound);
+
+        Entry second = mFeed.entries.get(1);
+        assertEquals("second", second.entryTitle);
+        assertEquals(2, Entry.sBound);
+        assertSame(second, mFeed.entries.get(1));
+        assertEquals(2, Entry.sBound);
+    }
+
+    @Test
+    public void failuresCarryTheIndexEveryTime() {
+        for (int attempt = 0; attempt < 2; ++attempt) {
+            try {
+                mFeed.entries.get(2);
+                fail();
+            } catch (LazyBindingException e) {
+                assertEquals(2, e.getIndex());
+                assertNotNull(e.getCause());
+            }
+        }
+
+        /* the other elements are not affected */
+        assertEquals("first", mFeed.entries.get(0).entryTitle);
+    }
+
+    @Test
+    public void setReplacesElements() {
+        Entry entry = new Entry();
+        Entry previous = mFeed.entries.set(0, entry);
+
+        assertEquals("first", previous.entryTitle);
+        assertSame(entry, mFeed.entries.get(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indicesAreChecked() {
+        mFeed.entries.get(3);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoggerTest {
+
+    private static final String TAG = "LoggerTest";
+
+    /* writes messages of WARN and above */
+    private static class RecordingLogger implements Logger.LevelAwareLoggerImpl {
+        final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public boolean isLoggable(String tag, int level) {
+            return level >= Logger.WARN;
+        }
+
+        @Override
+        public void debug(String tag, String msg) {
+            messages.add("D " + msg);
+        }
+
+        @Override
+        public void error(String tag, String msg) {
+            messages.add("E " + msg);
+        }
+
+        @Override
+        public void info(String tag, String msg) {
+            messages.add("I " + msg);
+        }
+
+        @Override
+        public void verbose(String tag, String msg) {
+            messages.add("V " + msg);
+        }
+
+        @Override
+        public void warn(String tag, String msg) {
+            messages.add("W " + msg);
+        }
+    }
+
+    /* a logger written against the original interface */
+    private static class PlainLogger implements Logger.LoggerImpl {
+        final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public void debug(String tag, String msg) {
+            messages.add("D " + msg);
+        }
+
+        @Override
+        public void error(String tag, String msg) {
+            messages.add("E " + msg);
+        }
+
+        @Override
+        public void info(String tag, String msg) {
+            messages.add("I " + msg);
+        }
+
+        @Override
+        public void verbose(String tag, String msg) {
+            messages.add("V " + msg);
+        }
+
+        @Override
+        public void warn(String tag, String msg) {
+            messages.add("W " + msg);
+        }
+    }
+
+    /* counts how often it is formatted */
+    private static class Argument {
+        int formatted;
+
+        @Override
+        public String toString() {
+            ++formatted;
+            return "argument";
+        }
+    }
+
+    private RecordingLogger mLogger;
+
+    @Before
+    public void setUp() {
+        mLogger = new RecordingLogger();
+        Logger.registerLogger(mLogger);
+    }
+
+    @After
+    public void tearDown() {
+        Logger.unregisterLogger();
+    }
+
+    @Test
+    public void messagesBelowTheLevelAreNotFormatted() {
+        Argument argument = new Argument();
+        Logger.debug(TAG, "debug %1$s", argument);
+        Logger.info(TAG, "info %1$s", argument);
+        Logger.verbose(TAG, "verbose %1$s", argument);
+
+        assertEquals(0, argument.formatted);
+        assertTrue(mLogger.messages.isEmpty());
+    }
+
+    @Test
+    public void messagesAtTheLevelAreFormatted() {
+        Argument argument = new Argument();
+        Logger.warn(TAG, "warn %1$s", argument);
+        Logger.error(TAG, "error %1$d", 42);
+
+        assertEquals(1, argument.formatted);
+        assertEquals(2, mLogger.messages.size());
+        assertEquals("W warn argument", mLogger.messages.get(0));
+        assertEquals("E error 42", mLogger.messages.get(1));
+    }
+
+    @Test
+    public void suppliersOnlyRunWhenLoggable() {
+        final int[] calls = new int[1];
+        Logger.MessageSupplier supplier = new Logger.MessageSupplier() {
+            @Override
+            public String get() {
+                ++calls[0];
+                return "supplied";
+            }
+        };
+
+        Logger.debug(TAG, supplier);
+        assertEquals(0, calls[0]);
+        Logger.error(TAG, supplier);
+        assertEquals(1, calls[0]);
+        assertEquals("E supplied", mLogger.messages.get(0));
+    }
+
+    @Test
+    public void plainLoggersReceiveEveryLevel() {
+        PlainLogger logger = new PlainLogger();
+        Logger.registerLogger(logger);
+        assertTrue(Logger.isLoggable(TAG, Logger.VERBOSE));
+
+        Logger.verbose(TAG, "verbose %1$d", 1);
+        Logger.debug(TAG, "debug");
+        Logger.warn(TAG, "warn");
+
+        assertEquals(3, logger.messages.size());
+        assertEquals("V verbose 1", logger.messages.get(0));
+        assertEquals("D debug", logger.messages.get(1));
+        assertEquals("W warn", logger.messages.get(2));
+    }
+
+    @Test
+    public void nothingIsLoggableWithoutALogger() {
+        Logger.unregisterLogger();
+        assertFalse(Logger.isLoggable(TAG, Logger.ERROR));
+
+        Argument argument = new Argument();
+        Logger.error(TAG, "error %1$s", argument);
+        assertEquals(0, argument.formatted);
+    }
+}
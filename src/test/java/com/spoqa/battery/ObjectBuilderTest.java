@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjectBuilderTest {
+
+    public static class Entry {
+        @Response public long id;
+        @Response public String entryTitle;
+    }
+
+    public static class Feed {
+        @Response public String feedTitle;
+        @Response public List<Entry> entries;
+    }
+
+    public static class Item {
+        /* threads the elements were bound on */
+        static final Set<Thread> sThreads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        @Response public int index;
+
+        @Response
+        public void setName(String name) {
+            sThreads.add(Thread.currentThread());
+        }
+    }
+
+    public static class Items {
+        @Response(parallel = true) public List<Item> items;
+    }
+
+    /* keeps what each element held when it was handed over */
+    private static class EntryStream implements ElementStream<Entry> {
+        final List<String> titles = new ArrayList<String>();
+        final List<Entry> recycled = new ArrayList<Entry>();
+        int limit = Integer.MAX_VALUE;
+
+        @Override
+        public Entry obtainElement(Entry recycled) {
+            this.recycled.add(recycled);
+            return recycled != null ? recycled : new Entry();
+        }
+
+        @Override
+        public boolean onElement(Entry element) {
+            titles.add(element.id + ":" + element.entryTitle);
+            return titles.size() < limit;
+        }
+    }
+
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+    private ForkJoinPool mPool;
+
+    @Before
+    public void setUp() {
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+        mPool = new ForkJoinPool(4);
+        Item.sThreads.clear();
+    }
+
+    @After
+    public void tearDown() {
+        /* back to the defaults */
+        ObjectBuilder.setParallelBinding(null, 4096);
+        mPool.shutdown();
+    }
+
+    private static InputStream input(String body) throws Exception {
+        return new ByteArrayInputStream(body.getBytes("utf-8"));
+    }
+
+    private static final String NDJSON =
+            "{\"id\":1,\"entry_title\":\"first\"}\n" +
+            "\n" +
+            "{\"id\":2,\"entry_title\":\"second\"}\r\n" +
+            "{\"id\":3,\"entry_title\":\"third\"}";
+
+    @Test
+    public void linesAreBoundOneByOne() throws Throwable {
+        EntryStream stream = new EntryStream();
+        int count = ObjectBuilder.buildElements(input(NDJSON), stream, mTranslator, mTypeAdapters, null);
+
+        assertEquals(3, count);
+        assertEquals(3, stream.titles.size());
+        assertEquals("1:first", stream.titles.get(0));
+        assertEquals("2:second", stream.titles.get(1));
+        assertEquals("3:third", stream.titles.get(2));
+
+        /* the element handed over before is offered again */
+        assertNull(stream.recycled.get(0));
+        assertSame(stream.recycled.get(1), stream.recycled.get(2));
+    }
+
+    @Test
+    public void readingStopsWhenTheStreamAsksTo() throws Throwable {
+        EntryStream stream = new EntryStream();
+        stream.limit = 2;
+
+        assertEquals(2, ObjectBuilder.buildElements(input(NDJSON), stream, mTranslator, mTypeAdapters, null));
+        assertEquals(2, stream.titles.size());
+    }
+
+    @Test
+    public void linesAreParsedWithTheGivenRegistry() throws Throwable {
+        final int[] parsed = new int[1];
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(new JsonCodec() {
+            @Override
+            public Object parseInput(String input) throws DeserializationException {
+                ++parsed[0];
+                return super.parseInput(input);
+            }
+        });
+
+        ObjectBuilder.buildElements(registry, input(NDJSON), new EntryStream(), mTranslator, mTypeAdapters, null);
+        assertEquals(3, parsed[0]);
+
+        try {
+            ObjectBuilder.buildElements(new CodecRegistry(), input(NDJSON), new EntryStream(), mTranslator,
+                    mTypeAdapters, null);
+            fail();
+        } catch (DeserializationException e) {
+            /* no JSON codec */
+        }
+    }
+
+    @Test
+    public void malformedLinesFail() throws Throwable {
+        EntryStream stream = new EntryStream();
+        try {
+            ObjectBuilder.buildElements(input("{\"id\":1}\n{\"id\":"), stream, mTranslator, mTypeAdapters, null);
+            fail();
+        } catch (DeserializationException e) {
+            /* the elements before were handed over already */
+            assertEquals(1, stream.titles.size());
+        }
+    }
+
+    private Set<String> merge(String body, Object object) throws Throwable {
+        return ObjectBuilder.merge(ObjectBuilder.getDefaultRegistry(), JsonCodec.MIME_TYPE, input(body), "utf-8",
+                object, mTranslator, mTypeAdapters, null);
+    }
+
+    private static final String FEED = "{\"feed_title\":\"feed\",\"entries\":[" +
+            "{\"id\":1,\"entry_title\":\"first\"},{\"id\":2,\"entry_title\":\"second\"}]}";
+
+    @Test
+    public void mergesKeepTheObjectGraph() throws Throwable {
+        Feed feed = new Feed();
+        merge(FEED, feed);
+        List<Entry> entries = feed.entries;
+        Entry first = entries.get(0);
+
+        Set<String> changes = merge("{\"feed_title\":\"feed\",\"entries\":[" +
+                "{\"id\":1,\"entry_title\":\"renamed\"},{\"id\":2,\"entry_title\":\"second\"}," +
+                "{\"id\":3,\"entry_title\":\"third\"}]}", feed);
+
+        assertEquals(new HashSet<String>(Arrays.asList("entries.0.entryTitle", "entries")), changes);
+        assertSame(entries, feed.entries);
+        assertSame(first, feed.entries.get(0));
+        assertEquals("renamed", first.entryTitle);
+        assertEquals("third", feed.entries.get(2).entryTitle);
+    }
+
+    @Test
+    public void identicalResponsesChangeNothing() throws Throwable {
+        Feed feed = new Feed();
+        assertTrue(merge(FEED, feed).contains("feedTitle"));
+        assertEquals(Collections.emptySet(), merge(FEED, feed));
+    }
+
+    @Test
+    public void changedPrimitivesAreReported() throws Throwable {
+        Feed feed = new Feed();
+        merge(FEED, feed);
+
+        Set<String> changes = merge("{\"feed_title\":\"feed\",\"entries\":[" +
+                "{\"id\":1,\"entry_title\":\"first\"},{\"id\":5,\"entry_title\":\"second\"}]}", feed);
+        assertEquals(Collections.singleton("entries.1.id"), changes);
+        assertEquals(5, feed.entries.get(1).id);
+    }
+
+    @Test
+    public void shrunkListsAreReported() throws Throwable {
+        Feed feed = new Feed();
+        merge(FEED, feed);
+
+        Set<String> changes = merge("{\"feed_title\":\"renamed\",\"entries\":[" +
+                "{\"id\":1,\"entry_title\":\"first\"}]}", feed);
+        assertEquals(new HashSet<String>(Arrays.asList("feedTitle", "entries")), changes);
+        assertEquals(1, feed.entries.size());
+    }
+
+    private static String items(int count, String broken) {
+        StringBuilder sb = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < count; ++i) {
+            if (i > 0)
+                sb.append(',');
+            if (i == count / 2 && broken != null)
+                sb.append(broken);
+            else
+                sb.append("{\"index\":").append(i).append(",\"name\":\"item\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Test
+    public void largeListsAreBoundInParallelInOrder() throws Throwable {
+        ObjectBuilder.setParallelBinding(mPool, 1000);
+
+        Items items = new Items();
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, items(5000, null), items, mTranslator, mTypeAdapters);
+
+        assertEquals(5000, items.items.size());
+        for (int i = 0; i < 5000; ++i)
+            assertEquals(i, items.items.get(i).index);
+        assertFalse(Item.sThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void smallListsAreBoundOnTheCallingThread() throws Throwable {
+        ObjectBuilder.setParallelBinding(mPool, 1000);
+
+        Items items = new Items();
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, items(999, null), items, mTranslator, mTypeAdapters);
+
+        assertEquals(999, items.items.size());
+        assertEquals(Collections.singleton(Thread.currentThread()), Item.sThreads);
+    }
+
+    @Test
+    public void parallelBindingErrorsAreThrown() throws Throwable {
+        ObjectBuilder.setParallelBinding(mPool, 1000);
+
+        try {
+            ObjectBuilder.build(JsonCodec.MIME_TYPE, items(5000, "{\"index\":{}}"), new Items(),
+                    mTranslator, mTypeAdapters);
+            fail();
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+}
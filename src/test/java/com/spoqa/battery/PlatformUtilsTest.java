@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PlatformUtilsTest {
+
+    @After
+    public void tearDown() {
+        PlatformUtils.unregisterPlatformUtils();
+    }
+
+    @Test
+    public void mimeTypesAreGuessedOffDevice() {
+        assertEquals("image/png", PlatformUtils.getMimeType(new File("/tmp/battery.png")));
+        assertEquals("text/plain", PlatformUtils.getMimeType(new File("battery.txt")));
+        assertNull(PlatformUtils.getMimeType(new File("battery")));
+    }
+
+    @Test
+    public void registeredImplementationTakesPrecedence() {
+        PlatformUtils.registerPlatformUtils(new PlatformUtils.PlatformUtilsImpl() {
+            @Override
+            public String getMimeType(File path) {
+                return "application/x-battery";
+            }
+        });
+
+        assertEquals("application/x-battery", PlatformUtils.getMimeType(new File("battery.png")));
+    }
+}
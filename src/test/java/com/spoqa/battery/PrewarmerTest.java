@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.QueryString;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrewarmerTest {
+
+    public static class Author {
+        @Response public String displayName;
+    }
+
+    public static class Entry {
+        @Response public long id;
+        @Response public Author author;
+    }
+
+    /* not touched by any other test, so that its reflection data is not cached yet */
+    @RpcObject(uri = "/prewarmed")
+    public static class GetPrewarmed {
+        @QueryString public Integer pageSize = 20;
+        @Response public List<Entry> entries;
+    }
+
+    @RpcObject(uri = "/scanned")
+    public static class GetScanned {
+    }
+
+    public static class NoRpcObject {
+    }
+
+    private RpcContext<Void> mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix("https://api.example.com");
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        mContext.setFieldProjectionParameter("fields");
+    }
+
+    @Test
+    public void prewarmedCallsMakeNoReflectiveLookups() throws Throwable {
+        assertEquals(1, mContext.prewarm(GetPrewarmed.class, NoRpcObject.class));
+
+        ReflectionCache cache = ReflectionCache.getShared();
+        long misses = cache.getMissCount();
+        GetPrewarmed rpcObject = new GetPrewarmed();
+        HttpRequest request = RequestFactory.createRequest(mContext, rpcObject);
+        ObjectBuilder.build(JsonCodec.MIME_TYPE, "{\"entries\":[{\"id\":1,\"author\":{\"display_name\":\"a\"}}]}",
+                rpcObject, request.getFieldNameTranslator(), mContext.getTypeAdapters());
+
+        assertEquals(misses, cache.getMissCount());
+        assertEquals("a", rpcObject.entries.get(0).author.displayName);
+    }
+
+    @Test
+    public void packagesAreScannedForRpcObjects() {
+        RpcContext<Void> context = new RpcContext<Void>() {
+            @Override
+            protected List<String> findClassNames(String packageName) {
+                return Arrays.asList(GetScanned.class.getName(), NoRpcObject.class.getName(),
+                        packageName + ".Missing");
+            }
+        };
+
+        assertEquals(1, context.prewarm("com.spoqa.battery"));
+    }
+
+    @Test
+    public void classNamesAreFoundOnTheClassPath() throws Throwable {
+        List<String> names = Prewarmer.findClassNames(getClass().getClassLoader(), "com.spoqa.battery.transformers");
+        assertTrue(names.toString(), names.contains(CamelCaseTransformer.class.getName()));
+        assertTrue(names.toString(), names.contains(UnderscoreNameTransformer.class.getName()));
+    }
+
+    @Test
+    public void listenersAreNotifiedOnTheScheduler() throws Throwable {
+        ExecutorScheduler scheduler = new ExecutorScheduler();
+        mContext.setScheduler(scheduler);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int[] count = new int[1];
+        final boolean[] onScheduler = new boolean[1];
+
+        mContext.prewarmAsync(new PrewarmListener() {
+            @Override
+            public void onPrewarmed(int rpcObjects, long elapsedMillis) {
+                count[0] = rpcObjects;
+                onScheduler[0] = Thread.currentThread().getName().equals("RpcDelivery");
+                latch.countDown();
+            }
+        }, GetScanned.class);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, count[0]);
+        assertTrue(onScheduler[0]);
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestFactoryTest {
+
+    @RpcObject(uri = "/items", cacheable = true)
+    public static class GetCacheable {
+    }
+
+    @RpcObject(uri = "/items")
+    public static class GetItems {
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/items", cacheable = true)
+    public static class PostCacheable {
+        @RequestBody public String name = "battery";
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/items", compressRequest = true)
+    public static class PostCompressed {
+        @RequestBody public String name;
+
+        PostCompressed(String name) {
+            this.name = name;
+        }
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/items", requestSerializer = JsonCodec.class,
+            streamingRequest = true)
+    public static class PostStreamed {
+        @RequestBody public String listName = "battery";
+        @RequestBody public Iterable<Integer> itemIds;
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/items", requestSerializer = JsonCodec.class,
+            streamingRequest = true, compressRequest = true)
+    public static class PostStreamedCompressed {
+        @RequestBody public Iterator<Integer> itemIds = Arrays.asList(1, 2, 3).iterator();
+    }
+
+    private RpcContext<Void> mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix("https://api.example.com");
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+    }
+
+    @Test
+    public void onlyDeclaredGetRequestsAreCacheable() throws Throwable {
+        assertTrue(RequestFactory.createRequest(mContext, new GetCacheable()).isCacheable());
+        assertFalse(RequestFactory.createRequest(mContext, new GetItems()).isCacheable());
+        assertFalse(RequestFactory.createRequest(mContext, new PostCacheable()).isCacheable());
+    }
+
+    @Test
+    public void responsesMayBeCompressed() throws Throwable {
+        HttpRequest request = RequestFactory.createRequest(mContext, new GetItems());
+        assertEquals(ContentEncoding.ACCEPTED, request.getHeaders().get(HttpRequest.HEADER_ACCEPT_ENCODING));
+    }
+
+    @Test
+    public void bodiesAreCompressedFromThreshold() throws Throwable {
+        mContext.setRequestCompressionThreshold(64);
+
+        HttpRequest small = RequestFactory.createRequest(mContext, new PostCompressed("battery"));
+        assertNull(small.getHeaders().get(HttpRequest.HEADER_CONTENT_ENCODING));
+        assertEquals("name=battery", new String(small.getRequestBody(), "utf-8"));
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 16; ++i)
+            name.append("battery");
+        HttpRequest large = RequestFactory.createRequest(mContext, new PostCompressed(name.toString()));
+        assertEquals(ContentEncoding.GZIP, large.getHeaders().get(HttpRequest.HEADER_CONTENT_ENCODING));
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(large.getRequestBody()));
+        assertEquals("name=" + name, StringUtils.read(input, "utf-8"));
+    }
+
+    private static byte[] write(StreamingRequestBody body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        body.writeTo(output);
+        return output.toByteArray();
+    }
+
+    @Test
+    public void iterablesAreStreamedRepeatedly() throws Throwable {
+        PostStreamed rpcObject = new PostStreamed();
+        rpcObject.itemIds = Arrays.asList(1, 2, 3);
+        HttpRequest request = RequestFactory.createRequest(mContext, rpcObject);
+
+        assertNull(request.getRequestBody());
+        StreamingRequestBody body = request.getStreamingRequestBody();
+        assertTrue(body.isRepeatable());
+        assertEquals(-1, body.contentLength());
+        assertEquals("{\"list_name\":\"battery\",\"item_ids\":[1,2,3]}", new String(write(body), "utf-8"));
+        assertEquals("{\"list_name\":\"battery\",\"item_ids\":[1,2,3]}", new String(write(body), "utf-8"));
+    }
+
+    @Test
+    public void iteratorsAreStreamedOnceAndCompressed() throws Throwable {
+        HttpRequest request = RequestFactory.createRequest(mContext, new PostStreamedCompressed());
+        assertEquals(ContentEncoding.GZIP, request.getHeaders().get(HttpRequest.HEADER_CONTENT_ENCODING));
+
+        StreamingRequestBody body = request.getStreamingRequestBody();
+        assertFalse(body.isRepeatable());
+        GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(write(body)));
+        assertEquals("{\"item_ids\":[1,2,3]}", StringUtils.read(input, "utf-8"));
+
+        try {
+            write(body);
+            fail();
+        } catch (IOException e) {
+            /* drained */
+        }
+    }
+}
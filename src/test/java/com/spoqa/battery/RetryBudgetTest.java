@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void startsFull() {
+        RetryBudget budget = new RetryBudget(10, 0.1f);
+        assertEquals(10, budget.getTokens(), DELTA);
+        assertTrue(budget.canRetry());
+    }
+
+    @Test
+    public void retriesStopAtHalfTheTokens() {
+        RetryBudget budget = new RetryBudget(10, 0.1f);
+        for (int i = 0; i < 4; ++i)
+            budget.onFailure();
+        assertTrue(budget.canRetry());
+
+        budget.onFailure();
+        assertEquals(5, budget.getTokens(), DELTA);
+        assertFalse(budget.canRetry());
+    }
+
+    @Test
+    public void successesRefillAFractionOfAToken() {
+        RetryBudget budget = new RetryBudget(10, 0.1f);
+        for (int i = 0; i < 5; ++i)
+            budget.onFailure();
+
+        budget.onSuccess();
+        assertEquals(5.1f, budget.getTokens(), DELTA);
+        assertTrue(budget.canRetry());
+    }
+
+    @Test
+    public void tokensStayWithinBounds() {
+        RetryBudget budget = new RetryBudget(2, 0.5f);
+        for (int i = 0; i < 5; ++i)
+            budget.onFailure();
+        assertEquals(0, budget.getTokens(), DELTA);
+
+        for (int i = 0; i < 10; ++i)
+            budget.onSuccess();
+        assertEquals(2, budget.getTokens(), DELTA);
+    }
+}
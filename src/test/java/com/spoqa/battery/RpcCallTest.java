@@ -0,0 +1,483 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery;
+
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.codecs.JsonCodec;
+import com.spoqa.battery.exceptions.CircuitBreakerOpenException;
+import com.spoqa.battery.exceptions.ConcurrencyLimitExceededException;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.exceptions.HttpStatusException;
+import com.spoqa.battery.exceptions.RpcException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives calls through a fake transport on a scheduler whose delayed tasks only run when the
+ * test says so, so retries and hedges happen exactly where the test triggers them.
+ */
+public class RpcCallTest {
+
+    @RpcObject(uri = "/items/1")
+    public static class GetItem {
+        @Response public String itemName;
+    }
+
+    @RpcObject(uri = "/items/1", hedged = true)
+    public static class GetHedgedItem {
+        @Response public String itemName;
+    }
+
+    @RpcObject(method = HttpRequest.Methods.POST, uri = "/items", requestSerializer = JsonCodec.class,
+            streamingRequest = true)
+    public static class PostStreamedItems {
+        @RequestBody public Iterator<String> itemNames = Arrays.asList("a", "b").iterator();
+    }
+
+    @RpcObject(uri = "/items/1", merge = true)
+    public static class GetMergedItem implements MergeTarget {
+        @Response public String itemName;
+        @Response public int count;
+        Set<String> changes;
+        int mergedCount;
+
+        @Override
+        public void onMerged(Set<String> changedFields) {
+            changes = changedFields;
+            /* the response is bound, but not delivered yet */
+            mergedCount = count;
+        }
+    }
+
+    /* runs everything on the calling thread; delayed tasks wait for runScheduled */
+    private static class ManualScheduler implements Scheduler {
+        final List<Runnable> scheduled = new ArrayList<Runnable>();
+
+        @Override
+        public boolean isCurrentThread() {
+            return true;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            scheduled.add(task);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            scheduled.remove(task);
+        }
+
+        void runScheduled() {
+            List<Runnable> tasks = new ArrayList<Runnable>(scheduled);
+            scheduled.clear();
+            for (Runnable task : tasks)
+                task.run();
+        }
+    }
+
+    private static class FakeExchange implements Transport.Exchange {
+        final HttpRequest request;
+        final Transport.Callback callback;
+        boolean cancelled;
+
+        FakeExchange(HttpRequest request, Transport.Callback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        void respond(int statusCode, String body) throws UnsupportedEncodingException {
+            TransportResponse response = new TransportResponse(statusCode, null, body.getBytes("utf-8"),
+                    "utf-8", "application/json", null);
+            if (statusCode < 300)
+                callback.onResponse(response);
+            else
+                callback.onFailure(new TransportError(new HttpStatusException(statusCode), null, response, false));
+        }
+    }
+
+    private static class FakeTransport implements Transport {
+        final List<FakeExchange> exchanges = new ArrayList<FakeExchange>();
+
+        @Override
+        public Exchange execute(HttpRequest request, Callback callback) {
+            FakeExchange exchange = new FakeExchange(request, callback);
+            exchanges.add(exchange);
+            return exchange;
+        }
+
+        FakeExchange last() {
+            return exchanges.get(exchanges.size() - 1);
+        }
+    }
+
+    /* runs its tasks when the test says so */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        boolean rejecting;
+
+        @Override
+        public void execute(Runnable task) {
+            if (rejecting)
+                throw new RejectedExecutionException();
+            tasks.add(task);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : pending)
+                task.run();
+        }
+    }
+
+    private static class Recorder<T> implements OnResponse<T> {
+        final List<T> responses = new ArrayList<T>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+
+        @Override
+        public void onResponse(T object) {
+            responses.add(object);
+        }
+
+        @Override
+        public void onFailure(Throwable why) {
+            failures.add(why);
+        }
+    }
+
+    private RpcContext<Void> mContext;
+    private ManualScheduler mScheduler;
+    private FakeTransport mTransport;
+
+    @Before
+    public void setUp() {
+        mScheduler = new ManualScheduler();
+        mTransport = new FakeTransport();
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix("https://api.example.com");
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        mContext.setScheduler(mScheduler);
+        mContext.setTransport(mTransport);
+    }
+
+    private <T> Recorder<T> invoke(T rpcObject) {
+        Recorder<T> recorder = new Recorder<T>();
+        mContext.invokeAsync(rpcObject, recorder, null);
+        return recorder;
+    }
+
+    @Test
+    public void responsesAreBoundAndDelivered() throws Exception {
+        GetItem item = new GetItem();
+        Recorder<GetItem> recorder = invoke(item);
+
+        assertEquals(1, mTransport.exchanges.size());
+        assertEquals("https://api.example.com/items/1", mTransport.last().request.getUri());
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+
+        assertEquals(1, recorder.responses.size());
+        assertSame(item, recorder.responses.get(0));
+        assertEquals("battery", item.itemName);
+        assertTrue(recorder.failures.isEmpty());
+    }
+
+    @Test
+    public void callsWithoutTransportFail() {
+        mContext.setTransport(null);
+        Recorder<GetItem> recorder = invoke(new GetItem());
+
+        assertEquals(1, recorder.failures.size());
+        assertTrue(recorder.failures.get(0) instanceof RpcException);
+    }
+
+    @Test
+    public void bindingErrorsAreDeliveredAsFailures() throws Exception {
+        Recorder<GetItem> recorder = invoke(new GetItem());
+        mTransport.last().respond(200, "{\"item_name\":");
+
+        assertTrue(recorder.responses.isEmpty());
+        assertEquals(1, recorder.failures.size());
+        assertTrue(recorder.failures.get(0) instanceof DeserializationException);
+    }
+
+    @Test
+    public void failedAttemptsAreRetriedByThePolicy() throws Exception {
+        final List<Integer> statusCodes = new ArrayList<Integer>();
+        mContext.setRetryPolicy(new RetryPolicy() {
+            @Override
+            public long getRetryDelay(HttpRequest request, int attempt, int statusCode,
+                                      Map<String, String> headers, Throwable cause) {
+                statusCodes.add(statusCode);
+                return attempt < 3 ? 100 : -1;
+            }
+        });
+
+        GetItem item = new GetItem();
+        Recorder<GetItem> recorder = invoke(item);
+        mTransport.last().respond(503, "");
+        /* nothing is sent until the delay has passed */
+        assertEquals(1, mTransport.exchanges.size());
+        assertEquals(1, mScheduler.scheduled.size());
+
+        mScheduler.runScheduled();
+        assertEquals(2, mTransport.exchanges.size());
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+
+        assertEquals(1, statusCodes.size());
+        assertEquals(503, (int) statusCodes.get(0));
+        assertEquals(1, recorder.responses.size());
+        assertEquals("battery", item.itemName);
+    }
+
+    @Test
+    public void callsFailOnceThePolicyGivesUp() throws Exception {
+        mContext.setRetryPolicy(new RetryPolicy() {
+            @Override
+            public long getRetryDelay(HttpRequest request, int attempt, int statusCode,
+                                      Map<String, String> headers, Throwable cause) {
+                return attempt < 2 ? 0 : -1;
+            }
+        });
+
+        Recorder<GetItem> recorder = invoke(new GetItem());
+        mTransport.last().respond(500, "");
+        mScheduler.runScheduled();
+        mTransport.last().respond(502, "");
+
+        assertEquals(2, mTransport.exchanges.size());
+        assertTrue(mScheduler.scheduled.isEmpty());
+        assertEquals(1, recorder.failures.size());
+        assertEquals(502, ((HttpStatusException) recorder.failures.get(0)).getStatusCode());
+    }
+
+    @Test
+    public void clientErrorsDoNotDrawOnTheRetryBudget() throws Exception {
+        mContext.setRetryPolicy(new BackoffRetryPolicy());
+
+        for (int i = 0; i < 20; ++i) {
+            Recorder<GetItem> recorder = invoke(new GetItem());
+            mTransport.last().respond(404, "");
+            assertEquals(1, recorder.failures.size());
+        }
+
+        assertTrue(mScheduler.scheduled.isEmpty());
+        assertEquals(RetryBudget.DEFAULT_MAX_TOKENS, mContext.getRetryBudget().getTokens(), 0.0001f);
+        assertTrue(mContext.getRetryBudget().canRetry());
+    }
+
+    @Test
+    public void retriesDrawOnTheRetryBudget() throws Exception {
+        mContext.setRetryPolicy(new BackoffRetryPolicy());
+
+        invoke(new GetItem());
+        mTransport.last().respond(503, "");
+
+        assertEquals(1, mScheduler.scheduled.size());
+        assertEquals(RetryBudget.DEFAULT_MAX_TOKENS - 1, mContext.getRetryBudget().getTokens(), 0.0001f);
+    }
+
+    @Test
+    public void hedgedCallsTakeTheFirstResponse() throws Exception {
+        HedgePolicy policy = new HedgePolicy(0.5, 1f, 1);
+        policy.recordLatency(GetHedgedItem.class, 10);
+        mContext.setHedgePolicy(policy);
+
+        GetHedgedItem item = new GetHedgedItem();
+        Recorder<GetHedgedItem> recorder = invoke(item);
+        assertEquals(1, mTransport.exchanges.size());
+
+        mScheduler.runScheduled();
+        assertEquals(2, mTransport.exchanges.size());
+        FakeExchange first = mTransport.exchanges.get(0);
+        FakeExchange hedge = mTransport.exchanges.get(1);
+
+        hedge.respond(200, "{\"item_name\":\"hedge\"}");
+        assertTrue(first.cancelled);
+        assertFalse(hedge.cancelled);
+
+        /* a late response of the loser is neither bound nor delivered */
+        first.respond(200, "{\"item_name\":\"first\"}");
+        assertEquals(1, recorder.responses.size());
+        assertEquals("hedge", item.itemName);
+    }
+
+    @Test
+    public void hedgesAreNotSentAfterTheResponse() throws Exception {
+        HedgePolicy policy = new HedgePolicy(0.5, 1f, 1);
+        policy.recordLatency(GetHedgedItem.class, 10);
+        mContext.setHedgePolicy(policy);
+
+        Recorder<GetHedgedItem> recorder = invoke(new GetHedgedItem());
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+
+        assertTrue(mScheduler.scheduled.isEmpty());
+        assertEquals(1, mTransport.exchanges.size());
+        assertEquals(1, recorder.responses.size());
+    }
+
+    @Test
+    public void callsBeyondTheLimiterQueueAreRejected() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1, 0.9);
+        mContext.setConcurrencyLimiter(limiter);
+
+        Recorder<GetItem> first = invoke(new GetItem());
+        Recorder<GetItem> queued = invoke(new GetItem());
+        Recorder<GetItem> rejected = invoke(new GetItem());
+
+        assertEquals(1, mTransport.exchanges.size());
+        assertEquals(1, rejected.failures.size());
+        assertTrue(rejected.failures.get(0) instanceof ConcurrencyLimitExceededException);
+
+        /* the queued call is sent once the first one releases its slot */
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+        assertEquals(1, first.responses.size());
+        assertEquals(2, mTransport.exchanges.size());
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+        assertEquals(1, queued.responses.size());
+        assertEquals(0, limiter.getInFlight(limiter.getKey("https://api.example.com/items/1")));
+    }
+
+    @Test
+    public void openCircuitsFailFastThroughTheErrorHandlers() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(0.6f, 1f, 60000, 3, 2, 60000, 1);
+        mContext.setCircuitBreaker(breaker);
+        final List<Throwable> handled = new ArrayList<Throwable>();
+        mContext.registerExceptionHandler(CircuitBreakerOpenException.class, new ExceptionHandler<Void>() {
+            @Override
+            public boolean onException(Void context, Throwable error) {
+                handled.add(error);
+                return true;
+            }
+        });
+
+        invoke(new GetItem());
+        mTransport.last().respond(500, "");
+        /* client errors do not count against the endpoint */
+        invoke(new GetItem());
+        mTransport.last().respond(404, "");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(GetItem.class));
+        invoke(new GetItem());
+        mTransport.last().respond(503, "");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(GetItem.class));
+
+        Recorder<GetItem> recorder = invoke(new GetItem());
+        assertEquals(3, mTransport.exchanges.size());
+        assertEquals(1, handled.size());
+        assertTrue(recorder.failures.isEmpty());
+    }
+
+    @Test
+    public void mergedObjectsLearnWhatChanged() throws Exception {
+        GetMergedItem item = new GetMergedItem();
+        Recorder<GetMergedItem> recorder = invoke(item);
+        mTransport.last().respond(200, "{\"item_name\":\"battery\",\"count\":1}");
+        assertEquals(1, item.mergedCount);
+
+        Recorder<GetMergedItem> second = invoke(item);
+        mTransport.last().respond(200, "{\"item_name\":\"battery\",\"count\":2}");
+        assertEquals(Collections.singleton("count"), item.changes);
+        assertEquals(2, item.mergedCount);
+        assertEquals(1, recorder.responses.size());
+        assertEquals(1, second.responses.size());
+    }
+
+    @Test
+    public void responsesAreBoundOnTheBindingExecutor() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        mContext.setBindingExecutor(executor);
+
+        GetItem item = new GetItem();
+        Recorder<GetItem> recorder = invoke(item);
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+
+        /* neither bound nor delivered until the executor runs */
+        assertEquals(1, executor.tasks.size());
+        assertNull(item.itemName);
+        assertTrue(recorder.responses.isEmpty());
+
+        executor.runAll();
+        assertEquals("battery", item.itemName);
+        assertEquals(1, recorder.responses.size());
+    }
+
+    @Test
+    public void rejectedBindingsHappenInline() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        executor.rejecting = true;
+        mContext.setBindingExecutor(executor);
+
+        GetItem item = new GetItem();
+        Recorder<GetItem> recorder = invoke(item);
+        mTransport.last().respond(200, "{\"item_name\":\"battery\"}");
+
+        assertEquals("battery", item.itemName);
+        assertEquals(1, recorder.responses.size());
+    }
+
+    @Test
+    public void mergesAreNotBoundOnTheBindingExecutor() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        mContext.setBindingExecutor(executor);
+
+        GetMergedItem item = new GetMergedItem();
+        Recorder<GetMergedItem> recorder = invoke(item);
+        mTransport.last().respond(200, "{\"item_name\":\"battery\",\"count\":1}");
+
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals("battery", item.itemName);
+        assertEquals(1, recorder.responses.size());
+    }
+
+    @Test
+    public void drainedRequestBodiesAreNotRetried() throws Exception {
+        mContext.setRetryPolicy(new RetryPolicy() {
+            @Override
+            public long getRetryDelay(HttpRequest request, int attempt, int statusCode,
+                                      Map<String, String> headers, Throwable cause) {
+                return 0;
+            }
+        });
+
+        Recorder<PostStreamedItems> recorder = invoke(new PostStreamedItems());
+        mTransport.last().respond(503, "");
+
+        assertTrue(mScheduler.scheduled.isEmpty());
+        assertEquals(1, mTransport.exchanges.size());
+        assertEquals(1, recorder.failures.size());
+    }
+}
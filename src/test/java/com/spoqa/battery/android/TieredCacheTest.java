@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.android;
+
+import com.android.volley.Cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TieredCacheTest {
+
+    /* second tier counting the lookups which reach it */
+    private static class MapCache implements Cache {
+        final Map<String, Entry> entries = new HashMap<String, Entry>();
+        int gets;
+
+        @Override
+        public Entry get(String key) {
+            ++gets;
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(String key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void invalidate(String key, boolean fullExpire) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.softTtl = 0;
+                if (fullExpire)
+                    entry.ttl = 0;
+            }
+        }
+
+        @Override
+        public void remove(String key) {
+            entries.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            entries.clear();
+        }
+    }
+
+    private MapCache mSecondTier;
+    private TieredCache mCache;
+
+    @Before
+    public void setUp() {
+        mSecondTier = new MapCache();
+        mCache = new TieredCache(100, mSecondTier);
+    }
+
+    private static Cache.Entry entry(int size) {
+        Cache.Entry entry = new Cache.Entry();
+        entry.data = new byte[size];
+        entry.ttl = Long.MAX_VALUE;
+        entry.softTtl = Long.MAX_VALUE;
+        return entry;
+    }
+
+    @Test
+    public void putWritesThroughToSecondTier() {
+        Cache.Entry entry = entry(10);
+        mCache.put("a", entry);
+
+        assertSame(entry, mSecondTier.entries.get("a"));
+        assertSame(entry, mCache.get("a"));
+        assertEquals(0, mSecondTier.gets);
+    }
+
+    @Test
+    public void missesArePromotedFromSecondTier() {
+        Cache.Entry entry = entry(10);
+        mSecondTier.put("a", entry);
+
+        assertSame(entry, mCache.get("a"));
+        assertSame(entry, mCache.get("a"));
+        assertEquals(1, mSecondTier.gets);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() {
+        mCache.put("a", entry(40));
+        mCache.put("b", entry(40));
+        mCache.get("a");
+        mCache.put("c", entry(40));
+
+        /* b was the least recently used one, so only it went back to the second tier */
+        mCache.get("a");
+        mCache.get("c");
+        assertEquals(0, mSecondTier.gets);
+        mCache.get("b");
+        assertEquals(1, mSecondTier.gets);
+    }
+
+    @Test
+    public void largeEntriesAreOnlyKeptOnSecondTier() {
+        Cache.Entry entry = entry(60);
+        mCache.put("a", entry);
+
+        assertSame(entry, mCache.get("a"));
+        assertEquals(1, mSecondTier.gets);
+    }
+
+    @Test
+    public void invalidateExpiresBothTiers() {
+        Cache.Entry entry = entry(10);
+        mCache.put("a", entry);
+        mCache.invalidate("a", false);
+
+        assertEquals(0, mCache.get("a").softTtl);
+        assertEquals(Long.MAX_VALUE, mCache.get("a").ttl);
+
+        mCache.invalidate("a", true);
+        assertEquals(0, mCache.get("a").ttl);
+    }
+
+    @Test
+    public void removeAndClearEmptyBothTiers() {
+        mCache.put("a", entry(10));
+        mCache.put("b", entry(10));
+
+        mCache.remove("a");
+        assertNull(mCache.get("a"));
+        assertNull(mSecondTier.entries.get("a"));
+
+        mCache.clear();
+        assertNull(mCache.get("b"));
+        assertEquals(0, mSecondTier.entries.size());
+    }
+}
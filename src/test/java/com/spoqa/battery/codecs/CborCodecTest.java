@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.ObjectBuilder;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CborCodecTest {
+
+    public static class Author {
+        @RequestBody @Response public String displayName;
+    }
+
+    public static class Item {
+        @RequestBody @Response public String itemName;
+        @RequestBody @Response public int count;
+        @RequestBody @Response public long bigCount;
+        @RequestBody @Response public int negativeCount;
+        @RequestBody @Response public double score;
+        @RequestBody @Response public boolean pinned;
+        @RequestBody @Response public String missing;
+        @RequestBody @Response public List<String> tags;
+        @RequestBody @Response public Author author;
+    }
+
+    public static class Upload {
+        @RequestBody public byte[] data;
+        @RequestBody public Date createdAt;
+        @RequestBody public Date updatedAt;
+    }
+
+    private CborCodec mCodec;
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Before
+    public void setUp() {
+        mCodec = new CborCodec();
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+    }
+
+    private static Item item() {
+        Item item = new Item();
+        item.itemName = "\ubc30\ud130\ub9ac";
+        item.count = 42;
+        item.bigCount = 1L << 40;
+        item.negativeCount = -200;
+        item.score = 0.25;
+        item.pinned = true;
+        item.tags = Arrays.asList("a", "b");
+        item.author = new Author();
+        item.author.displayName = "spoqa";
+        return item;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; ++i)
+            bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private Object parse(byte[] input) throws DeserializationException {
+        return mCodec.parseInput(new ByteArrayInputStream(input), null);
+    }
+
+    @Test
+    public void serializedObjectsDecodeToMaps() throws Throwable {
+        Map<?, ?> map = (Map<?, ?>) parse(mCodec.serializeObject(item(), mTranslator, mTypeAdapters));
+
+        assertEquals(9, map.size());
+        assertEquals("\ubc30\ud130\ub9ac", map.get("item_name"));
+        assertEquals(42, map.get("count"));
+        assertEquals(1L << 40, map.get("big_count"));
+        assertEquals(-200, map.get("negative_count"));
+        assertEquals(0.25, ((Number) map.get("score")).doubleValue(), 0);
+        assertEquals(Boolean.TRUE, map.get("pinned"));
+        assertTrue(map.containsKey("missing"));
+        assertNull(map.get("missing"));
+        assertEquals(Arrays.asList("a", "b"), map.get("tags"));
+        assertEquals("spoqa", ((Map<?, ?>) map.get("author")).get("display_name"));
+    }
+
+    @Test
+    public void serializedObjectsBindBack() throws Throwable {
+        byte[] body = mCodec.serializeObject(item(), mTranslator, mTypeAdapters);
+        Item item = new Item();
+        ObjectBuilder.build(CborCodec.MIME_TYPE, new ByteArrayInputStream(body), null, item,
+                mTranslator, mTypeAdapters);
+
+        assertEquals("\ubc30\ud130\ub9ac", item.itemName);
+        assertEquals(42, item.count);
+        assertEquals(1L << 40, item.bigCount);
+        assertEquals(-200, item.negativeCount);
+        assertEquals(0.25, item.score, 0);
+        assertTrue(item.pinned);
+        assertEquals(Arrays.asList("a", "b"), item.tags);
+        assertEquals("spoqa", item.author.displayName);
+    }
+
+    @Test
+    public void byteStringsAndDatesAreNative() throws Throwable {
+        Upload upload = new Upload();
+        upload.data = bytes(1, 2, 3);
+        upload.createdAt = new Date(1426313366000L);
+        upload.updatedAt = new Date(1426313366535L);
+
+        Map<?, ?> map = (Map<?, ?>) parse(mCodec.serializeObject(upload, mTranslator, mTypeAdapters));
+        assertArrayEquals(bytes(1, 2, 3), (byte[]) map.get("data"));
+        assertEquals(upload.createdAt, map.get("created_at"));
+        assertEquals(upload.updatedAt, map.get("updated_at"));
+    }
+
+    @Test
+    public void dateTimeTagsAreDecoded() throws Throwable {
+        /* 1(1426313366) */
+        assertEquals(new Date(1426313366000L), parse(bytes(0xc1, 0x1a, 0x55, 0x03, 0xd0, 0x96)));
+        /* 0("2015-03-14T06:09:26Z") */
+        byte[] text = "2015-03-14T06:09:26Z".getBytes("utf-8");
+        byte[] input = new byte[text.length + 2];
+        input[0] = (byte) 0xc0;
+        input[1] = (byte) (0x60 | text.length);
+        System.arraycopy(text, 0, input, 2, text.length);
+        assertEquals(new Date(1426313366000L), parse(input));
+        /* other tags are dropped */
+        assertEquals(42, parse(bytes(0xd8, 0x20, 0x18, 0x2a)));
+    }
+
+    @Test
+    public void integersAreDecodedInEveryWidth() throws Throwable {
+        assertEquals(23, parse(bytes(0x17)));
+        assertEquals(255, parse(bytes(0x18, 0xff)));
+        assertEquals(65535, parse(bytes(0x19, 0xff, 0xff)));
+        assertEquals(0xffffffffL, parse(bytes(0x1a, 0xff, 0xff, 0xff, 0xff)));
+        assertEquals(Long.MAX_VALUE, parse(bytes(0x1b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff)));
+        assertEquals(-1, parse(bytes(0x20)));
+        assertEquals(-256, parse(bytes(0x38, 0xff)));
+        assertEquals(Long.MIN_VALUE, parse(bytes(0x3b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff)));
+    }
+
+    @Test
+    public void integersBeyondLongAreRejected() {
+        for (byte[] input : new byte[][] {
+                bytes(0x1b, 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00),
+                bytes(0x3b, 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00)}) {
+            try {
+                parse(input);
+                fail(Arrays.toString(input));
+            } catch (DeserializationException e) {
+                /* expected */
+            }
+        }
+    }
+
+    @Test
+    public void simpleValuesAndFloatsAreDecoded() throws Throwable {
+        assertEquals(Boolean.FALSE, parse(bytes(0xf4)));
+        assertEquals(Boolean.TRUE, parse(bytes(0xf5)));
+        assertNull(parse(bytes(0xf6)));
+        /* half precision 1.5 */
+        assertEquals(1.5f, ((Number) parse(bytes(0xf9, 0x3e, 0x00))).floatValue(), 0);
+        assertEquals(100000.0f, ((Number) parse(bytes(0xfa, 0x47, 0xc3, 0x50, 0x00))).floatValue(), 0);
+    }
+
+    @Test
+    public void indefiniteLengthItemsAreDecoded() throws Throwable {
+        /* [_ 1, [2, 3]] */
+        assertEquals(Arrays.asList(1, Arrays.asList(2, 3)),
+                parse(bytes(0x9f, 0x01, 0x82, 0x02, 0x03, 0xff)));
+        /* {_ "a": 1} */
+        assertEquals(1, ((Map<?, ?>) parse(bytes(0xbf, 0x61, 0x61, 0x01, 0xff))).get("a"));
+        /* (_ "ab", "c") */
+        assertEquals("abc", parse(bytes(0x7f, 0x62, 0x61, 0x62, 0x61, 0x63, 0xff)));
+    }
+
+    @Test
+    public void truncatedAndInvalidInputIsRejected() {
+        for (byte[] input : new byte[][] {bytes(), bytes(0x19, 0xff), bytes(0x82, 0x01), bytes(0xff),
+                bytes(0x7f, 0x01, 0xff)}) {
+            try {
+                parse(input);
+                fail(Arrays.toString(input));
+            } catch (DeserializationException e) {
+                /* expected */
+            }
+        }
+    }
+}
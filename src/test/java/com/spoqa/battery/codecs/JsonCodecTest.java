@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonCodecTest {
+
+    private static List<Object> collect(Iterable<Object> children) {
+        List<Object> list = new ArrayList<Object>();
+        for (Object child : children)
+            list.add(child);
+        return list;
+    }
+
+    @Test
+    public void arrayChildrenCanBeIteratedRepeatedly() throws Throwable {
+        JsonCodec codec = new JsonCodec();
+        Object root = codec.parseInput("{\"items\":[1,null,\"a\"]}");
+        Iterable<Object> children = codec.queryArrayChildren(codec.queryObjectChild(root, "items"));
+
+        /* counting the elements must not consume them */
+        assertEquals(Arrays.asList(1, null, "a"), collect(children));
+        assertEquals(Arrays.asList(1, null, "a"), collect(children));
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.codecs;
+
+import com.spoqa.battery.FieldNameTranslator;
+import com.spoqa.battery.ObjectBuilder;
+import com.spoqa.battery.TypeAdapterCollection;
+import com.spoqa.battery.annotations.RequestBody;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.exceptions.DeserializationException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessagePackCodecTest {
+
+    public static class Author {
+        @RequestBody @Response public String displayName;
+    }
+
+    public static class Item {
+        @RequestBody @Response public String itemName;
+        @RequestBody @Response public int count;
+        @RequestBody @Response public long bigCount;
+        @RequestBody @Response public int negativeCount;
+        @RequestBody @Response public double score;
+        @RequestBody @Response public boolean pinned;
+        @RequestBody @Response public String missing;
+        @RequestBody @Response public List<String> tags;
+        @RequestBody @Response public Author author;
+    }
+
+    private MessagePackCodec mCodec;
+    private FieldNameTranslator mTranslator;
+    private TypeAdapterCollection mTypeAdapters;
+
+    @Before
+    public void setUp() {
+        mCodec = new MessagePackCodec();
+        mTranslator = new FieldNameTranslator(new UnderscoreNameTransformer(), new CamelCaseTransformer());
+        mTypeAdapters = new TypeAdapterCollection();
+    }
+
+    private static Item item() {
+        Item item = new Item();
+        item.itemName = "\ubc30\ud130\ub9ac";
+        item.count = 42;
+        item.bigCount = 1L << 40;
+        item.negativeCount = -200;
+        item.score = 0.25;
+        item.pinned = true;
+        item.tags = Arrays.asList("a", "b");
+        item.author = new Author();
+        item.author.displayName = "spoqa";
+        return item;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; ++i)
+            bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private Object parse(byte[] input) throws DeserializationException {
+        return mCodec.parseInput(new ByteArrayInputStream(input), null);
+    }
+
+    @Test
+    public void serializedObjectsDecodeToMaps() throws Throwable {
+        Map<?, ?> map = (Map<?, ?>) parse(mCodec.serializeObject(item(), mTranslator, mTypeAdapters));
+
+        assertEquals(9, map.size());
+        assertEquals("\ubc30\ud130\ub9ac", map.get("item_name"));
+        assertEquals(42, map.get("count"));
+        assertEquals(1L << 40, map.get("big_count"));
+        assertEquals(-200, map.get("negative_count"));
+        assertEquals(0.25, map.get("score"));
+        assertEquals(Boolean.TRUE, map.get("pinned"));
+        assertTrue(map.containsKey("missing"));
+        assertNull(map.get("missing"));
+        assertEquals(Arrays.asList("a", "b"), map.get("tags"));
+        assertEquals("spoqa", ((Map<?, ?>) map.get("author")).get("display_name"));
+    }
+
+    @Test
+    public void serializedObjectsBindBack() throws Throwable {
+        byte[] body = mCodec.serializeObject(item(), mTranslator, mTypeAdapters);
+        Item item = new Item();
+        ObjectBuilder.build(MessagePackCodec.MIME_TYPE, new ByteArrayInputStream(body), null, item,
+                mTranslator, mTypeAdapters);
+
+        assertEquals("\ubc30\ud130\ub9ac", item.itemName);
+        assertEquals(42, item.count);
+        assertEquals(1L << 40, item.bigCount);
+        assertEquals(-200, item.negativeCount);
+        assertEquals(0.25, item.score, 0);
+        assertTrue(item.pinned);
+        assertEquals(Arrays.asList("a", "b"), item.tags);
+        assertEquals("spoqa", item.author.displayName);
+    }
+
+    @Test
+    public void bodiesReadAsStringsAreDecoded() throws Throwable {
+        byte[] body = mCodec.serializeObject(item(), mTranslator, mTypeAdapters);
+        Map<?, ?> map = (Map<?, ?>) mCodec.parseInput(new String(body, "ISO-8859-1"));
+        assertEquals("\ubc30\ud130\ub9ac", map.get("item_name"));
+    }
+
+    @Test
+    public void integersAreDecodedInEveryWidth() throws Throwable {
+        assertEquals(127, parse(bytes(0x7f)));
+        assertEquals(-1, parse(bytes(0xff)));
+        assertEquals(255, parse(bytes(0xcc, 0xff)));
+        assertEquals(65535, parse(bytes(0xcd, 0xff, 0xff)));
+        assertEquals(0xffffffffL, parse(bytes(0xce, 0xff, 0xff, 0xff, 0xff)));
+        assertEquals(Long.MAX_VALUE, parse(bytes(0xcf, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff)));
+        assertEquals(-128, parse(bytes(0xd0, 0x80)));
+        assertEquals(-32768, parse(bytes(0xd1, 0x80, 0x00)));
+        assertEquals(Integer.MIN_VALUE, parse(bytes(0xd2, 0x80, 0x00, 0x00, 0x00)));
+        assertEquals(Long.MIN_VALUE, parse(bytes(0xd3, 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00)));
+    }
+
+    @Test
+    public void uint64BeyondLongIsRejected() {
+        try {
+            parse(bytes(0xcf, 0x80, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00));
+            fail();
+        } catch (DeserializationException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void binariesAndTimestampsAreDecoded() throws Throwable {
+        assertArrayEquals(bytes(1, 2, 3), (byte[]) parse(bytes(0xc4, 0x03, 1, 2, 3)));
+        /* timestamp 32 */
+        assertEquals(new Date(1426313366000L), parse(bytes(0xd6, 0xff, 0x55, 0x03, 0xd0, 0x96)));
+        /* unknown extensions are handed over as their payload */
+        assertArrayEquals(bytes(9), (byte[]) parse(bytes(0xd4, 0x01, 9)));
+    }
+
+    @Test
+    public void truncatedAndInvalidInputIsRejected() {
+        for (byte[] input : new byte[][] {bytes(), bytes(0xcd, 0xff), bytes(0x92, 0x01), bytes(0xc1)}) {
+            try {
+                parse(input);
+                fail(Arrays.toString(input));
+            } catch (DeserializationException e) {
+                /* expected */
+            }
+        }
+    }
+}
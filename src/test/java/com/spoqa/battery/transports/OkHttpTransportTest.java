@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2014-2015 Spoqa, All Rights Reserved.
+ */
+
+package com.spoqa.battery.transports;
+
+import com.spoqa.battery.ExecutorScheduler;
+import com.spoqa.battery.OnResponse;
+import com.spoqa.battery.RpcContext;
+import com.spoqa.battery.annotations.Response;
+import com.spoqa.battery.annotations.RpcObject;
+import com.spoqa.battery.exceptions.HttpStatusException;
+import com.spoqa.battery.transformers.CamelCaseTransformer;
+import com.spoqa.battery.transformers.UnderscoreNameTransformer;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OkHttpTransportTest {
+
+    @RpcObject(uri = "/items/1")
+    public static class GetItem {
+        @Response public String itemName;
+    }
+
+    @RpcObject(uri = "/missing")
+    public static class GetMissing {
+    }
+
+    /* waits for the outcome of a single call */
+    private static class Waiter<T> implements OnResponse<T> {
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile T response;
+        volatile Throwable failure;
+        volatile Thread thread;
+
+        @Override
+        public void onResponse(T object) {
+            response = object;
+            thread = Thread.currentThread();
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable why) {
+            failure = why;
+            thread = Thread.currentThread();
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("no response in time", latch.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private HttpServer mServer;
+    private ExecutorScheduler mScheduler;
+    private RpcContext<Void> mContext;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean found = exchange.getRequestURI().getPath().equals("/items/1");
+                byte[] body = (found ? "{\"item_name\":\"battery\"}" : "{}").getBytes("utf-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(found ? 200 : 404, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.start();
+
+        mScheduler = new ExecutorScheduler();
+        mContext = new RpcContext<Void>();
+        mContext.setDefaultUriPrefix("http://127.0.0.1:" + mServer.getAddress().getPort());
+        mContext.setFieldNameTransformer(new CamelCaseTransformer(), new UnderscoreNameTransformer());
+        mContext.setScheduler(mScheduler);
+        mContext.setTransport(new OkHttpTransport());
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void responsesAreDeliveredOnTheScheduler() throws InterruptedException {
+        GetItem item = new GetItem();
+        Waiter<GetItem> waiter = new Waiter<GetItem>();
+        mContext.invokeAsync(item, waiter, null);
+        waiter.await();
+
+        assertNull(waiter.failure);
+        assertSame(item, waiter.response);
+        assertEquals("battery", item.itemName);
+        assertEquals("RpcDelivery", waiter.thread.getName());
+    }
+
+    @Test
+    public void errorStatusesFail() throws InterruptedException {
+        Waiter<GetMissing> waiter = new Waiter<GetMissing>();
+        mContext.invokeAsync(new GetMissing(), waiter, null);
+        waiter.await();
+
+        assertEquals(404, ((HttpStatusException) waiter.failure).getStatusCode());
+    }
+
+    @Test
+    public void callersClientIsNotModified() {
+        OkHttpClient client = new OkHttpClient();
+        client.interceptors().add(new Interceptor() {
+            @Override
+            public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+                return chain.proceed(chain.request());
+            }
+        });
+        client.setReadTimeout(1234, TimeUnit.MILLISECONDS);
+
+        OkHttpTransport transport = new OkHttpTransport(client);
+        assertEquals(1, client.interceptors().size());
+        assertEquals(0, client.networkInterceptors().size());
+        assertEquals(2, transport.getClient().interceptors().size());
+        assertEquals(1234, transport.getClient().getReadTimeout());
+    }
+
+    @Test
+    public void sharedTransportIsCreatedOnce() {
+        OkHttpTransport shared = OkHttpTransport.getShared();
+        assertSame(shared, OkHttpTransport.getShared());
+        assertSame(ConnectionPool.getDefault(), shared.getClient().getConnectionPool());
+        assertTrue(shared.getClient().getDispatcher().getMaxRequestsPerHost() > 5);
+    }
+}